@@ -0,0 +1,140 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.coreference.scorer.PrecisionRecall;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pairwise agreement scores between annotation sets.
+ * <p>
+ * The score in row i, column j is the score of annotation set j using
+ * annotation set i as the key. Precision and recall are symmetric, so the score
+ * in row j, column i is the same score with precision and recall exchanged.
+ * Only one of the two is ever computed. Cells on the diagonal and cells for
+ * annotation sets that have no coreference information are null.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class AgreementMatrix {
+
+	/**
+	 * Names of the annotation sets in matrix order.
+	 */
+	final private List<String> annotationSetNames;
+
+	/**
+	 * Table of method->matrix of scores.
+	 */
+	final private Map<Method, PrecisionRecall[][]> scores = new HashMap<Method, PrecisionRecall[][]>();
+
+	/**
+	 * @param annotationSetNames
+	 *            names of the annotation sets in matrix order
+	 * @param methods
+	 *            scoring methods
+	 */
+	public AgreementMatrix(List<String> annotationSetNames, Set<Method> methods) {
+		this.annotationSetNames = annotationSetNames;
+		int n = annotationSetNames.size();
+		for (Method method : methods)
+			scores.put(method, new PrecisionRecall[n][n]);
+	}
+
+	/**
+	 * Set the score of a pair of annotation sets. This also sets the score of
+	 * the pair with key and response exchanged.
+	 *
+	 * @param method
+	 *            scoring method
+	 * @param key
+	 *            index of the key annotation set
+	 * @param response
+	 *            index of the response annotation set
+	 * @param score
+	 *            score of the response against the key
+	 */
+	void setScore(Method method, int key, int response, PrecisionRecall score) {
+		PrecisionRecall[][] matrix = scores.get(method);
+		matrix[key][response] = score;
+		matrix[response][key] = new PrecisionRecall(score.getRecall(),
+				score.getPrecision());
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @param key
+	 *            index of the key annotation set
+	 * @param response
+	 *            index of the response annotation set
+	 * @return score of the response against the key, or null if there is none
+	 */
+	public PrecisionRecall getScore(Method method, int key, int response) {
+		return scores.get(method)[key][response];
+	}
+
+	/**
+	 * @return names of the annotation sets in matrix order
+	 */
+	public List<String> getAnnotationSetNames() {
+		return annotationSetNames;
+	}
+
+	/**
+	 * Format the F-scores of one method as a table.
+	 *
+	 * @param method
+	 *            scoring method
+	 * @return table of F-scores with one row per key annotation set
+	 */
+	public String toString(Method method) {
+		StringBuilder s = new StringBuilder();
+		for (String name : annotationSetNames)
+			s.append(String.format("\t%s", displayName(name)));
+		s.append('\n');
+		int n = annotationSetNames.size();
+		for (int key = 0; key < n; key++) {
+			s.append(displayName(annotationSetNames.get(key)));
+			for (int response = 0; response < n; response++) {
+				PrecisionRecall score = getScore(method, key, response);
+				if (null == score)
+					s.append("\tNA");
+				else
+					s.append(String.format("\t%f", score.getFScore()));
+			}
+			s.append('\n');
+		}
+		return s.toString();
+	}
+
+	/**
+	 * @param name
+	 *            annotation set name
+	 * @return the name, or "Default" for the default annotation set
+	 */
+	private static String displayName(String name) {
+		return null == name ? "Default" : name;
+	}
+}
@@ -0,0 +1,394 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.Corpus;
+import gate.Document;
+import gate.FeatureMap;
+import gate.coreference.scorer.EquivalenceClassScorer;
+import gate.coreference.scorer.EquivalenceClassScorerFactory;
+import gate.coreference.scorer.PrecisionRecallTerms;
+import gate.coreference.scorer.PrecisionRecallTermsAverages;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.creole.ANNIEConstants;
+import gate.util.GateException;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Inter-annotator agreement for a corpus. This scores every pair of annotation
+ * sets in the matches feature of each document against each other.
+ * <p>
+ * The chains of every annotation set are extracted from a document once, and
+ * then all the pairs are scored in parallel. Because precision and recall are
+ * symmetric, each unordered pair of annotation sets is only scored once.
+ * Document-level agreement matrices are kept along with corpus-level micro and
+ * macro averages.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class AgreementScorer {
+
+	static Logger logger = Logger.getLogger(AgreementScorer.class.getName());
+
+	/**
+	 * Score of a single pair of annotation sets in a document that is being
+	 * calculated by the thread pool.
+	 */
+	private class PairScore {
+		final private AgreementMatrix matrix;
+		final private Method method;
+		final private int key;
+		final private int response;
+		final private Future<PrecisionRecallTerms> terms;
+
+		public PairScore(AgreementMatrix matrix, Method method, int key,
+				int response, Future<PrecisionRecallTerms> terms) {
+			this.matrix = matrix;
+			this.method = method;
+			this.key = key;
+			this.response = response;
+			this.terms = terms;
+		}
+	}
+
+	/**
+	 * Scoring is done over sets of (Start, End) offset pairs which are stored
+	 * as lists of long values.
+	 */
+	private EquivalenceClassScorerFactory<List<Long>> scorerFactory = new EquivalenceClassScorerFactory<List<Long>>();
+
+	/**
+	 * The scoring methods to use.
+	 */
+	final private Set<Method> methods;
+
+	/**
+	 * The annotation sets to compare. A null name is the default annotation
+	 * set.
+	 */
+	final private List<String> annotationSetNames;
+
+	/**
+	 * Table of document name->agreement matrix in corpus order.
+	 */
+	private Map<String, AgreementMatrix> documentAgreement = new LinkedHashMap<String, AgreementMatrix>();
+
+	/**
+	 * Table of method->averages for every ordered pair of annotation sets.
+	 */
+	private Map<Method, PrecisionRecallTermsAverages[][]> averages = new HashMap<Method, PrecisionRecallTermsAverages[][]>();
+
+	/**
+	 * @param methods
+	 *            scoring methods, e.g. B-Cubed or MUC
+	 * @param annotationSetNames
+	 *            names of the annotation sets to compare
+	 */
+	public AgreementScorer(Set<Method> methods, List<String> annotationSetNames) {
+		this.methods = methods;
+		this.annotationSetNames = annotationSetNames;
+		int n = annotationSetNames.size();
+		for (Method method : methods) {
+			PrecisionRecallTermsAverages[][] matrix = new PrecisionRecallTermsAverages[n][n];
+			for (int key = 0; key < n; key++)
+				for (int response = 0; response < n; response++)
+					matrix[key][response] = new PrecisionRecallTermsAverages();
+			averages.put(method, matrix);
+		}
+	}
+
+	/**
+	 * Score all the documents in a corpus. The annotation set pairs are scored
+	 * by a thread pool with one thread per available processor.
+	 *
+	 * @param corpus
+	 *            corpus to score
+	 * @throws GateException
+	 */
+	public void scoreCorpus(Corpus corpus) throws GateException {
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime
+				.getRuntime().availableProcessors());
+		try {
+			// Collect the results of each document before the next one is
+			// loaded so that only one document's chains and futures are held
+			// at a time.
+			for (Object object : corpus)
+				collectDocument(submitDocument((Document) object, executor));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GateException("Agreement scoring interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new GateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Extract the chains of all the annotation sets in a document and submit
+	 * every pair of them to the thread pool.
+	 *
+	 * @param document
+	 *            document to score
+	 * @param executor
+	 *            thread pool
+	 * @return pair scores being calculated for this document
+	 */
+	private List<PairScore> submitDocument(Document document,
+			ExecutorService executor) {
+		List<PairScore> pairScores = new ArrayList<PairScore>();
+		FeatureMap features = document.getFeatures();
+		String matchFeature = ANNIEConstants.DOCUMENT_COREF_FEATURE_NAME;
+
+		// Documents without coreference information are not scored.
+		if (!features.containsKey(matchFeature))
+			return pairScores;
+		logger.debug("Score agreement " + document.getName());
+
+		// Extract the coreference information once for every annotation set.
+		@SuppressWarnings("unchecked")
+		Map<String, Collection<Collection<Integer>>> matchIDsets = (Map<String, Collection<Collection<Integer>>>) features
+				.get(matchFeature);
+		List<Set<Set<List<Long>>>> chains = new ArrayList<Set<Set<List<Long>>>>();
+		for (String annotationSetName : annotationSetNames) {
+			if (matchIDsets.containsKey(annotationSetName))
+				chains.add(CorpusScorer.getMatchSets(document, matchIDsets,
+						annotationSetName));
+			else
+				chains.add(null);
+		}
+
+		AgreementMatrix matrix = new AgreementMatrix(annotationSetNames,
+				methods);
+		documentAgreement.put(document.getName(), matrix);
+		int n = annotationSetNames.size();
+		for (int key = 0; key < n; key++)
+			for (int response = key + 1; response < n; response++) {
+				if (null == chains.get(key) || null == chains.get(response))
+					continue;
+				for (Method method : methods) {
+					Future<PrecisionRecallTerms> terms = executor
+							.submit(scoreTask(method, chains.get(key), chains
+									.get(response)));
+					pairScores.add(new PairScore(matrix, method, key,
+							response, terms));
+				}
+			}
+		return pairScores;
+	}
+
+	/**
+	 * Wait for the pair scores of a document and add them to its agreement
+	 * matrix and the corpus averages. The results are collected in submission
+	 * order so that the averages do not depend on the order in which the
+	 * threads finish.
+	 *
+	 * @param pairScores
+	 *            pair scores being calculated for a document
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	private void collectDocument(List<PairScore> pairScores)
+			throws InterruptedException, ExecutionException {
+		for (PairScore pairScore : pairScores) {
+			PrecisionRecallTerms terms = pairScore.terms.get();
+			pairScore.matrix.setScore(pairScore.method, pairScore.key,
+					pairScore.response, terms.getScore());
+			PrecisionRecallTermsAverages[][] matrix = averages
+					.get(pairScore.method);
+			matrix[pairScore.key][pairScore.response].addTerms(terms);
+			matrix[pairScore.response][pairScore.key].addTerms(terms
+					.transpose());
+		}
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @param key
+	 *            key chains
+	 * @param response
+	 *            response chains
+	 * @return a task that scores the response against the key
+	 */
+	private Callable<PrecisionRecallTerms> scoreTask(final Method method,
+			final Set<Set<List<Long>>> key, final Set<Set<List<Long>>> response) {
+		return new Callable<PrecisionRecallTerms>() {
+			@Override
+			public PrecisionRecallTerms call() {
+				EquivalenceClassScorer<List<Long>> scorer = scorerFactory
+						.getScorer(method);
+				return scorer.scoreTerms(key, response);
+			}
+		};
+	}
+
+	/**
+	 * @return table of document name->agreement matrix in corpus order
+	 */
+	public Map<String, AgreementMatrix> getDocumentAgreement() {
+		return documentAgreement;
+	}
+
+	/**
+	 * The micro average is the average of the document scores.
+	 *
+	 * @return corpus micro average agreement matrix
+	 */
+	public AgreementMatrix getMicroAverages() {
+		return getAverages(true);
+	}
+
+	/**
+	 * The macro average is the score generated by scoring all the documents at
+	 * once.
+	 *
+	 * @return corpus macro average agreement matrix
+	 */
+	public AgreementMatrix getMacroAverages() {
+		return getAverages(false);
+	}
+
+	private AgreementMatrix getAverages(boolean micro) {
+		AgreementMatrix matrix = new AgreementMatrix(annotationSetNames,
+				methods);
+		int n = annotationSetNames.size();
+		for (Method method : methods)
+			for (int key = 0; key < n; key++)
+				for (int response = key + 1; response < n; response++) {
+					PrecisionRecallTermsAverages pairAverages = averages
+							.get(method)[key][response];
+					if (0 == pairAverages.size())
+						continue;
+					matrix.setScore(method, key, response,
+							micro ? pairAverages.getMicroAverage()
+									: pairAverages.getMacroAverage());
+				}
+		return matrix;
+	}
+
+	/**
+	 * Find the names of all the annotation sets that appear in the matches
+	 * features of the documents in a corpus.
+	 *
+	 * @param corpus
+	 *            corpus to search
+	 * @return annotation set names with the default set first
+	 */
+	public static List<String> getAnnotationSetNames(Corpus corpus) {
+		boolean defaultSet = false;
+		Set<String> names = new TreeSet<String>();
+		for (Object object : corpus) {
+			Document document = (Document) object;
+			Object matches = document.getFeatures().get(
+					ANNIEConstants.DOCUMENT_COREF_FEATURE_NAME);
+			if (null == matches)
+				continue;
+			for (Object name : ((Map<?, ?>) matches).keySet()) {
+				if (null == name)
+					defaultSet = true;
+				else
+					names.add((String) name);
+			}
+		}
+		List<String> annotationSetNames = new ArrayList<String>();
+		if (defaultSet)
+			annotationSetNames.add(null);
+		annotationSetNames.addAll(names);
+		return annotationSetNames;
+	}
+
+	/**
+	 * Print the agreement matrices for all the documents in a corpus in a data
+	 * store.
+	 *
+	 * @param args
+	 *            first argument is the data store path, second argument is the
+	 *            corpus name, remaining arguments are the annotation sets to
+	 *            compare, where an empty string is the default set. If no
+	 *            annotation sets are given all the sets in the matches features
+	 *            are compared.
+	 * @throws GateException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(final String[] args) throws GateException,
+			IOException, InterruptedException {
+		BasicConfigurator.configure();
+
+		String dataStorePath = args[0];
+		String corpusName = args[1];
+
+		// Use both scoring methods.
+		final Set<Method> methods = EnumSet.of(Method.MUC, Method.BCUBED);
+
+		Datastore.withCorpus(dataStorePath, corpusName,
+				new Datastore.CorpusTask<Void>() {
+					public Void run(Corpus corpus) throws GateException {
+						List<String> annotationSetNames = new ArrayList<String>();
+						for (int i = 2; i < args.length; i++)
+							annotationSetNames.add(args[i].length() == 0 ? null
+									: args[i]);
+						if (annotationSetNames.isEmpty())
+							annotationSetNames = getAnnotationSetNames(corpus);
+
+						AgreementScorer scorer = new AgreementScorer(methods,
+								annotationSetNames);
+						scorer.scoreCorpus(corpus);
+						for (Entry<String, AgreementMatrix> documentAgreement : scorer
+								.getDocumentAgreement().entrySet()) {
+							System.out.println(documentAgreement.getKey());
+							printMatrix(documentAgreement.getValue());
+						}
+						System.out.println("Micro average");
+						printMatrix(scorer.getMicroAverages());
+						System.out.println("Macro average");
+						printMatrix(scorer.getMacroAverages());
+						return null;
+					}
+				});
+	}
+
+	private static void printMatrix(AgreementMatrix matrix) {
+		System.out.format("MUC F-score\n%s", matrix.toString(Method.MUC));
+		System.out.format("B-Cubed F-score\n%s", matrix
+				.toString(Method.BCUBED));
+	}
+}
@@ -19,16 +19,31 @@
 package gate.coreference;
 
 import java.awt.BorderLayout;
-import java.awt.Cursor;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Map.Entry;
 import java.util.Vector;
 
+import javax.swing.JCheckBox;
+import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.ListSelectionModel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableModel;
 
@@ -36,8 +51,11 @@ import org.apache.log4j.Logger;
 
 import gate.Corpus;
 import gate.Document;
+import gate.Gate;
 import gate.Resource;
 import gate.coreference.scorer.PrecisionRecall;
+import gate.coreference.scorer.PrecisionRecallTermsAverages;
+import gate.coreference.scorer.ScoreStore;
 import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
 import gate.creole.AbstractVisualResource;
 import gate.creole.ResourceInstantiationException;
@@ -45,6 +63,8 @@ import gate.creole.metadata.CreoleResource;
 import gate.creole.metadata.GuiType;
 import gate.event.CorpusEvent;
 import gate.event.CorpusListener;
+import gate.event.CreoleEvent;
+import gate.event.CreoleListener;
 import gate.event.FeatureMapListener;
 import gate.swing.XJTable;
 
@@ -57,7 +77,7 @@ import gate.swing.XJTable;
 @CreoleResource(name = "Corpus Coreference Score", guiType = GuiType.LARGE,
 		resourceDisplayed = "gate.Corpus", mainViewer = false)
 public class CoreferenceScoringViewer extends AbstractVisualResource implements
-		CorpusListener {
+		CorpusListener, CreoleListener {
 
 	/**
 	 * An {@link XJTable} whose cells are not editable.
@@ -114,6 +134,16 @@ public class CoreferenceScoringViewer extends AbstractVisualResource implements
 	static Logger logger = Logger.getLogger(CoreferenceScoringViewer.class
 			.getName());
 
+	/**
+	 * Filter that hides documents without coreference information.
+	 */
+	private static final ScoreTableModel.RowFilter ANNOTATED = new ScoreTableModel.RowFilter() {
+		@Override
+		public boolean include(ScoreStore store, int row) {
+			return ScoreStore.UNANNOTATED != store.getState(row);
+		}
+	};
+
 	/**
 	 * Scoring methods to use.
 	 */
@@ -129,11 +159,21 @@ public class CoreferenceScoringViewer extends AbstractVisualResource implements
 	 */
 	private CorpusScorer scorer;
 
+	/**
+	 * Background scorer of the corpus documents.
+	 */
+	private ScoringScheduler scheduler;
+
 	/**
 	 * Table in which the document scores are displayed.
 	 */
 	private XJTable documentTable;
 
+	/**
+	 * Scroll pane around the document table.
+	 */
+	private JScrollPane documentScrollPane;
+
 	/**
 	 * Table in which the average scores are displayed.
 	 */
@@ -141,8 +181,9 @@ public class CoreferenceScoringViewer extends AbstractVisualResource implements
 
 	/**
 	 * Data model for the table in which the document scores are displayed.
+	 * This reads the scores directly from the scorer's score store.
 	 */
-	private DefaultTableModel documentTableModel;
+	private ScoreTableModel documentTableModel;
 
 	/**
 	 * Data model for the table in which the score averages are displayed.
@@ -150,10 +191,12 @@ public class CoreferenceScoringViewer extends AbstractVisualResource implements
 	private DefaultTableModel averagesTableModel;
 
 	/**
-	 * Set of objects that listen for changes to the feature maps of the
-	 * documents in the corpus.
+	 * Table of document->object that listens for changes to its feature map.
+	 * Only documents in the corpus that are loaded have listeners. Documents
+	 * that are not loaded cannot be edited, and their scores are calculated
+	 * when they are next loaded by the scorer.
 	 */
-	private Set<DocumentFeatureMapListener> documentListeners = new HashSet<DocumentFeatureMapListener>();
+	private Map<Document, DocumentFeatureMapListener> documentListeners = new HashMap<Document, DocumentFeatureMapListener>();
 
 	/**
 	 * Specify the scoring methods used by this viewer.
@@ -161,6 +204,7 @@ public class CoreferenceScoringViewer extends AbstractVisualResource implements
 	public CoreferenceScoringViewer() {
 		methods.add(Method.MUC);
 		methods.add(Method.BCUBED);
+		methods.add(Method.MENTION);
 	}
 
 	@Override
@@ -172,20 +216,12 @@ public class CoreferenceScoringViewer extends AbstractVisualResource implements
 	}
 
 	/**
-	 * Create the scoring table model.
+	 * Create the averages table model. The document table model is created
+	 * along with the scorer.
 	 * 
-	 * @return a new scoring table model with no data in it
+	 * @return a new averages table model with no data in it
 	 */
 	private void initModel() {
-		// Document scores table model.
-		documentTableModel = new DefaultTableModel();
-		documentTableModel.addColumn("Document");
-		documentTableModel.addColumn("B-Cubed Precision");
-		documentTableModel.addColumn("B-Cubed Recall");
-		documentTableModel.addColumn("B-Cubed F-score");
-		documentTableModel.addColumn("MUC Precision");
-		documentTableModel.addColumn("MUC Recall");
-		documentTableModel.addColumn("MUC F-score");
 		// Averages table model.
 		averagesTableModel = new DefaultTableModel();
 		averagesTableModel.addColumn("Average");
@@ -195,6 +231,9 @@ public class CoreferenceScoringViewer extends AbstractVisualResource implements
 		averagesTableModel.addColumn("MUC Precision");
 		averagesTableModel.addColumn("MUC Recall");
 		averagesTableModel.addColumn("MUC F-score");
+		averagesTableModel.addColumn("Mention Precision");
+		averagesTableModel.addColumn("Mention Recall");
+		averagesTableModel.addColumn("Mention F-score");
 	}
 
 	/**
@@ -204,8 +243,55 @@ public class CoreferenceScoringViewer extends AbstractVisualResource implements
 		setLayout(new BorderLayout());
 		JTabbedPane tabbedPane = new JTabbedPane();
 
+		documentTableModel = new ScoreTableModel();
 		documentTable = new ImmutableXJTable(documentTableModel);
-		tabbedPane.addTab("Scores", null, new JScrollPane(documentTable),
+		// The model sorts by rearranging its rows, so clicking a column header
+		// sorts the model instead of the table.
+		documentTable.setSortable(false);
+		documentTable.getTableHeader().addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				int column = documentTable.columnAtPoint(e.getPoint());
+				if (column >= 0) {
+					int[] selected = getSelectedStoreRows();
+					documentTableModel.sortBy(documentTable
+							.convertColumnIndexToModel(column));
+					selectStoreRows(selected);
+				}
+			}
+		});
+		final JCheckBox annotatedOnly = new JCheckBox(
+				"Only documents with coreference information");
+		annotatedOnly.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				int[] selected = getSelectedStoreRows();
+				documentTableModel.setFilter(annotatedOnly.isSelected() ? ANNOTATED
+						: null);
+				selectStoreRows(selected);
+			}
+		});
+		// Score the documents the user is looking at first.
+		documentScrollPane = new JScrollPane(documentTable);
+		documentScrollPane.getViewport().addChangeListener(
+				new ChangeListener() {
+					@Override
+					public void stateChanged(ChangeEvent e) {
+						prioritizeVisibleRows();
+					}
+				});
+		documentTable.getSelectionModel().addListSelectionListener(
+				new ListSelectionListener() {
+					@Override
+					public void valueChanged(ListSelectionEvent e) {
+						if (!e.getValueIsAdjusting())
+							prioritizeSelectedRows();
+					}
+				});
+		JPanel scoresPanel = new JPanel(new BorderLayout());
+		scoresPanel.add(annotatedOnly, BorderLayout.NORTH);
+		scoresPanel.add(documentScrollPane, BorderLayout.CENTER);
+		tabbedPane.addTab("Scores", null, scoresPanel,
 				"Individual document coreference scores");
 
 		averagesTable = new ImmutableXJTable(averagesTableModel);
@@ -217,8 +303,12 @@ public class CoreferenceScoringViewer extends AbstractVisualResource implements
 
 	/**
 	 * Register the viewer as a listener for the corpus and the feature maps of
-	 * all the documents it contains, create a scorer object for the new corpus
-	 * and use it to update the table model.
+	 * the documents in it that are loaded, create a scorer object for the new
+	 * corpus and start scoring it in the background.
+	 * <p>
+	 * Documents in the corpus are not loaded here. The viewer also listens to
+	 * the CREOLE register so that it can start listening to a document's
+	 * feature map when the document is loaded.
 	 * 
 	 * @see gate.creole.AbstractVisualResource#setTarget(java.lang.Object)
 	 */
@@ -227,27 +317,74 @@ public class CoreferenceScoringViewer extends AbstractVisualResource implements
 		if (null != corpus && corpus != target) {
 			// Deregister listeners from the previous corpus.
 			corpus.removeCorpusListener(this);
-			for (DocumentFeatureMapListener listener : documentListeners)
-				listener.removeListener();
+			removeDocumentListeners();
 		}
+		if (null != scheduler)
+			scheduler.stop();
+		if (null != scorer)
+			scorer.getStatistics().unregister();
+		if (null == corpus)
+			Gate.getCreoleRegister().addCreoleListener(this);
 		corpus = (Corpus) target;
 		logger.debug("Set target " + corpus.getName());
-		// Register listeners for the corpus and the documents it contains.
+		// Register listeners for the corpus and its loaded documents.
 		corpus.addCorpusListener(this);
-		for (Object object : corpus) {
-			Document document = (Document) object;
-			documentListeners
-					.add(new DocumentFeatureMapListener(this, document));
-		}
-		// Create a new corpus scorer and use it to update the table model.
+		for (int i = 0; i < corpus.size(); i++)
+			if (corpus.isDocumentLoaded(i))
+				addDocumentListener(corpus.get(i));
+		// Create a new corpus scorer and score it in the background, showing
+		// the scores as they come in.
 		scorer = new CorpusScorer(corpus, methods);
+		scorer.getStatistics().register(corpus.getName());
+		scheduler = new ScoringScheduler(scorer, new Runnable() {
+			@Override
+			public void run() {
+				showScores();
+			}
+		});
+		documentTableModel.setScorer(scorer);
+		scheduler.start();
 		updateTables();
 	}
 
+	@Override
+	public void cleanup() {
+		if (null != scheduler)
+			scheduler.stop();
+		if (null != scorer)
+			scorer.getStatistics().unregister();
+		if (null != corpus) {
+			corpus.removeCorpusListener(this);
+			removeDocumentListeners();
+			Gate.getCreoleRegister().removeCreoleListener(this);
+		}
+		super.cleanup();
+	}
+
+	private void addDocumentListener(Document document) {
+		if (!documentListeners.containsKey(document))
+			documentListeners.put(document, new DocumentFeatureMapListener(
+					this, document));
+	}
+
+	private void removeDocumentListener(Document document) {
+		DocumentFeatureMapListener listener = documentListeners
+				.remove(document);
+		if (null != listener)
+			listener.removeListener();
+	}
+
+	private void removeDocumentListeners() {
+		for (DocumentFeatureMapListener listener : documentListeners.values())
+			listener.removeListener();
+		documentListeners.clear();
+	}
+
 	@Override
 	public void documentAdded(CorpusEvent e) {
 		Document document = e.getDocument();
 		logger.debug("Document added: " + document.getName());
+		addDocumentListener(document);
 		scorer.addDocument(document);
 		updateTables();
 	}
@@ -256,10 +393,79 @@ public class CoreferenceScoringViewer extends AbstractVisualResource implements
 	public void documentRemoved(CorpusEvent e) {
 		Document document = e.getDocument();
 		logger.debug("Document removed: " + document.getName());
+		removeDocumentListener(document);
 		scorer.removeDocument(document);
 		updateTables();
 	}
 
+	/**
+	 * Start listening to a document in the corpus when it is loaded.
+	 * <p>
+	 * Documents may be loaded and unloaded by the background scorer, so the
+	 * viewer's state is updated on the event dispatch thread. The private
+	 * copies of documents the scorer reads from the data store are hidden and
+	 * ignored.
+	 */
+	@Override
+	public void resourceLoaded(final CreoleEvent e) {
+		if (!SwingUtilities.isEventDispatchThread()) {
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					resourceLoaded(e);
+				}
+			});
+			return;
+		}
+		Resource resource = e.getResource();
+		if (Gate.getHiddenAttribute(resource.getFeatures()))
+			return;
+		if (resource instanceof Document && null != scorer
+				&& scorer.contains((Document) resource))
+			addDocumentListener((Document) resource);
+	}
+
+	/**
+	 * Stop listening to a document when it is unloaded.
+	 */
+	@Override
+	public void resourceUnloaded(final CreoleEvent e) {
+		if (!SwingUtilities.isEventDispatchThread()) {
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					resourceUnloaded(e);
+				}
+			});
+			return;
+		}
+		Resource resource = e.getResource();
+		if (Gate.getHiddenAttribute(resource.getFeatures()))
+			return;
+		if (resource instanceof Document) {
+			removeDocumentListener((Document) resource);
+			if (null != scorer && scorer.contains((Document) resource))
+				scorer.documentUnloaded((Document) resource);
+		}
+	}
+
+	@Override
+	public void resourceRenamed(Resource resource, String oldName,
+			String newName) {
+	}
+
+	@Override
+	public void datastoreOpened(CreoleEvent e) {
+	}
+
+	@Override
+	public void datastoreCreated(CreoleEvent e) {
+	}
+
+	@Override
+	public void datastoreClosed(CreoleEvent e) {
+	}
+
 	/**
 	 * Called when a document's feature map has changed.
 	 * 
@@ -269,56 +475,162 @@ public class CoreferenceScoringViewer extends AbstractVisualResource implements
 	public void documentFeatureMapUpdated(Document document) {
 		logger.debug("Document feature map updated: " + document.getName());
 		scorer.resetDocumentScores(document);
+		// The document being edited is rescored ahead of the rest.
+		scheduler.schedule(DocumentKey.forDocument(document),
+				ScoringScheduler.SELECTED);
 		updateTables();
 	}
 
 	/**
 	 * Called whenever the corpus changes in a way that could affect the
-	 * coreference scores. It recalculates the coreference scores and updates
-	 * the table models.
+	 * coreference scores. It queues the documents that need to be scored and
+	 * updates the table models with the scores there are so far.
 	 */
 	private void updateTables() {
+		scheduler.scheduleUnscored();
+		showScores();
+	}
+
+	/**
+	 * Update the table models from the scorer.
+	 */
+	private void showScores() {
 		initModel();
-		documentTable.setModel(documentTableModel);
 		averagesTable.setModel(averagesTableModel);
 
-		setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-		Map<Document, Map<Method, PrecisionRecall>> corpusScores = scorer
-				.getScores();
-		for (Entry<Document, Map<Method, PrecisionRecall>> documentScores : corpusScores
-				.entrySet()) {
-			Document document = documentScores.getKey();
-			Map<Method, PrecisionRecall> scores = documentScores.getValue();
+		// Scoring fills in the score store the document table model reads.
+		// Refreshing the model clears the table's selection, so the selected
+		// documents are selected again afterwards.
+		int[] selected = getSelectedStoreRows();
+		documentTableModel.refresh();
+		selectStoreRows(selected);
+
+		// The scorer keeps the averages up to date as documents are scored.
+		PrecisionRecallTermsAverages bcubed = scorer
+				.getAverages(Method.BCUBED);
+		PrecisionRecallTermsAverages muc = scorer.getAverages(Method.MUC);
+		PrecisionRecallTermsAverages mention = scorer
+				.getAverages(Method.MENTION);
+		addScoreRow(averagesTableModel, "Micro", bcubed.getMicroAverage(), muc
+				.getMicroAverage(), mention.getMicroAverage());
+		addScoreRow(averagesTableModel, "Macro", bcubed.getMacroAverage(), muc
+				.getMacroAverage(), mention.getMacroAverage());
+		prioritizeVisibleRows();
+	}
 
-			Vector<Object> rowData = new Vector<Object>();
+	/**
+	 * Move the documents in the visible rows of the document table to the
+	 * front of the scoring queue.
+	 */
+	private void prioritizeVisibleRows() {
+		if (null == scheduler || 0 == documentTable.getRowCount())
+			return;
+		Rectangle view = documentScrollPane.getViewport().getViewRect();
+		int first = documentTable.rowAtPoint(new Point(0, view.y));
+		int last = documentTable.rowAtPoint(new Point(0, view.y + view.height
+				- 1));
+		if (first < 0)
+			first = 0;
+		if (last < 0)
+			last = documentTable.getRowCount() - 1;
+		List<DocumentKey> keys = new ArrayList<DocumentKey>();
+		for (int row = first; row <= last; row++)
+			keys.add(getRowDocument(row));
+		scheduler.prioritize(keys, ScoringScheduler.VISIBLE);
+	}
 
-			rowData.add(document.getName());
+	/**
+	 * Move the documents in the selected rows of the document table to the
+	 * front of the scoring queue.
+	 */
+	private void prioritizeSelectedRows() {
+		if (null == scheduler)
+			return;
+		ListSelectionModel selection = documentTable.getSelectionModel();
+		if (selection.isSelectionEmpty())
+			return;
+		List<DocumentKey> keys = new ArrayList<DocumentKey>();
+		for (int row = selection.getMinSelectionIndex(); row <= selection
+				.getMaxSelectionIndex(); row++)
+			if (selection.isSelectedIndex(row)
+					&& row < documentTable.getRowCount())
+				keys.add(getRowDocument(row));
+		scheduler.prioritize(keys, ScoringScheduler.SELECTED);
+	}
 
-			PrecisionRecall bcubed = scores.get(Method.BCUBED);
-			if (null != bcubed) {
-				rowData.add(bcubed.getPrecision());
-				rowData.add(bcubed.getRecall());
-				rowData.add(bcubed.getFScore());
-			} else {
-				rowData.add("NA");
-				rowData.add("NA");
-				rowData.add("NA");
-			}
+	/**
+	 * @return score store rows of the selected rows of the document table
+	 */
+	private int[] getSelectedStoreRows() {
+		int[] rows = documentTable.getSelectedRows();
+		for (int i = 0; i < rows.length; i++)
+			rows[i] = documentTableModel.getStoreRow(documentTable
+					.convertRowIndexToModel(rows[i]));
+		return rows;
+	}
+
+	/**
+	 * Select the rows of the document table that show score store rows. Rows
+	 * that are no longer shown are not selected.
+	 * 
+	 * @param storeRows
+	 *            score store rows
+	 */
+	private void selectStoreRows(int[] storeRows) {
+		if (0 == storeRows.length)
+			return;
+		ListSelectionModel selection = documentTable.getSelectionModel();
+		selection.setValueIsAdjusting(true);
+		selection.clearSelection();
+		for (int storeRow : storeRows) {
+			int modelRow = documentTableModel.getViewRow(storeRow);
+			if (modelRow < 0)
+				continue;
+			int viewRow = documentTable.convertRowIndexToView(modelRow);
+			selection.addSelectionInterval(viewRow, viewRow);
+		}
+		selection.setValueIsAdjusting(false);
+	}
+
+	/**
+	 * @param viewRow
+	 *            row index in the document table
+	 * @return document displayed in the row
+	 */
+	private DocumentKey getRowDocument(int viewRow) {
+		int modelRow = documentTable.convertRowIndexToModel(viewRow);
+		return scorer.getDocumentKey(documentTableModel.getStoreRow(modelRow));
+	}
 
-			PrecisionRecall muc = scores.get(Method.MUC);
-			if (null != muc) {
-				rowData.add(muc.getPrecision());
-				rowData.add(muc.getRecall());
-				rowData.add(muc.getFScore());
+	/**
+	 * Add a row of scores to a table model.
+	 * 
+	 * @param model
+	 *            table model
+	 * @param name
+	 *            row name
+	 * @param scores
+	 *            B-Cubed, MUC and mention detection scores, each of which may
+	 *            be null if there is none
+	 */
+	private void addScoreRow(DefaultTableModel model, String name,
+			PrecisionRecall... scores) {
+		Vector<Object> rowData = new Vector<Object>();
+
+		rowData.add(name);
+
+		for (PrecisionRecall score : scores)
+			if (null != score) {
+				rowData.add(score.getPrecision());
+				rowData.add(score.getRecall());
+				rowData.add(score.getFScore());
 			} else {
 				rowData.add("NA");
 				rowData.add("NA");
 				rowData.add("NA");
 			}
 
-			documentTableModel.addRow(rowData);
-		}
-		setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
+		model.addRow(rowData);
 	}
 
 }
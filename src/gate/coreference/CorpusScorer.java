@@ -18,6 +18,7 @@
 
 package gate.coreference;
 
+import gate.Annotation;
 import gate.AnnotationSet;
 import gate.Corpus;
 import gate.DataStore;
@@ -25,9 +26,17 @@ import gate.Document;
 import gate.Factory;
 import gate.FeatureMap;
 import gate.Gate;
-import gate.coreference.scorer.EquivalenceClassScorer;
+import gate.coreference.scorer.ChainError;
+import gate.coreference.scorer.ChainOverlap;
+import gate.coreference.scorer.MentionAligner;
 import gate.coreference.scorer.EquivalenceClassScorerFactory;
 import gate.coreference.scorer.PrecisionRecall;
+import gate.coreference.scorer.PrecisionRecallTerms;
+import gate.coreference.scorer.PrecisionRecallTermsAverages;
+import gate.coreference.scorer.ScoreStore;
+import gate.coreference.scorer.ScoreStoreFile;
+import gate.coreference.scorer.util.SortUtilities;
+import gate.coreference.scorer.util.SortUtilities.IndexComparator;
 import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
 import gate.creole.ANNIEConstants;
 import gate.util.GateException;
@@ -36,18 +45,18 @@ import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Logger;
 
 import java.io.File;
-import java.text.Collator;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.Map.Entry;
 
 /**
  * Coreference precision/recall scores for a corpus. This calculates coreference
@@ -55,10 +64,43 @@ import java.util.TreeMap;
  * <p>
  * This class does lazy calculation of scores. It maintains a table of scores
  * for each document, but only calculates them as needed when the getScores
- * function is called. The addDocument and removeDocument functions should be
+ * function is called. The table is a {@link ScoreStore}, which holds the score
+ * terms in primitive arrays with a row per document, so no objects are kept per
+ * document per method. The addDocument and removeDocument functions should be
  * called whenever a document is added or removed from the corpus. The
  * resetDocumentScores function should be called whenever a document changes in
  * a way that might affect its coreference scores.
+ * <p>
+ * The overlap between the key and response chains of every scored document
+ * that is loaded is kept. When a document whose scores have been reset is
+ * rescored, its new chains are diffed against the old ones and only the overlap
+ * counts and score terms of the chains that changed are updated. The overlap of
+ * a document that is only loaded to be scored is discarded once it has been
+ * scored, so that the scorer holds on to its numbers alone.
+ * <p>
+ * Corpus micro and macro averages for each method are maintained along with the
+ * document scores. A document's contribution to them is subtracted when it is
+ * removed or rescored and added back when it is scored, so keeping them current
+ * costs a constant amount of work per document change.
+ * <p>
+ * The same averages are kept for strata of chains, by chain size range and by
+ * entity type, which are accumulated by the chain overlaps in the same pass as
+ * the document totals. See {@link MentionStratifier}.
+ * <p>
+ * Views read from the score store directly instead of copying the scores
+ * table.
+ * <p>
+ * Documents are identified by {@link DocumentKey}s, so creating a scorer does
+ * not load the documents of a corpus stored in a data store. A document that is
+ * not loaded when it has to be scored is loaded, scored and unloaded again.
+ * <p>
+ * Scoring a document is split into loading its chains with
+ * {@link #loadChains}, which does not change the scorer and so may be run on
+ * another thread, and applying them with {@link #setChains}. A
+ * {@link ScoringScheduler} uses this to score documents in the background.
+ * <p>
+ * Counts and timings of both steps are kept in a {@link ScoringStatistics},
+ * which may be registered as an MBean to monitor scoring.
  * 
  * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
  */
@@ -69,29 +111,174 @@ public class CorpusScorer {
 	final public static String DEFAULT_KEY_NAME = "Key";
 
 	/**
-	 * Order the documents in the table by name. The alphabetical order is
-	 * determined by the locale settings.
+	 * The key and response chains of a document. Chain elements are (Start,
+	 * End) offset pairs stored as lists of long values. The annotation type of
+	 * each element is kept alongside the chains.
 	 */
-	private class DocumentCollator implements Comparator<Document> {
-		final private Collator collator;
+	public static class DocumentChains {
+		final private Set<Set<List<Long>>> keyChains;
+		final private Set<Set<List<Long>>> responseChains;
+		final private Map<List<Long>, String> mentionTypes;
+		final private boolean loaded;
+
+		/**
+		 * @param keyChains
+		 *            key chains
+		 * @param responseChains
+		 *            response chains
+		 * @param mentionTypes
+		 *            table of element->annotation type
+		 * @param loaded
+		 *            true if the document stays loaded after its chains have
+		 *            been read
+		 */
+		public DocumentChains(Set<Set<List<Long>>> keyChains,
+				Set<Set<List<Long>>> responseChains,
+				Map<List<Long>, String> mentionTypes, boolean loaded) {
+			this.keyChains = keyChains;
+			this.responseChains = responseChains;
+			this.mentionTypes = mentionTypes;
+			this.loaded = loaded;
+		}
 
-		public DocumentCollator() {
-			collator = Collator.getInstance(Locale.getDefault());
-			collator.setStrength(Collator.TERTIARY);
+		/**
+		 * @param keyChains
+		 *            key chains
+		 * @param responseChains
+		 *            response chains
+		 * @param loaded
+		 *            true if the document stays loaded after its chains have
+		 *            been read
+		 */
+		public DocumentChains(Set<Set<List<Long>>> keyChains,
+				Set<Set<List<Long>>> responseChains, boolean loaded) {
+			this(keyChains, responseChains,
+					new HashMap<List<Long>, String>(), loaded);
+		}
+
+		/**
+		 * @param keyChains
+		 *            key chains
+		 * @param responseChains
+		 *            response chains
+		 */
+		public DocumentChains(Set<Set<List<Long>>> keyChains,
+				Set<Set<List<Long>>> responseChains) {
+			this(keyChains, responseChains, true);
+		}
+
+		/**
+		 * @return key chains
+		 */
+		public Set<Set<List<Long>>> getKeyChains() {
+			return keyChains;
+		}
+
+		/**
+		 * @return response chains
+		 */
+		public Set<Set<List<Long>>> getResponseChains() {
+			return responseChains;
+		}
+
+		/**
+		 * @return table of element->annotation type
+		 */
+		public Map<List<Long>, String> getMentionTypes() {
+			return mentionTypes;
+		}
+
+		/**
+		 * @return true if the document stays loaded after its chains have been
+		 *         read
+		 */
+		public boolean isLoaded() {
+			return loaded;
+		}
+	}
+
+	/**
+	 * Assigns a chain to a size stratum and a type stratum. The size strata
+	 * are singletons, 2-5, 6-20 and more than 20 elements. The type of a chain
+	 * is the most common annotation type of its elements, ties going to the
+	 * type that sorts first. Chains whose elements have no types only have a
+	 * size stratum.
+	 */
+	public static class MentionStratifier implements
+			ChainOverlap.Stratifier<List<Long>> {
+		final private Map<List<Long>, String> mentionTypes;
+
+		/**
+		 * @param mentionTypes
+		 *            table of element->annotation type
+		 */
+		public MentionStratifier(Map<List<Long>, String> mentionTypes) {
+			this.mentionTypes = mentionTypes;
 		}
 
 		@Override
-		public int compare(Document d1, Document d2) {
-			return collator.compare(d1.getName(), d2.getName());
+		public Collection<String> getStrata(Set<List<Long>> chain) {
+			List<String> strata = new ArrayList<String>(2);
+			strata.add(getSizeStratum(chain.size()));
+			Map<String, Integer> counts = new HashMap<String, Integer>();
+			String type = null;
+			int max = 0;
+			for (List<Long> element : chain) {
+				String t = mentionTypes.get(element);
+				if (null == t)
+					continue;
+				Integer count = counts.get(t);
+				int n = null == count ? 1 : count + 1;
+				counts.put(t, n);
+				if (n > max || (n == max && t.compareTo(type) < 0)) {
+					type = t;
+					max = n;
+				}
+			}
+			if (null != type)
+				strata.add("Type " + type);
+			return strata;
+		}
+
+		/**
+		 * @param previous
+		 *            stratifier of an earlier version of the same chains
+		 * @return elements whose type differs between the two stratifiers.
+		 *         These are the only elements that can move a chain to
+		 *         another stratum.
+		 */
+		public Set<List<Long>> getRetypedMentions(MentionStratifier previous) {
+			Set<List<Long>> retyped = new HashSet<List<Long>>();
+			for (Entry<List<Long>, String> entry : mentionTypes.entrySet())
+				if (!entry.getValue().equals(
+						previous.mentionTypes.get(entry.getKey())))
+					retyped.add(entry.getKey());
+			for (List<Long> mention : previous.mentionTypes.keySet())
+				if (!mentionTypes.containsKey(mention))
+					retyped.add(mention);
+			return retyped;
 		}
 
+		/**
+		 * @param size
+		 *            number of elements in a chain
+		 * @return name of the chain's size stratum
+		 */
+		public static String getSizeStratum(int size) {
+			if (size <= 1)
+				return "Size 1";
+			if (size <= 5)
+				return "Size 2-5";
+			if (size <= 20)
+				return "Size 6-20";
+			return "Size >20";
+		}
 	}
 
 	/**
-	 * Scoring is done over sets of (Start, End) offset pairs which are stored
-	 * as lists of long values.
+	 * The corpus being scored.
 	 */
-	private EquivalenceClassScorerFactory<List<Long>> scorerFactory = new EquivalenceClassScorerFactory<List<Long>>();
+	final private Corpus corpus;
 
 	/**
 	 * The scoring methods to use.
@@ -99,13 +286,67 @@ public class CorpusScorer {
 	final private Set<Method> methods;
 
 	/**
-	 * The scores table. This is a map of document->method->score.
+	 * Names of the key and response match sets in the matches feature.
+	 */
+	final private String keyName;
+	final private String responseName;
+
+	/**
+	 * Aligns response mentions with key mentions before scoring, or null to
+	 * match mentions by their exact offsets. This is read by
+	 * {@link #loadChains}, which may run on another thread.
+	 */
+	private volatile MentionAligner aligner = null;
+
+	final private ScoringStatistics statistics;
+
+	/**
+	 * Per-document profiler, or null if scoring is not profiled
 	 */
-	private Map<Document, Map<Method, PrecisionRecall>> scores;
+	private volatile ScoringProfiler profiler = null;
+
+	/**
+	 * Table of loaded document->overlap of its key and response chains.
+	 * Scoring is done over sets of (Start, End) offset pairs which are stored
+	 * as lists of long values.
+	 */
+	private Map<DocumentKey, ChainOverlap<List<Long>>> overlaps = new HashMap<DocumentKey, ChainOverlap<List<Long>>>();
+
+	/**
+	 * Table of method->corpus averages of the scored documents.
+	 */
+	private Map<Method, PrecisionRecallTermsAverages> averages = new HashMap<Method, PrecisionRecallTermsAverages>();
+
+	/**
+	 * Table of method->stratum name->corpus averages of the scored documents'
+	 * chains in that stratum.
+	 */
+	private Map<Method, SortedMap<String, PrecisionRecallTermsAverages>> stratumAverages = new HashMap<Method, SortedMap<String, PrecisionRecallTermsAverages>>();
+
+	/**
+	 * The scores table with one row per document.
+	 */
+	final private ScoreStore store;
+
+	/**
+	 * Table of document->row in the score store.
+	 */
+	private Map<DocumentKey, Integer> rows = new HashMap<DocumentKey, Integer>();
+
+	/**
+	 * Documents in score store row order.
+	 */
+	private List<DocumentKey> rowDocuments = new ArrayList<DocumentKey>();
+
+	/**
+	 * Table of document->index in the corpus. This is built when it is first
+	 * needed and discarded when documents are added or removed.
+	 */
+	private Map<DocumentKey, Integer> corpusIndices = null;
 
 	/**
 	 * Create a corpus scorer. This adds all the documents to the scores table
-	 * with empty scores.
+	 * with empty scores without loading them.
 	 * 
 	 * @param corpus
 	 *            corpus to score
@@ -113,12 +354,39 @@ public class CorpusScorer {
 	 *            scoring methods, e.g. B-Cubed or MUC
 	 */
 	public CorpusScorer(Corpus corpus, Set<Method> methods) {
+		this(corpus, methods, DEFAULT_KEY_NAME, null);
+	}
+
+	/**
+	 * Create a corpus scorer that compares particular key and response
+	 * annotation sets.
+	 * 
+	 * @param corpus
+	 *            corpus to score
+	 * @param methods
+	 *            scoring methods, e.g. B-Cubed or MUC
+	 * @param keyName
+	 *            name of the key match sets in the matches feature, e.g. Key
+	 * @param responseName
+	 *            name of the response match sets in the matches feature, e.g.
+	 *            null
+	 */
+	public CorpusScorer(Corpus corpus, Set<Method> methods, String keyName,
+			String responseName) {
+		this.corpus = corpus;
 		this.methods = methods;
+		this.keyName = keyName;
+		this.responseName = responseName;
+		for (Method method : methods) {
+			averages.put(method, new PrecisionRecallTermsAverages());
+			stratumAverages.put(method,
+					new TreeMap<String, PrecisionRecallTermsAverages>());
+		}
+		store = new ScoreStore(methods);
+		statistics = new ScoringStatistics();
 		// Create a scores table with empty entries for all the documents.
-		scores = new TreeMap<Document, Map<Method, PrecisionRecall>>(
-				new DocumentCollator());
-		for (Object object : corpus)
-			addDocument((Document) object);
+		for (int i = 0; i < corpus.size(); i++)
+			addDocument(DocumentKey.forCorpusIndex(corpus, i));
 	}
 
 	/**
@@ -128,7 +396,17 @@ public class CorpusScorer {
 	 *            document to add
 	 */
 	public void addDocument(Document document) {
-		scores.put(document, null);
+		addDocument(DocumentKey.forDocument(document));
+	}
+
+	private void addDocument(DocumentKey document) {
+		clearCorpusIndices();
+		Integer row = rows.get(document);
+		if (null == row) {
+			rows.put(document, store.addRow(document.getName()));
+			rowDocuments.add(document);
+		} else
+			store.setState(row, ScoreStore.UNSCORED);
 	}
 
 	/**
@@ -138,66 +416,531 @@ public class CorpusScorer {
 	 *            document to remove
 	 */
 	public void removeDocument(Document document) {
-		scores.remove(document);
+		removeDocument(DocumentKey.forDocument(document));
+	}
+
+	private void removeDocument(DocumentKey document) {
+		clearCorpusIndices();
+		overlaps.remove(document);
+		Integer row = rows.remove(document);
+		if (null != row) {
+			removeFromAverages(row);
+			// The last row is moved into the place of the removed one.
+			int moved = store.removeRow(row);
+			DocumentKey last = rowDocuments.remove(rowDocuments.size() - 1);
+			if (moved >= 0) {
+				rowDocuments.set(row, last);
+				rows.put(last, row);
+			}
+		}
 	}
 
 	/**
-	 * Reset the scores for a document so that they will be recalculated.
+	 * Reset the scores for a document so that they will be recalculated. The
+	 * document's chain overlap is kept so that only the chains that have changed
+	 * need to be rescored. The document's contribution to the corpus averages
+	 * is removed until it is rescored. Documents that are not in the scores
+	 * table are ignored.
 	 * 
 	 * @param document
 	 *            document whose scores are reset
 	 */
 	public void resetDocumentScores(Document document) {
-		scores.put(document, null);
+		Integer row = rows.get(DocumentKey.forDocument(document));
+		if (null == row)
+			return;
+		removeFromAverages(row);
+		store.setState(row, ScoreStore.UNSCORED);
+	}
+
+	/**
+	 * Discard the chain overlap of a document that has been unloaded. If the
+	 * document is loaded again and rescored, it is scored from scratch.
+	 * 
+	 * @param document
+	 *            document that has been unloaded
+	 */
+	public void documentUnloaded(Document document) {
+		overlaps.remove(DocumentKey.forDocument(document));
+	}
+
+	/**
+	 * @param document
+	 *            a document
+	 * @return true if the document is in the scores table
+	 */
+	public boolean contains(Document document) {
+		return rows.containsKey(DocumentKey.forDocument(document));
+	}
+
+	/**
+	 * @param row
+	 *            row index in the score store
+	 * @return the document in the row
+	 */
+	public DocumentKey getDocumentKey(int row) {
+		return rowDocuments.get(row);
+	}
+
+	/**
+	 * @param key
+	 *            a document
+	 * @return the document's row in the score store, or -1 if it is not in the
+	 *         scores table
+	 */
+	public int getRow(DocumentKey key) {
+		Integer row = rows.get(key);
+		return null == row ? -1 : row;
+	}
+
+	/**
+	 * @return the documents that have not been scored, in name order
+	 */
+	public List<DocumentKey> getUnscoredDocuments() {
+		List<DocumentKey> unscored = new ArrayList<DocumentKey>();
+		for (int row : getRowsInNameOrder())
+			if (ScoreStore.UNSCORED == store.getState(row))
+				unscored.add(rowDocuments.get(row));
+		return unscored;
+	}
+
+	/**
+	 * Return the rows of the score store ordered by document name. The
+	 * documents' collation keys are precomputed, so this does not collate any
+	 * strings.
+	 * 
+	 * @return score store row indices
+	 */
+	public int[] getRowsInNameOrder() {
+		int[] order = new int[store.size()];
+		for (int row = 0; row < order.length; row++)
+			order[row] = row;
+		SortUtilities.sort(order, order.length, new IndexComparator() {
+			@Override
+			public int compare(int a, int b) {
+				return rowDocuments.get(a).compareTo(rowDocuments.get(b));
+			}
+		});
+		return order;
 	}
 
 	/**
 	 * Return the scores for all the documents in the corpus, calculating scores
-	 * as needed.
+	 * as needed. Documents that are not loaded are loaded to be scored and
+	 * unloaded afterwards.
 	 * 
 	 * @return the scores table
 	 */
-	public Map<Document, Map<Method, PrecisionRecall>> getScores() {
-		// Enumerate all the documents in the scores table.
-		for (Entry<Document, Map<Method, PrecisionRecall>> entry : scores
-				.entrySet()) {
-			Document document = entry.getKey();
-			Map<Method, PrecisionRecall> documentScores = entry.getValue();
-			// If a document's scores entry is null it has not been scored yet,
-			// so score it now and add the result to the scores table.
-			if (null == documentScores) {
-				documentScores = new HashMap<Method, PrecisionRecall>();
-				scores.put(document, documentScores);
-				for (Method method : methods) {
-					PrecisionRecall documentScore = scoreDocument(document,
-							method);
-					documentScores.put(method, documentScore);
-				}
+	public ScoreStore getScores() {
+		// Score the documents that have not been scored yet in name order.
+		for (DocumentKey key : getUnscoredDocuments())
+			setChains(key, loadChains(key));
+		// At this point all the documents in the corpus have been scored.
+		return store;
+	}
+
+	/**
+	 * Extract the chains of a document, loading it from the corpus if
+	 * necessary. A document that was not already loaded is unloaded again.
+	 * <p>
+	 * This does not change the scorer, so it may be called from a thread other
+	 * than the one that calls the other methods. It does use the corpus, so
+	 * while the corpus is in use on another thread, such as the Swing event
+	 * dispatch thread, it must be called on that thread.
+	 * 
+	 * @param key
+	 *            document
+	 * @return the document's chains, or null if it has no coreference
+	 *         information
+	 */
+	public DocumentChains loadChains(DocumentKey key) {
+		statistics.extractionStarted();
+		long start = System.nanoTime();
+		try {
+			return extractChains(key);
+		} finally {
+			statistics.recordExtraction(System.nanoTime() - start);
+			statistics.extractionFinished();
+		}
+	}
+
+	private DocumentChains extractChains(DocumentKey key) {
+		MentionAligner aligner = this.aligner;
+		ScoringProfiler profiler = this.profiler;
+		Document document = key.getTransientDocument();
+		boolean loaded = true;
+		if (null == document) {
+			int index = getCorpusIndex(key);
+			loaded = corpus.isDocumentLoaded(index);
+			ScoringProfiler.Mark mark = null == profiler ? null : profiler
+					.mark();
+			document = corpus.get(index);
+			if (null != profiler)
+				profiler.record(key, ScoringProfiler.Phase.LOAD, mark);
+		}
+		try {
+			ScoringProfiler.Mark mark = null == profiler ? null : profiler
+					.mark();
+			DocumentChains chains = getChains(document,
+					ANNIEConstants.DOCUMENT_COREF_FEATURE_NAME, keyName,
+					responseName, aligner, loaded);
+			if (null != profiler)
+				profiler.record(key, ScoringProfiler.Phase.EXTRACT, mark);
+			return chains;
+		} finally {
+			// Scoring only reads the document, so it is not written back to
+			// the data store.
+			if (!loaded)
+				corpus.unloadDocument(document, false);
+		}
+	}
+
+	/**
+	 * Extract the chains of a document, reading it straight from the corpus'
+	 * data store if it is not loaded. The document read is deleted again and
+	 * never enters the corpus.
+	 * <p>
+	 * Unlike {@link #loadChains(DocumentKey)}, this does not load documents
+	 * through the corpus, so several threads may call it at once. Documents
+	 * that are loaded or that are not in a data store are handled as by that
+	 * method.
+	 * 
+	 * @param key
+	 *            document
+	 * @return the document's chains, or null if it has no coreference
+	 *         information
+	 * @throws GateException
+	 *             if the document cannot be read from the data store
+	 */
+	public DocumentChains readChains(DocumentKey key) throws GateException {
+		return extractChains(key, readDocument(key));
+	}
+
+	/**
+	 * Read a document straight from the corpus' data store, as the first half
+	 * of {@link #readChains}. Several threads may call this at once.
+	 * 
+	 * @param key
+	 *            document
+	 * @return a new copy of the document, or null if the document is loaded
+	 *         or not in a data store
+	 * @throws GateException
+	 *             if the document cannot be read from the data store
+	 */
+	public Document readDocument(DocumentKey key) throws GateException {
+		if (!isStored(key))
+			return null;
+		return readStoredDocument(key);
+	}
+
+	/**
+	 * @param key
+	 *            document
+	 * @return true if the document is in the corpus' data store and is not
+	 *         loaded in the corpus, so that {@link #readDocument} reads a
+	 *         private copy of it
+	 */
+	public boolean isStored(DocumentKey key) {
+		return null != corpus.getDataStore() && null != key.getPersistenceId()
+				&& !corpus.isDocumentLoaded(getCorpusIndex(key));
+	}
+
+	/**
+	 * Read a private copy of a document for which {@link #isStored} is true
+	 * from the corpus' data store. Unlike {@link #readDocument}, this does not
+	 * look at the corpus, so it may be called on any thread while the corpus
+	 * is in use on another.
+	 * 
+	 * @param key
+	 *            document
+	 * @return a new copy of the document
+	 * @throws GateException
+	 *             if the document cannot be read from the data store
+	 */
+	public Document readStoredDocument(DocumentKey key) throws GateException {
+		ScoringProfiler profiler = this.profiler;
+		ScoringProfiler.Mark mark = null == profiler ? null : profiler.mark();
+		Document document = Datastore.loadDocumentFromDatastore(corpus
+				.getDataStore(), key.getPersistenceId());
+		if (null != profiler)
+			profiler.record(key, ScoringProfiler.Phase.LOAD, mark);
+		return document;
+	}
+
+	/**
+	 * Extract the chains of a document returned by {@link #readDocument} and
+	 * delete it, as the second half of {@link #readChains}. Several threads
+	 * may call this at once.
+	 * 
+	 * @param key
+	 *            document
+	 * @param document
+	 *            document returned by {@link #readDocument}
+	 * @return the document's chains, or null if it has no coreference
+	 *         information
+	 */
+	public DocumentChains extractChains(DocumentKey key, Document document) {
+		if (null == document)
+			return loadChains(key);
+		statistics.extractionStarted();
+		long start = System.nanoTime();
+		try {
+			ScoringProfiler profiler = this.profiler;
+			ScoringProfiler.Mark mark = null == profiler ? null : profiler
+					.mark();
+			DocumentChains chains = getChains(document,
+					ANNIEConstants.DOCUMENT_COREF_FEATURE_NAME, keyName,
+					responseName, aligner, false);
+			if (null != profiler)
+				profiler.record(key, ScoringProfiler.Phase.EXTRACT, mark);
+			return chains;
+		} finally {
+			Factory.deleteResource(document);
+			statistics.recordExtraction(System.nanoTime() - start);
+			statistics.extractionFinished();
+		}
+	}
+
+	/**
+	 * Return the index of a document in the corpus, building the table of
+	 * indices if it has been discarded.
+	 */
+	private synchronized int getCorpusIndex(DocumentKey key) {
+		if (null == corpusIndices) {
+			corpusIndices = new HashMap<DocumentKey, Integer>();
+			for (int i = 0; i < corpus.size(); i++)
+				corpusIndices.put(DocumentKey.forCorpusIndex(corpus, i), i);
+		}
+		Integer index = corpusIndices.get(key);
+		if (null == index)
+			throw new IllegalArgumentException("Document " + key
+					+ " is not in the corpus");
+		return index;
+	}
+
+	private synchronized void clearCorpusIndices() {
+		corpusIndices = null;
+	}
+
+	/**
+	 * Set the alignment of response mentions with key mentions. All the
+	 * documents will be rescored.
+	 * 
+	 * @param aligner
+	 *            mention aligner, or null to match mentions by their exact
+	 *            offsets
+	 */
+	public void setAligner(MentionAligner aligner) {
+		this.aligner = aligner;
+		for (int row = 0; row < store.size(); row++) {
+			removeFromAverages(row);
+			store.setState(row, ScoreStore.UNSCORED);
+		}
+	}
+
+	/**
+	 * Return the corpus averages for a scoring method. These include all the
+	 * scored documents that have coreference information.
+	 * 
+	 * @param method
+	 *            scoring method
+	 * @return micro and macro averages of the document scores
+	 */
+	public PrecisionRecallTermsAverages getAverages(Method method) {
+		return averages.get(method);
+	}
+
+	/**
+	 * Return the corpus averages of each stratum of chains for a scoring
+	 * method. A document is included in the averages of the strata that its
+	 * chains belong to.
+	 * 
+	 * @param method
+	 *            scoring method
+	 * @return table of stratum name->micro and macro averages, in name order
+	 * @see MentionStratifier
+	 */
+	public SortedMap<String, PrecisionRecallTermsAverages> getStratumAverages(
+			Method method) {
+		return Collections.unmodifiableSortedMap(stratumAverages.get(method));
+	}
+
+	/**
+	 * @param key
+	 *            document
+	 * @return table of method->stratum->terms of the document's strata, or
+	 *         null if the document has not been scored
+	 */
+	public Map<Method, Map<String, PrecisionRecallTerms>> getStratumTerms(
+			DocumentKey key) {
+		Integer row = rows.get(key);
+		if (null == row || ScoreStore.SCORED != store.getState(row))
+			return null;
+		Map<Method, Map<String, PrecisionRecallTerms>> documentStrata = new HashMap<Method, Map<String, PrecisionRecallTerms>>();
+		for (Method method : methods) {
+			Map<String, PrecisionRecallTerms> methodStrata = new HashMap<String, PrecisionRecallTerms>();
+			for (String name : store.getStrata()) {
+				PrecisionRecallTerms terms = store.getStratumTerms(row, name,
+						method);
+				if (!isEmpty(terms))
+					methodStrata.put(name, terms);
 			}
+			documentStrata.put(method, methodStrata);
 		}
-		// At this point all the documents in the corpus have been scored.
-		return scores;
+		return documentStrata;
+	}
+
+	/**
+	 * Set the scores of a document from terms saved earlier, e.g. in a
+	 * {@link ScoreJournal}, instead of scoring it. Documents that are not in
+	 * the table are ignored.
+	 * 
+	 * @param key
+	 *            document
+	 * @param terms
+	 *            table of method->terms, or null if the document has no
+	 *            coreference information
+	 * @param strata
+	 *            table of method->stratum->terms, ignored if terms is null
+	 */
+	public void restoreScores(DocumentKey key,
+			Map<Method, PrecisionRecallTerms> terms,
+			Map<Method, Map<String, PrecisionRecallTerms>> strata) {
+		Integer row = rows.get(key);
+		if (null == row)
+			return;
+		removeFromAverages(row);
+		overlaps.remove(key);
+		if (null == terms) {
+			store.setState(row, ScoreStore.UNANNOTATED);
+			return;
+		}
+		for (Method method : methods) {
+			store.setTerms(row, method, terms.get(method));
+			averages.get(method).addTerms(terms.get(method));
+		}
+		for (Method method : methods)
+			for (Entry<String, PrecisionRecallTerms> entry : strata.get(method)
+					.entrySet()) {
+				store.setStratumTerms(row, entry.getKey(), method, entry
+						.getValue());
+				addToStratumAverage(method, entry.getKey(), entry.getValue());
+			}
+		store.setState(row, ScoreStore.SCORED);
+	}
+
+	/**
+	 * Profile the scoring of each document. Documents scored before the
+	 * profiler is set are not profiled.
+	 *
+	 * @param profiler
+	 *            per-document profiler, or null to stop profiling
+	 */
+	public void setProfiler(ScoringProfiler profiler) {
+		this.profiler = profiler;
+	}
+
+	/**
+	 * @return counts and timings of the scoring of documents
+	 */
+	public ScoringStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Return the score store. Its rows are updated as documents are scored.
+	 * 
+	 * @return compact table of the document scores
+	 */
+	public ScoreStore getScoreStore() {
+		return store;
+	}
+
+	/**
+	 * List the split and merge errors of a document. The chain overlap of a
+	 * scored document that is loaded is reused. Otherwise the document's
+	 * chains are loaded and their overlap is built, but the scorer is not
+	 * changed.
+	 * 
+	 * @param key
+	 *            document
+	 * @param method
+	 *            scoring method whose impact orders the errors
+	 * @return the document's errors, most harmful first
+	 * @see ChainOverlap#getErrors
+	 */
+	public List<ChainError<List<Long>>> getErrors(DocumentKey key,
+			Method method) {
+		ChainOverlap<List<Long>> overlap = overlaps.get(key);
+		Integer row = rows.get(key);
+		if (null == overlap || null == row
+				|| ScoreStore.SCORED != store.getState(row)) {
+			DocumentChains chains = loadChains(key);
+			if (null == chains)
+				return new ArrayList<ChainError<List<Long>>>();
+			overlap = new ChainOverlap<List<Long>>(chains.getKeyChains(),
+					chains.getResponseChains());
+		}
+		return overlap.getErrors(method);
+	}
+
+	/**
+	 * Score all the documents and write their scores to a binary file in name
+	 * order.
+	 * 
+	 * @param file
+	 *            output file
+	 * @throws IOException
+	 * @see ScoreStoreFile
+	 */
+	public void exportScores(File file) throws IOException {
+		ScoreStoreFile.write(getScores(), getRowsInNameOrder(), file);
+	}
+
+	/**
+	 * Remove a row's contribution to the corpus averages. Only scored rows
+	 * contribute to the averages.
+	 */
+	private void removeFromAverages(int row) {
+		if (ScoreStore.SCORED != store.getState(row))
+			return;
+		for (Method method : methods) {
+			averages.get(method).removeTerms(store.getTerms(row, method));
+			Map<String, PrecisionRecallTermsAverages> strata = stratumAverages
+					.get(method);
+			for (String name : store.getStrata()) {
+				PrecisionRecallTerms terms = store.getStratumTerms(row, name,
+						method);
+				if (isEmpty(terms))
+					continue;
+				PrecisionRecallTermsAverages stratum = strata.get(name);
+				stratum.removeTerms(terms);
+				if (0 == stratum.size())
+					strata.remove(name);
+			}
+		}
+		store.clearStratumTerms(row);
 	}
 
 	/**
-	 * Generate coreference scores for a single document. Use the default match
-	 * feature and key and response names.
+	 * Extract the chains of a document. Use the default match feature and key
+	 * and response names.
 	 * 
 	 * @param document
-	 *            document to score
-	 * @return precision/recall scores for this document
+	 *            GATE document
+	 * @return the document's chains, or null if it has no coreference
+	 *         information
 	 */
-	private PrecisionRecall scoreDocument(Document document, Method method) {
-		return scoreDocument(document,
-				ANNIEConstants.DOCUMENT_COREF_FEATURE_NAME, DEFAULT_KEY_NAME,
-				null, method);
+	static DocumentChains getChains(Document document) {
+		return getChains(document, ANNIEConstants.DOCUMENT_COREF_FEATURE_NAME,
+				DEFAULT_KEY_NAME, null, null, true);
 	}
 
 	/**
-	 * Generate coreference scores for a single document.
+	 * Extract the chains of a document.
 	 * 
 	 * @param document
-	 *            document to score
+	 *            GATE document
 	 * @param matchFeature
 	 *            name of the document matches feature, e.g. MatchesAnnots
 	 * @param keyName
@@ -205,30 +948,243 @@ public class CorpusScorer {
 	 * @param responseName
 	 *            name of the response match sets in the matches annotation,
 	 *            e.g. null
-	 * @return precision/recall scores for this document
+	 * @param aligner
+	 *            aligns response mentions with key mentions, or null to match
+	 *            mentions by their exact offsets
+	 * @param loaded
+	 *            true if the document stays loaded after its chains have been
+	 *            read
+	 * @return the document's chains, or null if it has no coreference
+	 *         information
 	 */
-	private PrecisionRecall scoreDocument(Document document,
-			String matchFeature, String keyName, String responseName,
-			Method method) {
-		logger.debug("Score " + document.getName() + " " + method);
+	static DocumentChains getChains(Document document, String matchFeature,
+			String keyName, String responseName, MentionAligner aligner,
+			boolean loaded) {
 		FeatureMap features = document.getFeatures();
-
-		// Documents without coreference information get a null score.
 		if (!features.containsKey(matchFeature))
 			return null;
-
-		// Extract the coreference information.
 		@SuppressWarnings("unchecked")
 		Map<String, Collection<Collection<Integer>>> matchIDsets = (Map<String, Collection<Collection<Integer>>>) features
 				.get(matchFeature);
-		Set<Set<List<Long>>> key = getMatchSets(document, matchIDsets, keyName);
-		Set<Set<List<Long>>> response = getMatchSets(document, matchIDsets,
-				responseName);
+		// Key annotation types take precedence over response ones for
+		// elements in both.
+		Map<List<Long>, String> mentionTypes = new HashMap<List<Long>, String>();
+		Set<Set<List<Long>>> responseChains = getMatchSets(document,
+				matchIDsets, responseName, mentionTypes);
+		Set<Set<List<Long>>> keyChains = getMatchSets(document, matchIDsets,
+				keyName, mentionTypes);
+		// Aligned response mentions take the offsets of their key mentions.
+		if (null != aligner) {
+			Set<List<Long>> keyMentions = new HashSet<List<Long>>();
+			for (Set<List<Long>> chain : keyChains)
+				keyMentions.addAll(chain);
+			Set<List<Long>> responseMentions = new HashSet<List<Long>>();
+			for (Set<List<Long>> chain : responseChains)
+				responseMentions.addAll(chain);
+			Map<List<Long>, List<Long>> heads = aligner.usesHeads() ? getHeads(
+					document, keyMentions)
+					: null;
+			responseChains = MentionAligner.replace(responseChains, aligner
+					.align(keyMentions, responseMentions, heads));
+		}
+		return new DocumentChains(keyChains, responseChains, mentionTypes,
+				loaded);
+	}
+
+	/**
+	 * Score a document from its chains and enter the scores in the scores
+	 * table. Documents that are no longer in the table are ignored.
+	 * <p>
+	 * If the document has been scored before, its chains are diffed against
+	 * the chains it had then and only the differences are rescored.
+	 * 
+	 * @param key
+	 *            document
+	 * @param chains
+	 *            the document's chains, or null if it has no coreference
+	 *            information
+	 */
+	public void setChains(DocumentKey key, DocumentChains chains) {
+		Integer row = rows.get(key);
+		if (null == row)
+			return;
+		logger.debug("Score " + key.getName());
+		removeFromAverages(row);
+
+		// Documents without coreference information get a null score.
+		if (null == chains) {
+			overlaps.remove(key);
+			store.setState(row, ScoreStore.UNANNOTATED);
+			statistics.recordDocument(false);
+			return;
+		}
+
+		// Update the overlap with the chains that have changed since the
+		// document was last scored.
+		ScoringProfiler profiler = this.profiler;
+		ScoringProfiler.Mark mark = null == profiler ? null : profiler.mark();
+		long start = System.nanoTime();
+		ChainOverlap<List<Long>> overlap = overlaps.get(key);
+		boolean reused = null != overlap;
+		if (!reused)
+			overlap = createOverlap(chains);
+		else {
+			// Only chains with an element whose type has changed can have
+			// moved to another stratum.
+			MentionStratifier stratifier = new MentionStratifier(chains
+					.getMentionTypes());
+			overlap.update(chains.getKeyChains(), chains.getResponseChains(),
+					stratifier, stratifier
+							.getRetypedMentions((MentionStratifier) overlap
+									.getStratifier()));
+		}
+		statistics.recordScoring(System.nanoTime() - start, reused,
+				countMentions(chains));
+		setScores(key, row, chains, overlap, profiler, mark);
+	}
+
+	/**
+	 * Compare a document's key and response chains. This does not change the
+	 * scorer, so it may be called from a thread other than the one that calls
+	 * the other methods, and is the expensive part of
+	 * {@link #setChains(DocumentKey, DocumentChains)}.
+	 * 
+	 * @param key
+	 *            document
+	 * @param chains
+	 *            the document's chains, or null if it has no coreference
+	 *            information
+	 * @return the overlap of the chains, or null if there are no chains
+	 */
+	public ChainOverlap<List<Long>> compareChains(DocumentKey key,
+			DocumentChains chains) {
+		if (null == chains)
+			return null;
+		ScoringProfiler profiler = this.profiler;
+		ScoringProfiler.Mark mark = null == profiler ? null : profiler.mark();
+		long start = System.nanoTime();
+		ChainOverlap<List<Long>> overlap = createOverlap(chains);
+		int mentions = countMentions(chains);
+		statistics.recordScoring(System.nanoTime() - start, false, mentions);
+		if (null != profiler) {
+			profiler.record(key, ScoringProfiler.Phase.SCORE, mark);
+			profiler.recordCounts(key, mentions, chains.getKeyChains().size()
+					+ chains.getResponseChains().size());
+		}
+		return overlap;
+	}
+
+	/**
+	 * Score a document from the overlap of its chains returned by
+	 * {@link #compareChains}, updating the corpus averages.
+	 * 
+	 * @param key
+	 *            document
+	 * @param chains
+	 *            the document's chains, or null if it has no coreference
+	 *            information
+	 * @param overlap
+	 *            overlap of the chains
+	 */
+	public void setOverlap(DocumentKey key, DocumentChains chains,
+			ChainOverlap<List<Long>> overlap) {
+		Integer row = rows.get(key);
+		if (null == row)
+			return;
+		logger.debug("Score " + key.getName());
+		removeFromAverages(row);
+		if (null == chains) {
+			overlaps.remove(key);
+			store.setState(row, ScoreStore.UNANNOTATED);
+			statistics.recordDocument(false);
+			return;
+		}
+		setScores(key, row, chains, overlap, null, null);
+	}
+
+	private static ChainOverlap<List<Long>> createOverlap(DocumentChains chains) {
+		return new ChainOverlap<List<Long>>(chains.getKeyChains(), chains
+				.getResponseChains(), new MentionStratifier(chains
+				.getMentionTypes()));
+	}
+
+	/**
+	 * Enter the scores of a document's overlap in its row and the corpus
+	 * averages.
+	 */
+	private void setScores(DocumentKey key, int row, DocumentChains chains,
+			ChainOverlap<List<Long>> overlap, ScoringProfiler profiler,
+			ScoringProfiler.Mark mark) {
+		// The overlap is only kept while the document is loaded, because only
+		// then can its chains change.
+		if (chains.isLoaded())
+			overlaps.put(key, overlap);
+		else
+			overlaps.remove(key);
+
+		// Generate scores and add them to the corpus averages.
+		for (Method method : methods) {
+			PrecisionRecallTerms terms = overlap.getTerms(method);
+			store.setTerms(row, method, terms);
+			averages.get(method).addTerms(terms);
+		}
+		addToStratumAverages(row, overlap);
+		store.setState(row, ScoreStore.SCORED);
+		statistics.recordDocument(true);
+		if (null != profiler) {
+			profiler.record(key, ScoringProfiler.Phase.SCORE, mark);
+			profiler.recordCounts(key, countMentions(chains), chains
+					.getKeyChains().size()
+					+ chains.getResponseChains().size());
+		}
+	}
+
+	private static int countMentions(DocumentChains chains) {
+		int mentions = 0;
+		for (Set<List<Long>> chain : chains.getKeyChains())
+			mentions += chain.size();
+		for (Set<List<Long>> chain : chains.getResponseChains())
+			mentions += chain.size();
+		return mentions;
+	}
+
+	/**
+	 * Add the terms of a document's strata to its row and the stratum
+	 * averages. Strata with no key or response elements are skipped.
+	 */
+	private void addToStratumAverages(int row,
+			ChainOverlap<List<Long>> overlap) {
+		for (Method method : methods)
+			for (String name : overlap.getStrata()) {
+				PrecisionRecallTerms terms = overlap.getTerms(method, name);
+				if (isEmpty(terms))
+					continue;
+				store.setStratumTerms(row, name, method, terms);
+				addToStratumAverage(method, name, terms);
+			}
+	}
+
+	/**
+	 * Add one stratum's terms to its averages, creating them if need be.
+	 */
+	private void addToStratumAverage(Method method, String name,
+			PrecisionRecallTerms terms) {
+		Map<String, PrecisionRecallTermsAverages> strata = stratumAverages
+				.get(method);
+		PrecisionRecallTermsAverages stratum = strata.get(name);
+		if (null == stratum) {
+			stratum = new PrecisionRecallTermsAverages();
+			strata.put(name, stratum);
+		}
+		stratum.addTerms(terms);
+	}
 
-		// Generate score.
-		EquivalenceClassScorer<List<Long>> scorer = scorerFactory
-				.getScorer(method);
-		return scorer.score(key, response);
+	/**
+	 * @return true if a stratum has no key or response elements
+	 */
+	private static boolean isEmpty(PrecisionRecallTerms terms) {
+		return 0 == terms.getPrecisionDenominator()
+				&& 0 == terms.getRecallDenominator();
 	}
 
 	/**
@@ -247,9 +1203,32 @@ public class CorpusScorer {
 	 * @return set of sets of (Start, End) offset pairs corresponding to the
 	 *         annotation IDs.
 	 */
-	private Set<Set<List<Long>>> getMatchSets(Document document,
+	static Set<Set<List<Long>>> getMatchSets(Document document,
 			Map<String, Collection<Collection<Integer>>> matchIDs,
 			String annotationSet) {
+		return getMatchSets(document, matchIDs, annotationSet, null);
+	}
+
+	/**
+	 * Map sets of annotation IDs to sets of (Start, End) offset pairs, and
+	 * record the annotation type of each offset pair.
+	 * 
+	 * @param document
+	 *            GATE document
+	 * @param matchIDs
+	 *            matching annotation IDs, e.g. from the MatchesAnnots feature
+	 *            of a document
+	 * @param annotationSet
+	 *            set name, e.g. "key" or null
+	 * @param mentionTypes
+	 *            table of offset pair->annotation type to which the types are
+	 *            added, or null
+	 * @return set of sets of (Start, End) offset pairs corresponding to the
+	 *         annotation IDs.
+	 */
+	static Set<Set<List<Long>>> getMatchSets(Document document,
+			Map<String, Collection<Collection<Integer>>> matchIDs,
+			String annotationSet, Map<List<Long>, String> mentionTypes) {
 		Set<Set<List<Long>>> matchOffsetSets = new HashSet<Set<List<Long>>>();
 
 		Collection<Collection<Integer>> matchIDsets = matchIDs
@@ -262,41 +1241,117 @@ public class CorpusScorer {
 			Set<List<Long>> offsetSet = new HashSet<List<Long>>();
 
 			for (Integer matchID : matchIDset) {
-				List<Long> offsets = new ArrayList<Long>();
-				Long start = annotations.get(matchID).getStartNode()
-						.getOffset();
-				Long end = annotations.get(matchID).getEndNode().getOffset();
-
-				offsets.add(0, start);
-				offsets.add(1, end);
+				List<Long> offsets = getOffsets(annotations, matchID);
 				offsetSet.add(offsets);
+				if (null != mentionTypes)
+					mentionTypes.put(offsets, annotations.get(matchID)
+							.getType());
 			}
 			matchOffsetSets.add(offsetSet);
 		}
 		return matchOffsetSets;
 	}
 
+	/**
+	 * Find the heads of mentions. The head of a mention is taken to be the
+	 * last token it contains, or the whole mention if it contains no tokens.
+	 * 
+	 * @param document
+	 *            GATE document
+	 * @param mentions
+	 *            (Start, End) offset pairs of the mentions
+	 * @return table of mention->(Start, End) offset pair of its head
+	 */
+	static Map<List<Long>, List<Long>> getHeads(Document document,
+			Collection<List<Long>> mentions) {
+		Map<List<Long>, List<Long>> heads = new HashMap<List<Long>, List<Long>>();
+		AnnotationSet tokens = document.getAnnotations().get(
+				ANNIEConstants.TOKEN_ANNOTATION_TYPE);
+		for (List<Long> mention : mentions) {
+			Annotation head = null;
+			for (Annotation token : tokens.getContained(mention.get(0), mention
+					.get(1)))
+				if (null == head
+						|| token.getStartNode().getOffset() > head
+								.getStartNode().getOffset())
+					head = token;
+			if (null == head)
+				heads.put(mention, mention);
+			else {
+				List<Long> offsets = new ArrayList<Long>();
+				offsets.add(head.getStartNode().getOffset());
+				offsets.add(head.getEndNode().getOffset());
+				heads.put(mention, offsets);
+			}
+		}
+		return heads;
+	}
+
+	/**
+	 * Map an annotation ID to its (Start, End) offset pair.
+	 * 
+	 * @param annotations
+	 *            annotation set containing the annotation
+	 * @param annotationID
+	 *            annotation ID
+	 * @return (Start, End) offset pair of the annotation
+	 */
+	static List<Long> getOffsets(AnnotationSet annotations, Integer annotationID) {
+		List<Long> offsets = new ArrayList<Long>();
+		Long start = annotations.get(annotationID).getStartNode().getOffset();
+		Long end = annotations.get(annotationID).getEndNode().getOffset();
+
+		offsets.add(0, start);
+		offsets.add(1, end);
+		return offsets;
+	}
+
 	/**
 	 * Print precision/recall scores for all the documents in a corpus in a data
 	 * store.
+	 * <p>
+	 * The positional arguments may be preceded by options that align response
+	 * mentions with key mentions: <code>-tolerance</code> <i>n</i> aligns
+	 * mentions whose start and end offsets are each within <i>n</i>
+	 * characters, <code>-heads</code> aligns a response mention with a key
+	 * mention whose head it contains, and <code>-overlap</code> aligns
+	 * overlapping mentions. Without them mentions must match exactly.
 	 * 
 	 * @param args
 	 *            first argument is the data store path, second argument is the
-	 *            corpus name
+	 *            corpus name, optional third argument is a file to which the
+	 *            scores are exported in binary format instead of being printed
 	 * @throws GateException
+	 * @throws IOException
 	 */
-	public static void main(String[] args) throws GateException {
+	public static void main(String[] args) throws GateException, IOException {
 		BasicConfigurator.configure();
 
-		String dataStorePath = args[0];
-		String corpusName = args[1];
+		long tolerance = -1;
+		boolean heads = false;
+		boolean overlap = false;
+		int i = 0;
+		for (; i < args.length && args[i].startsWith("-"); i++) {
+			if (args[i].equals("-tolerance"))
+				tolerance = Long.parseLong(args[++i]);
+			else if (args[i].equals("-heads"))
+				heads = true;
+			else if (args[i].equals("-overlap"))
+				overlap = true;
+			else
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+		String dataStorePath = args[i];
+		String corpusName = args[i + 1];
+		String exportPath = args.length > i + 2 ? args[i + 2] : null;
 
 		Gate.init();
 
-		// Use both scoring methods.
+		// Use all the scoring methods.
 		Set<Method> methods = new HashSet<Method>();
 		methods.add(EquivalenceClassScorerFactory.Method.MUC);
 		methods.add(EquivalenceClassScorerFactory.Method.BCUBED);
+		methods.add(EquivalenceClassScorerFactory.Method.MENTION);
 
 		// Open the data store.
 		DataStore dataStore = Factory.openDataStore(
@@ -307,23 +1362,41 @@ public class CorpusScorer {
 			// These lists have corresponding elements.
 			Corpus corpus = Datastore.loadCorpusFromDatastore(dataStore,
 					corpusName);
+			CorpusScorer scorer = null;
 			try {
-				CorpusScorer scorer = new CorpusScorer(corpus, methods);
-				Map<Document, Map<Method, PrecisionRecall>> corpusScores = scorer
-						.getScores();
-				for (Entry<Document, Map<Method, PrecisionRecall>> documentScores : corpusScores
-						.entrySet()) {
-					Document document = documentScores.getKey();
-					Map<Method, PrecisionRecall> scores = documentScores
-							.getValue();
-
-					System.out.println(document.getName());
-					PrecisionRecall mucScore = scores.get(Method.MUC);
+				scorer = new CorpusScorer(corpus, methods);
+				if (tolerance >= 0 || heads || overlap)
+					scorer.setAligner(new MentionAligner(tolerance, heads,
+							overlap));
+				scorer.getStatistics().register(corpusName);
+				if (null != exportPath) {
+					scorer.exportScores(new File(exportPath));
+					return;
+				}
+				ScoreStore corpusScores = scorer.getScores();
+				for (int row : scorer.getRowsInNameOrder()) {
+					System.out.println(corpusScores.getName(row));
+					PrecisionRecall mucScore = corpusScores.getScore(row,
+							Method.MUC);
 					System.out.format("\tMUC: %s\n", mucScore);
-					PrecisionRecall bCubedScore = scores.get(Method.BCUBED);
+					PrecisionRecall bCubedScore = corpusScores.getScore(row,
+							Method.BCUBED);
 					System.out.format("\tB-Cubed: %s\n", bCubedScore);
+					PrecisionRecall mentionScore = corpusScores.getScore(row,
+							Method.MENTION);
+					System.out.format("\tMention: %s\n", mentionScore);
 				}
+				for (Method method : methods)
+					System.out.format("%s: %s\n", method, scorer.getAverages(
+							method).getMacroAverage());
+				for (Method method : methods)
+					for (Entry<String, PrecisionRecallTermsAverages> entry : scorer
+							.getStratumAverages(method).entrySet())
+						System.out.format("%s %s: %s\n", method, entry
+								.getKey(), entry.getValue().getMacroAverage());
 			} finally {
+				if (null != scorer)
+					scorer.getStatistics().unregister();
 				Factory.deleteResource(corpus);
 			}
 		} finally {
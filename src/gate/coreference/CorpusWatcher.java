@@ -0,0 +1,197 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.Corpus;
+import gate.coreference.scorer.ScoreStore;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.util.GateException;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rescores the documents of a corpus in a serial data store as they are
+ * rewritten.
+ * <p>
+ * A serial data store keeps each document in a file of the
+ * <tt>gate.corpora.DocumentImpl</tt> directory named by its LRID. The watcher
+ * polls that directory with {@link FileFingerprints} and reads the documents
+ * whose files have changed straight from the data store, so only they are
+ * rescored and the corpus averages are updated incrementally. A changed file
+ * that is not a document in the scorer, e.g. a document added to the data
+ * store after the corpus was opened, is logged and ignored.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class CorpusWatcher {
+
+	static Logger logger = Logger.getLogger(CorpusWatcher.class.getName());
+
+	/**
+	 * Directory of the document files in a serial data store
+	 */
+	public static final String DOCUMENT_DIRECTORY = "gate.corpora.DocumentImpl";
+
+	final private CorpusScorer scorer;
+	final private FileFingerprints fingerprints;
+
+	/**
+	 * Table of file name->document
+	 */
+	final private Map<String, DocumentKey> documents = new HashMap<String, DocumentKey>();
+
+	/**
+	 * Record the fingerprints of the document files. Changes made before this
+	 * are not seen, so the scorer should already have scored the documents.
+	 *
+	 * @param scorer
+	 *            scorer of a corpus in a serial data store
+	 * @param dataStoreDirectory
+	 *            directory of the data store
+	 */
+	public CorpusWatcher(CorpusScorer scorer, File dataStoreDirectory) {
+		this.scorer = scorer;
+		fingerprints = new FileFingerprints(new File(dataStoreDirectory,
+				DOCUMENT_DIRECTORY));
+		mapDocuments();
+	}
+
+	/**
+	 * Build the table of file name->document from the scorer's documents.
+	 */
+	private void mapDocuments() {
+		documents.clear();
+		for (int row = 0; row < scorer.getScoreStore().size(); row++) {
+			DocumentKey key = scorer.getDocumentKey(row);
+			if (null != key.getPersistenceId())
+				documents.put(key.getPersistenceId().toString(), key);
+		}
+	}
+
+	/**
+	 * Rescore the documents that have changed since the last call. A
+	 * document that cannot be read, e.g. because it is still being written,
+	 * is tried again by the next call. The table of documents is rebuilt when
+	 * a file that is not in it changes, in case the document has been added
+	 * to the scorer since.
+	 *
+	 * @return the rescored documents
+	 * @throws IOException
+	 *             if the document directory cannot be read
+	 */
+	public List<DocumentKey> rescoreChanged() throws IOException {
+		List<DocumentKey> rescored = new ArrayList<DocumentKey>();
+		boolean mapped = false;
+		for (String name : fingerprints.poll()) {
+			DocumentKey key = documents.get(name);
+			if (null == key && !mapped) {
+				mapDocuments();
+				mapped = true;
+				key = documents.get(name);
+			}
+			if (null == key) {
+				logger.info("Ignoring " + name
+						+ ", which is not a document in the corpus");
+				continue;
+			}
+			try {
+				scorer.setChains(key, scorer.readChains(key));
+				rescored.add(key);
+			} catch (GateException e) {
+				logger.warn("Cannot rescore " + key.getName(), e);
+				fingerprints.forget(name);
+			} catch (RuntimeException e) {
+				logger.warn("Cannot rescore " + key.getName(), e);
+				fingerprints.forget(name);
+			}
+		}
+		return rescored;
+	}
+
+	/**
+	 * Score a corpus in a data store, then rescore its documents whenever
+	 * they change and print their new scores and the corpus averages.
+	 *
+	 * @param args
+	 *            data store path, corpus name, and optionally the polling
+	 *            interval in milliseconds, 1000 by default
+	 * @throws GateException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws GateException, IOException,
+			InterruptedException {
+		BasicConfigurator.configure();
+
+		final String dataStorePath = args[0];
+		String corpusName = args[1];
+		final long interval = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+		final Set<Method> methods = EnumSet.of(Method.MUC, Method.BCUBED,
+				Method.MENTION);
+
+		Datastore.withCorpus(dataStorePath, corpusName,
+				new Datastore.CorpusTask<Void>() {
+					public Void run(Corpus corpus) throws GateException,
+							IOException, InterruptedException {
+						CorpusScorer scorer = new CorpusScorer(corpus, methods);
+						ScoreStore scores = scorer.getScores();
+						// Fingerprint the documents as they were scored.
+						CorpusWatcher watcher = new CorpusWatcher(scorer,
+								new File(dataStorePath));
+						printAverages(scorer, methods);
+						while (true) {
+							Thread.sleep(interval);
+							List<DocumentKey> rescored;
+							try {
+								rescored = watcher.rescoreChanged();
+							} catch (IOException e) {
+								logger.warn("Cannot poll " + dataStorePath, e);
+								continue;
+							}
+							if (rescored.isEmpty())
+								continue;
+							for (DocumentKey key : rescored) {
+								int row = scorer.getRow(key);
+								System.out.println(scores.getName(row));
+								for (Method method : methods)
+									System.out.format("\t%s: %s\n", method,
+											scores.getScore(row, method));
+							}
+							printAverages(scorer, methods);
+						}
+					}
+				});
+	}
+
+	private static void printAverages(CorpusScorer scorer, Set<Method> methods) {
+		for (Method method : methods)
+			System.out.format("%s: %s\n", method, scorer.getAverages(method)
+					.getMacroAverage());
+	}
+}
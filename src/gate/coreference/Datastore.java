@@ -18,24 +18,82 @@
 
 package gate.coreference;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 import org.apache.log4j.Logger;
 
 import gate.Corpus;
 import gate.DataStore;
+import gate.Document;
 import gate.Factory;
 import gate.FeatureMap;
+import gate.Gate;
 import gate.util.GateException;
 
 /**
  * Utility class for loading a corpus from a data store.
  * 
+ * The command-line programs share {@link #withCorpus}, which initializes
+ * GATE, opens a serial data store, loads a corpus and cleans up afterwards.
+ * 
  * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
  */
 public class Datastore {
 	static Logger logger = Logger.getLogger(Datastore.class.getName());
 
+	/**
+	 * Work done on a corpus loaded by {@link Datastore#withCorpus}.
+	 * 
+	 * @param <T>
+	 *            type of the result
+	 */
+	public interface CorpusTask<T> {
+		/**
+		 * @param corpus
+		 *            the loaded corpus
+		 * @return the result of the task
+		 */
+		public T run(Corpus corpus) throws GateException, IOException,
+				InterruptedException;
+	}
+
+	/**
+	 * Initialize GATE, open a serial data store, load a corpus from it and run
+	 * a task on the corpus. The corpus is deleted and the data store closed
+	 * when the task finishes, whether or not it succeeds.
+	 * 
+	 * @param dataStorePath
+	 *            path to a serial data store directory
+	 * @param corpusName
+	 *            name of a corpus in the data store
+	 * @param task
+	 *            work to do on the corpus
+	 * @return the value returned by the task
+	 * @throws GateException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static <T> T withCorpus(String dataStorePath, String corpusName,
+			CorpusTask<T> task) throws GateException, IOException,
+			InterruptedException {
+		Gate.init();
+		DataStore dataStore = Factory.openDataStore(
+				"gate.persist.SerialDataStore", new File(dataStorePath).toURI()
+						.toString());
+		try {
+			Corpus corpus = loadCorpusFromDatastore(dataStore, corpusName);
+			try {
+				return task.run(corpus);
+			} finally {
+				Factory.deleteResource(corpus);
+			}
+		} finally {
+			dataStore.close();
+		}
+	}
+
 	/**
 	 * Load a corpus from a data store by name.
 	 * 
@@ -74,4 +132,33 @@ public class Datastore {
 		return (Corpus) Factory.createResource("gate.corpora.SerialCorpusImpl",
 				params);
 	}
+
+	/**
+	 * Load a document from a data store by its LRID, without going through a
+	 * corpus. The document is hidden, so that it does not appear in the GATE
+	 * GUI.
+	 * 
+	 * It is the caller's responsibility to call Factory.deleteResource() on the
+	 * value returned by this function.
+	 * 
+	 * @param dataStore
+	 *            data store
+	 * @param lrid
+	 *            LRID of a document in the data store
+	 * @return the specified document
+	 * @throws GateException
+	 */
+	public static Document loadDocumentFromDatastore(DataStore dataStore,
+			Object lrid) throws GateException {
+		FeatureMap params = Factory.newFeatureMap();
+		params.put(DataStore.DATASTORE_FEATURE_NAME, dataStore);
+		params.put(DataStore.LR_ID_FEATURE_NAME, lrid);
+		FeatureMap features = Factory.newFeatureMap();
+		Gate.setHiddenAttribute(features, true);
+		Document document = (Document) Factory.createResource(
+				"gate.corpora.DocumentImpl", params, features, null);
+		// Keep it hidden in case the stored features replaced the ones given.
+		Gate.setHiddenAttribute(document.getFeatures(), true);
+		return document;
+	}
 }
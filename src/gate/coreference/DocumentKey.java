@@ -0,0 +1,172 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.Corpus;
+import gate.Document;
+import gate.corpora.SerialCorpusImpl;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Locale;
+
+/**
+ * Identifies a document in a corpus without requiring it to be loaded.
+ * <p>
+ * Documents stored in a data store are identified by their persistence ID,
+ * which a {@link SerialCorpusImpl} can supply for documents it has not loaded.
+ * Transient documents are always in memory, so they are identified by the
+ * document itself.
+ * <p>
+ * Keys are ordered by document name. The name's collation key is computed
+ * once when the key is created, so comparing keys does not collate strings.
+ * Documents with the same name are ordered by their persistence IDs, so keys of
+ * different documents never compare as equal.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class DocumentKey implements Comparable<DocumentKey> {
+	/**
+	 * Collator of document names. The alphabetical order is determined by the
+	 * locale settings.
+	 */
+	private static final Collator collator;
+	static {
+		collator = Collator.getInstance(Locale.getDefault());
+		collator.setStrength(Collator.TERTIARY);
+	}
+
+	final private String name;
+	final private CollationKey collationKey;
+	final private Object persistenceId;
+	final private Document transientDocument;
+
+	private DocumentKey(String name, Object persistenceId,
+			Document transientDocument) {
+		this.name = name;
+		synchronized (collator) {
+			collationKey = collator.getCollationKey(name);
+		}
+		this.persistenceId = persistenceId;
+		this.transientDocument = transientDocument;
+	}
+
+	/**
+	 * @param document
+	 *            a loaded document
+	 * @return key of the document
+	 */
+	public static DocumentKey forDocument(Document document) {
+		Object persistenceId = document.getLRPersistenceId();
+		if (null != persistenceId)
+			return new DocumentKey(document.getName(), persistenceId, null);
+		return new DocumentKey(document.getName(), null, document);
+	}
+
+	/**
+	 * Get the key of a document in a corpus. This does not load the document.
+	 *
+	 * @param corpus
+	 *            corpus
+	 * @param index
+	 *            index of the document in the corpus
+	 * @return key of the document
+	 */
+	public static DocumentKey forCorpusIndex(Corpus corpus, int index) {
+		if (!corpus.isDocumentLoaded(index)
+				&& corpus instanceof SerialCorpusImpl) {
+			Object persistenceId = ((SerialCorpusImpl) corpus)
+					.getDocumentPersistentID(index);
+			if (null != persistenceId)
+				return new DocumentKey(corpus.getDocumentName(index),
+						persistenceId, null);
+		}
+		return forDocument(corpus.get(index));
+	}
+
+	/**
+	 * @return document name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return collation key of the document name
+	 */
+	public CollationKey getCollationKey() {
+		return collationKey;
+	}
+
+	/**
+	 * @return the data store persistence ID, or null for a transient document
+	 */
+	public Object getPersistenceId() {
+		return persistenceId;
+	}
+
+	/**
+	 * @return the document if it is transient, otherwise null
+	 */
+	public Document getTransientDocument() {
+		return transientDocument;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof DocumentKey))
+			return false;
+		DocumentKey key = (DocumentKey) other;
+		if (null != persistenceId)
+			return persistenceId.equals(key.persistenceId);
+		return null == key.persistenceId
+				&& transientDocument == key.transientDocument;
+	}
+
+	@Override
+	public int hashCode() {
+		if (null != persistenceId)
+			return persistenceId.hashCode();
+		return System.identityHashCode(transientDocument);
+	}
+
+	@Override
+	public int compareTo(DocumentKey other) {
+		int c = collationKey.compareTo(other.collationKey);
+		if (0 != c || equals(other))
+			return c;
+		// Different documents with the same name.
+		if (null != persistenceId && null != other.persistenceId)
+			c = persistenceId.toString().compareTo(
+					other.persistenceId.toString());
+		else if (null == persistenceId)
+			c = null == other.persistenceId ? 0 : 1;
+		else
+			c = -1;
+		if (0 != c)
+			return c;
+		int h1 = hashCode(), h2 = other.hashCode();
+		return h1 < h2 ? -1 : (h1 == h2 ? 0 : 1);
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
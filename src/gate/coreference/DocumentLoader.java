@@ -0,0 +1,161 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.Corpus;
+import gate.coreference.CorpusScorer.DocumentChains;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.util.GateException;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Scores the documents of a {@link CorpusScorer} with a pool of threads that
+ * read them from the corpus' data store concurrently.
+ * <p>
+ * Reading and deserializing documents takes most of the time of scoring a
+ * corpus that is not loaded. Here each pool thread reads a document straight
+ * from the data store and extracts its chains, and the calling thread enters
+ * the chains in the scorer as they come in, so the scorer is only changed on
+ * that thread. No more than a fixed number of documents are read but not yet
+ * scored at any time, which bounds the memory they use.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ * @see CorpusScorer#readChains
+ */
+public class DocumentLoader {
+
+	static Logger logger = Logger.getLogger(DocumentLoader.class.getName());
+
+	final private CorpusScorer scorer;
+	final private int threads;
+	final private int maxInFlight;
+
+	/**
+	 * @param scorer
+	 *            scorer of the documents
+	 * @param threads
+	 *            number of threads that read documents
+	 * @param maxInFlight
+	 *            greatest number of documents read but not yet scored
+	 */
+	public DocumentLoader(CorpusScorer scorer, int threads, int maxInFlight) {
+		if (threads < 1 || maxInFlight < 1)
+			throw new IllegalArgumentException(
+					"At least one thread and document are required");
+		this.scorer = scorer;
+		this.threads = threads;
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Score all the documents the scorer has not scored. A document that
+	 * cannot be read is logged and left unscored.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void scoreUnscored() throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CompletionService<DocumentChains> completion = new ExecutorCompletionService<DocumentChains>(
+				executor);
+		Map<Future<DocumentChains>, DocumentKey> inFlight = new HashMap<Future<DocumentChains>, DocumentKey>();
+		try {
+			Iterator<DocumentKey> keys = scorer.getUnscoredDocuments()
+					.iterator();
+			while (keys.hasNext() || !inFlight.isEmpty()) {
+				while (keys.hasNext() && inFlight.size() < maxInFlight) {
+					final DocumentKey key = keys.next();
+					inFlight.put(completion.submit(new Callable<DocumentChains>() {
+						@Override
+						public DocumentChains call() throws GateException {
+							return scorer.readChains(key);
+						}
+					}), key);
+				}
+				Future<DocumentChains> done = completion.take();
+				DocumentKey key = inFlight.remove(done);
+				try {
+					scorer.setChains(key, done.get());
+				} catch (ExecutionException e) {
+					logger.error("Cannot score " + key, e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Score a corpus in a data store and print its averages.
+	 *
+	 * @param args
+	 *            data store path, corpus name, and optionally the number of
+	 *            threads, the number of available processors by default, and
+	 *            the greatest number of documents in flight, twice the number
+	 *            of threads by default
+	 * @throws GateException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws GateException, IOException,
+			InterruptedException {
+		BasicConfigurator.configure();
+
+		String dataStorePath = args[0];
+		String corpusName = args[1];
+		final int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		final int maxInFlight = args.length > 3 ? Integer.parseInt(args[3])
+				: 2 * threads;
+		final Set<Method> methods = EnumSet.of(Method.MUC, Method.BCUBED,
+				Method.MENTION);
+
+		Datastore.withCorpus(dataStorePath, corpusName,
+				new Datastore.CorpusTask<Void>() {
+					public Void run(Corpus corpus) throws GateException,
+							InterruptedException {
+						CorpusScorer scorer = new CorpusScorer(corpus, methods);
+						long start = System.nanoTime();
+						new DocumentLoader(scorer, threads, maxInFlight)
+								.scoreUnscored();
+						System.out.format("Scored %d documents in %.1f s\n",
+								corpus.size(), (System.nanoTime() - start) / 1e9);
+						for (Method method : methods)
+							System.out.format("%s: %s\n", method, scorer
+									.getAverages(method).getMacroAverage());
+						return null;
+					}
+				});
+	}
+}
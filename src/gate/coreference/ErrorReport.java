@@ -0,0 +1,98 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.Corpus;
+import gate.coreference.scorer.ChainError;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.util.GateException;
+
+import org.apache.log4j.BasicConfigurator;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Split and merge error analysis of a corpus in a data store.
+ * <p>
+ * For every document this prints the key chains that were split across
+ * response chains and the response chains that merged key chains, ordered by
+ * their impact on a scoring method. The errors are read from the same chain
+ * overlaps that give the scores, so the report costs about as much as scoring
+ * the corpus.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ * @see ChainError
+ */
+public class ErrorReport {
+
+	/**
+	 * Print the split and merge errors of every document in a corpus.
+	 *
+	 * @param args
+	 *            data store path, corpus name, optionally the maximum number of
+	 *            errors to print per document, 10 by default, and the method
+	 *            by which to order them, MUC or BCUBED, MUC by default
+	 * @throws GateException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws GateException, IOException,
+			InterruptedException {
+		BasicConfigurator.configure();
+
+		String dataStorePath = args[0];
+		String corpusName = args[1];
+		final int limit = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		final Method order = args.length > 3 ? Method.valueOf(args[3])
+				: Method.MUC;
+		final Set<Method> methods = EnumSet.of(Method.MUC, Method.BCUBED);
+
+		Datastore.withCorpus(dataStorePath, corpusName,
+				new Datastore.CorpusTask<Void>() {
+					public Void run(Corpus corpus) throws GateException {
+						CorpusScorer scorer = new CorpusScorer(corpus, methods);
+						int splits = 0, merges = 0;
+						for (int row : scorer.getRowsInNameOrder()) {
+							DocumentKey key = scorer.getDocumentKey(row);
+							List<ChainError<List<Long>>> errors = scorer
+									.getErrors(key, order);
+							if (errors.isEmpty())
+								continue;
+							System.out.format("%s: %d errors\n", key.getName(),
+									errors.size());
+							for (ChainError<List<Long>> error : errors) {
+								if (ChainError.Kind.SPLIT == error.getKind())
+									splits++;
+								else
+									merges++;
+							}
+							for (ChainError<List<Long>> error : errors.subList(
+									0, Math.min(limit, errors.size())))
+								System.out.println("\t" + error);
+						}
+						System.out.format("Splits: %d\nMerges: %d\n", splits,
+								merges);
+						return null;
+					}
+				});
+	}
+}
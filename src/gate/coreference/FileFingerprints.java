@@ -0,0 +1,151 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Finds the files in a directory whose contents have changed since it was last
+ * polled.
+ * <p>
+ * A file is only read when its modification time or length changes, and is
+ * then reported as changed if the CRC-32 checksum of its contents differs from
+ * the last one seen, so files that are merely touched or rewritten with the
+ * same contents are not reported. Files are identified by name. Deleted files
+ * are forgotten and reported as changed if they appear again. A file that is
+ * deleted or cannot be opened while it is being polled is treated as deleted.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class FileFingerprints {
+
+	/**
+	 * What is known about a file
+	 */
+	private static class Fingerprint {
+		final private long modified;
+		final private long length;
+		/**
+		 * Checksum of the contents, or null if they have not been read
+		 */
+		final private Long checksum;
+
+		public Fingerprint(long modified, long length, Long checksum) {
+			this.modified = modified;
+			this.length = length;
+			this.checksum = checksum;
+		}
+	}
+
+	final private File directory;
+	final private Map<String, Fingerprint> fingerprints = new HashMap<String, Fingerprint>();
+
+	/**
+	 * Record the modification times and lengths of the files in a directory.
+	 * Their contents are not read until they change.
+	 *
+	 * @param directory
+	 *            directory to poll
+	 */
+	public FileFingerprints(File directory) {
+		this.directory = directory;
+		for (File file : listFiles())
+			fingerprints.put(file.getName(), new Fingerprint(file
+					.lastModified(), file.length(), null));
+	}
+
+	/**
+	 * @return names of the files whose contents have changed since the last
+	 *         poll
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	public Set<String> poll() throws IOException {
+		Set<String> changed = new HashSet<String>();
+		Set<String> present = new HashSet<String>();
+		for (File file : listFiles()) {
+			String name = file.getName();
+			present.add(name);
+			long modified = file.lastModified(), length = file.length();
+			Fingerprint old = fingerprints.get(name);
+			if (null != old && old.modified == modified
+					&& old.length == length)
+				continue;
+			Long checksum;
+			try {
+				checksum = checksum(file);
+			} catch (FileNotFoundException e) {
+				present.remove(name);
+				continue;
+			}
+			if (null == old || !checksum.equals(old.checksum))
+				changed.add(name);
+			fingerprints.put(name, new Fingerprint(modified, length, checksum));
+		}
+		fingerprints.keySet().retainAll(present);
+		return changed;
+	}
+
+	/**
+	 * Forget a file, so that it is reported as changed by the next poll, e.g.
+	 * because it was read while it was still being written.
+	 *
+	 * @param name
+	 *            file name
+	 */
+	public void forget(String name) {
+		fingerprints.remove(name);
+	}
+
+	private File[] listFiles() {
+		File[] files = directory.listFiles();
+		if (null == files)
+			return new File[0];
+		int n = 0;
+		for (File file : files)
+			if (file.isFile())
+				files[n++] = file;
+		File[] regular = new File[n];
+		System.arraycopy(files, 0, regular, 0, n);
+		return regular;
+	}
+
+	private static Long checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			byte[] buffer = new byte[8192];
+			for (int n = in.read(buffer); n >= 0; n = in.read(buffer))
+				crc.update(buffer, 0, n);
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+}
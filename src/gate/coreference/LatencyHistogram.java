@@ -0,0 +1,138 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations with power of two microsecond buckets.
+ * <p>
+ * Bucket 0 counts durations under a microsecond and bucket i counts durations
+ * of at least 2^(i-1) and under 2^i microseconds. The last bucket also counts
+ * all longer durations. Recording a duration is a few atomic additions, so
+ * histograms may be updated from any thread and left on permanently.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of buckets. The last bucket starts at about 18 minutes.
+	 */
+	public static final int BUCKETS = 32;
+
+	final private AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	final private AtomicLong count = new AtomicLong();
+	final private AtomicLong totalNanos = new AtomicLong();
+
+	/**
+	 * @param nanos
+	 *            duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		counts.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+	}
+
+	/**
+	 * @param nanos
+	 *            duration in nanoseconds
+	 * @return index of the bucket that counts the duration
+	 */
+	static int bucket(long nanos) {
+		long micros = nanos / 1000;
+		if (micros <= 0)
+			return 0;
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+	}
+
+	/**
+	 * @return upper bound in microseconds of every bucket but the last
+	 */
+	public static long[] getUpperBounds() {
+		long[] bounds = new long[BUCKETS - 1];
+		for (int i = 0; i < bounds.length; i++)
+			bounds[i] = 1L << i;
+		return bounds;
+	}
+
+	/**
+	 * @return number of durations in each bucket
+	 */
+	public long[] getCounts() {
+		long[] values = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			values[i] = counts.get(i);
+		return values;
+	}
+
+	/**
+	 * @return number of durations recorded
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return mean duration in milliseconds, or NaN if none have been
+	 *         recorded
+	 */
+	public double getMeanMillis() {
+		long n = count.get();
+		return 0 == n ? Double.NaN : totalNanos.get() / 1e6 / n;
+	}
+
+	/**
+	 * Estimate a percentile of the durations.
+	 *
+	 * @param percentile
+	 *            percentile between 0 and 100
+	 * @return upper bound in milliseconds of the bucket containing the
+	 *         percentile, infinite if it is in the last bucket, or NaN if no
+	 *         durations have been recorded
+	 */
+	public double getPercentileMillis(double percentile) {
+		long[] values = getCounts();
+		long n = 0;
+		for (long value : values)
+			n += value;
+		if (0 == n)
+			return Double.NaN;
+		double rank = percentile / 100 * n;
+		long cumulative = 0;
+		for (int i = 0; i < BUCKETS - 1; i++) {
+			cumulative += values[i];
+			if (cumulative >= rank)
+				return (1L << i) / 1000.0;
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Discard all the recorded durations.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+		count.set(0);
+		totalNanos.set(0);
+	}
+}
@@ -0,0 +1,273 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.Corpus;
+import gate.coreference.scorer.SampleEstimator;
+import gate.coreference.scorer.ScoreStore;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.coreference.scorer.SampleEstimator.Estimate;
+import gate.util.GateException;
+
+import org.apache.log4j.BasicConfigurator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Approximate corpus scores from a random sample of documents.
+ * <p>
+ * Documents are scored one at a time in a random order by a
+ * {@link CorpusScorer}. After each document, micro and macro average estimates
+ * with confidence intervals are available for every method, so scoring can
+ * stop as soon as the intervals are narrow enough. Documents may be divided
+ * into strata, in which case each stratum is sampled in proportion to its
+ * size and the estimates are stratified.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ * @see SampleEstimator
+ */
+public class SampledCorpusScorer {
+
+	/**
+	 * Assigns documents to strata.
+	 */
+	public interface Stratifier {
+		/**
+		 * @param document
+		 *            a document
+		 * @return name of the document's stratum
+		 */
+		public String getStratum(DocumentKey document);
+	}
+
+	/**
+	 * Number of documents sampled before scoring may stop early.
+	 */
+	public static final int MINIMUM_SAMPLE = 30;
+
+	final private CorpusScorer scorer;
+
+	/**
+	 * Documents of each stratum in the order they are sampled.
+	 */
+	final private List<List<DocumentKey>> strata = new ArrayList<List<DocumentKey>>();
+
+	/**
+	 * Number of documents sampled from each stratum.
+	 */
+	final private int[] next;
+
+	final private Map<Method, SampleEstimator> estimators = new HashMap<Method, SampleEstimator>();
+
+	/**
+	 * Sample all the documents in a single stratum.
+	 *
+	 * @param scorer
+	 *            scorer of the corpus
+	 * @param seed
+	 *            random number seed
+	 */
+	public SampledCorpusScorer(CorpusScorer scorer, long seed) {
+		this(scorer, null, seed);
+	}
+
+	/**
+	 * @param scorer
+	 *            scorer of the corpus
+	 * @param stratifier
+	 *            assigns the documents to strata, or null to use a single
+	 *            stratum
+	 * @param seed
+	 *            random number seed
+	 */
+	public SampledCorpusScorer(CorpusScorer scorer, Stratifier stratifier,
+			long seed) {
+		this.scorer = scorer;
+		Map<String, List<DocumentKey>> byName = new LinkedHashMap<String, List<DocumentKey>>();
+		ScoreStore store = scorer.getScoreStore();
+		for (int row : scorer.getRowsInNameOrder()) {
+			DocumentKey key = scorer.getDocumentKey(row);
+			String stratum = null == stratifier ? "" : stratifier
+					.getStratum(key);
+			List<DocumentKey> documents = byName.get(stratum);
+			if (null == documents) {
+				documents = new ArrayList<DocumentKey>();
+				byName.put(stratum, documents);
+			}
+			documents.add(key);
+		}
+		Random random = new Random(seed);
+		int[] populations = new int[byName.size()];
+		for (List<DocumentKey> documents : byName.values()) {
+			Collections.shuffle(documents, random);
+			populations[strata.size()] = documents.size();
+			strata.add(documents);
+		}
+		next = new int[strata.size()];
+		for (Method method : store.getMethods())
+			estimators.put(method, new SampleEstimator(populations));
+	}
+
+	/**
+	 * Score the next document of the sample. This is taken from the stratum
+	 * that has had the smallest fraction of its documents sampled.
+	 *
+	 * @return false if every document has been sampled
+	 */
+	public boolean scoreNext() {
+		int stratum = -1;
+		double fraction = 1;
+		for (int h = 0; h < strata.size(); h++) {
+			double f = next[h] / (double) strata.get(h).size();
+			if (f < fraction) {
+				stratum = h;
+				fraction = f;
+			}
+		}
+		if (stratum < 0)
+			return false;
+		DocumentKey key = strata.get(stratum).get(next[stratum]++);
+		scorer.setChains(key, scorer.loadChains(key));
+		ScoreStore store = scorer.getScoreStore();
+		int row = scorer.getRow(key);
+		for (Method method : store.getMethods())
+			estimators.get(method).addDocument(stratum,
+					store.getTerms(row, method));
+		return true;
+	}
+
+	/**
+	 * Score documents until the micro and macro F-score confidence intervals
+	 * of every method are no wider than a given half width, a maximum number
+	 * of documents have been scored, or every document has been scored. The
+	 * intervals are not checked until at least {@link #MINIMUM_SAMPLE}
+	 * documents have been scored. An undefined micro average has an interval
+	 * of zero width, because it stays undefined however many more documents
+	 * are scored.
+	 *
+	 * @param halfWidth
+	 *            target half width of the confidence intervals
+	 * @param confidence
+	 *            confidence level, e.g. 0.95
+	 * @param maximum
+	 *            maximum number of documents to score
+	 * @return number of documents sampled
+	 */
+	public int scoreUntil(double halfWidth, double confidence, int maximum) {
+		while (size() < maximum && scoreNext())
+			if (size() >= MINIMUM_SAMPLE && isNarrow(halfWidth, confidence))
+				break;
+		return size();
+	}
+
+	private boolean isNarrow(double halfWidth, double confidence) {
+		for (SampleEstimator estimator : estimators.values())
+			if (!(estimator.getMicroEstimate(confidence).getHalfWidth() <= halfWidth)
+					|| !(estimator.getMacroEstimate(confidence).getHalfWidth() <= halfWidth))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return number of documents sampled
+	 */
+	public int size() {
+		int size = 0;
+		for (int n : next)
+			size += n;
+		return size;
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @param confidence
+	 *            confidence level, e.g. 0.95
+	 * @return estimate of the F-score of the mean document precision and
+	 *         recall
+	 */
+	public Estimate getMicroEstimate(Method method, double confidence) {
+		return estimators.get(method).getMicroEstimate(confidence);
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @param confidence
+	 *            confidence level, e.g. 0.95
+	 * @return estimate of the F-score of the pooled terms
+	 */
+	public Estimate getMacroEstimate(Method method, double confidence) {
+		return estimators.get(method).getMacroEstimate(confidence);
+	}
+
+	/**
+	 * Print approximate F-scores of a corpus in a data store.
+	 *
+	 * @param args
+	 *            data store path, corpus name and optionally the target half
+	 *            width of the 95% confidence intervals, 0.01 by default
+	 * @throws GateException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws GateException, IOException,
+			InterruptedException {
+		BasicConfigurator.configure();
+
+		String dataStorePath = args[0];
+		String corpusName = args[1];
+		final double halfWidth = args.length > 2 ? Double.parseDouble(args[2])
+				: 0.01;
+		final double confidence = 0.95;
+		final Set<Method> methods = EnumSet.of(Method.MUC, Method.BCUBED);
+
+		Datastore.withCorpus(dataStorePath, corpusName,
+				new Datastore.CorpusTask<Void>() {
+					public Void run(Corpus corpus) throws GateException {
+						SampledCorpusScorer sampler = new SampledCorpusScorer(
+								new CorpusScorer(corpus, methods), System
+										.currentTimeMillis());
+						int n = sampler.scoreUntil(halfWidth, confidence,
+								Integer.MAX_VALUE);
+						System.out.format("Sampled %d of %d documents\n", n,
+								corpus.size());
+						for (Method method : methods) {
+							System.out.println(method);
+							System.out.println("\tMicro F-score: "
+									+ sampler.getMicroEstimate(method,
+											confidence));
+							System.out.println("\tMacro F-score: "
+									+ sampler.getMacroEstimate(method,
+											confidence));
+						}
+						return null;
+					}
+				});
+	}
+}
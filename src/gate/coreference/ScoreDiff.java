@@ -0,0 +1,379 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.Corpus;
+import gate.coreference.scorer.PrecisionRecall;
+import gate.coreference.scorer.PrecisionRecallTermsAverages;
+import gate.coreference.scorer.ScoreStore;
+import gate.coreference.scorer.ScoreStoreFile;
+import gate.coreference.scorer.ScoreTable;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.util.GateException;
+
+import org.apache.log4j.BasicConfigurator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Per-document differences between two scoring runs of the same corpus.
+ * <p>
+ * The runs are joined on document name. The baseline run's names are loaded
+ * into a hash table and the current run is streamed past it a row at a time,
+ * so only the baseline's names and a bounded number of differences are held
+ * in memory. For each method the documents whose F-scores fell or rose the
+ * most are kept, along with corpus averages of both runs over the documents
+ * that were scored in both.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ScoreDiff {
+
+	/**
+	 * The change in a document's score between two runs.
+	 */
+	public static class DocumentDelta {
+		final private String name;
+		final private PrecisionRecall baseline;
+		final private PrecisionRecall current;
+
+		/**
+		 * @param name
+		 *            document name
+		 * @param baseline
+		 *            score in the baseline run
+		 * @param current
+		 *            score in the current run
+		 */
+		public DocumentDelta(String name, PrecisionRecall baseline,
+				PrecisionRecall current) {
+			this.name = name;
+			this.baseline = baseline;
+			this.current = current;
+		}
+
+		/**
+		 * @return document name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return score in the baseline run
+		 */
+		public PrecisionRecall getBaseline() {
+			return baseline;
+		}
+
+		/**
+		 * @return score in the current run
+		 */
+		public PrecisionRecall getCurrent() {
+			return current;
+		}
+
+		/**
+		 * @return current F-score minus baseline F-score
+		 */
+		public double getDelta() {
+			return current.getFScore() - baseline.getFScore();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s\t%+.4f\t%s -> %s", name, getDelta(),
+					baseline, current);
+		}
+	}
+
+	/**
+	 * Order deltas from largest increase to largest decrease.
+	 */
+	private static final Comparator<DocumentDelta> BY_DELTA = new Comparator<DocumentDelta>() {
+		@Override
+		public int compare(DocumentDelta d1, DocumentDelta d2) {
+			return Double.compare(d2.getDelta(), d1.getDelta());
+		}
+	};
+
+	final private Set<Method> methods = new HashSet<Method>();
+
+	final private int limit;
+
+	final private Map<Method, PriorityQueue<DocumentDelta>> improvements = new HashMap<Method, PriorityQueue<DocumentDelta>>();
+
+	final private Map<Method, PriorityQueue<DocumentDelta>> regressions = new HashMap<Method, PriorityQueue<DocumentDelta>>();
+
+	final private Map<Method, PrecisionRecallTermsAverages> baselineAverages = new HashMap<Method, PrecisionRecallTermsAverages>();
+
+	final private Map<Method, PrecisionRecallTermsAverages> currentAverages = new HashMap<Method, PrecisionRecallTermsAverages>();
+
+	private int joined = 0;
+	private int baselineOnly = 0;
+	private int currentOnly = 0;
+
+	/**
+	 * Compare two runs. Only the methods scored in both runs are compared. If
+	 * a run has several rows with the same name, only the first is used.
+	 *
+	 * @param baseline
+	 *            earlier scores
+	 * @param current
+	 *            later scores
+	 * @param limit
+	 *            number of largest improvements and regressions to keep for
+	 *            each method
+	 */
+	public ScoreDiff(ScoreTable baseline, ScoreTable current, int limit) {
+		this.limit = limit;
+		for (Method method : baseline.getMethods())
+			methods.add(method);
+		Set<Method> currentMethods = new HashSet<Method>();
+		for (Method method : current.getMethods())
+			currentMethods.add(method);
+		methods.retainAll(currentMethods);
+		for (Method method : methods) {
+			// Each queue's head is the kept delta that the next one would
+			// replace.
+			improvements.put(method, new PriorityQueue<DocumentDelta>(
+					limit + 1, Collections.reverseOrder(BY_DELTA)));
+			regressions.put(method, new PriorityQueue<DocumentDelta>(
+					limit + 1, BY_DELTA));
+			baselineAverages.put(method, new PrecisionRecallTermsAverages());
+			currentAverages.put(method, new PrecisionRecallTermsAverages());
+		}
+
+		// Build a hash table of the baseline's rows.
+		Map<String, Integer> baselineRows = new HashMap<String, Integer>(
+				2 * baseline.size());
+		for (int row = 0; row < baseline.size(); row++) {
+			String name = baseline.getName(row);
+			if (!baselineRows.containsKey(name))
+				baselineRows.put(name, row);
+		}
+		// Stream the current rows past it.
+		boolean[] matched = new boolean[baseline.size()];
+		for (int row = 0; row < current.size(); row++) {
+			Integer baselineRow = baselineRows.get(current.getName(row));
+			if (null == baselineRow || matched[baselineRow]) {
+				currentOnly++;
+				continue;
+			}
+			matched[baselineRow] = true;
+			joined++;
+			join(baseline, baselineRow, current, row);
+		}
+		baselineOnly = baselineRows.size() - joined;
+	}
+
+	private void join(ScoreTable baseline, int baselineRow,
+			ScoreTable current, int currentRow) {
+		if (ScoreStore.SCORED != baseline.getState(baselineRow)
+				|| ScoreStore.SCORED != current.getState(currentRow))
+			return;
+		String name = current.getName(currentRow);
+		for (Method method : methods) {
+			baselineAverages.get(method).addTerms(
+					baseline.getTerms(baselineRow, method));
+			currentAverages.get(method).addTerms(
+					current.getTerms(currentRow, method));
+			DocumentDelta delta = new DocumentDelta(name, new PrecisionRecall(
+					baseline.getPrecision(baselineRow, method), baseline
+							.getRecall(baselineRow, method)),
+					new PrecisionRecall(current.getPrecision(currentRow, method),
+							current.getRecall(currentRow, method)));
+			double d = delta.getDelta();
+			if (d > 0)
+				keep(improvements.get(method), delta);
+			else if (d < 0)
+				keep(regressions.get(method), delta);
+		}
+	}
+
+	private void keep(PriorityQueue<DocumentDelta> queue, DocumentDelta delta) {
+		queue.add(delta);
+		if (queue.size() > limit)
+			queue.poll();
+	}
+
+	/**
+	 * @return methods compared
+	 */
+	public Set<Method> getMethods() {
+		return methods;
+	}
+
+	/**
+	 * @return number of documents in both runs
+	 */
+	public int getJoinedCount() {
+		return joined;
+	}
+
+	/**
+	 * @return number of documents only in the baseline run
+	 */
+	public int getBaselineOnlyCount() {
+		return baselineOnly;
+	}
+
+	/**
+	 * @return number of documents only in the current run
+	 */
+	public int getCurrentOnlyCount() {
+		return currentOnly;
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @return documents whose F-scores rose the most, largest rise first
+	 */
+	public List<DocumentDelta> getImprovements(Method method) {
+		List<DocumentDelta> deltas = new ArrayList<DocumentDelta>(improvements
+				.get(method));
+		Collections.sort(deltas, BY_DELTA);
+		return deltas;
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @return documents whose F-scores fell the most, largest fall first
+	 */
+	public List<DocumentDelta> getRegressions(Method method) {
+		List<DocumentDelta> deltas = new ArrayList<DocumentDelta>(regressions
+				.get(method));
+		Collections.sort(deltas, Collections.reverseOrder(BY_DELTA));
+		return deltas;
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @return averages of the baseline run over the documents scored in both
+	 *         runs
+	 */
+	public PrecisionRecallTermsAverages getBaselineAverages(Method method) {
+		return baselineAverages.get(method);
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @return averages of the current run over the documents scored in both
+	 *         runs
+	 */
+	public PrecisionRecallTermsAverages getCurrentAverages(Method method) {
+		return currentAverages.get(method);
+	}
+
+	/**
+	 * Print the differences between two runs.
+	 * <p>
+	 * The runs are either two score files written by
+	 * {@link CorpusScorer#exportScores}, or two response annotation sets of a
+	 * corpus in a data store, in which case the corpus is scored against each
+	 * of them. The response set name Default is the default annotation set.
+	 *
+	 * @param args
+	 *            baseline score file, current score file and optionally the
+	 *            number of documents to list; or data store path, corpus name,
+	 *            baseline response set, current response set and optionally the
+	 *            number of documents to list
+	 * @throws GateException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws GateException,
+			IOException, InterruptedException {
+		BasicConfigurator.configure();
+
+		ScoreDiff diff;
+		if (args.length <= 3) {
+			int limit = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+			diff = new ScoreDiff(new ScoreStoreFile(new File(args[0])),
+					new ScoreStoreFile(new File(args[1])), limit);
+		} else {
+			int limit = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+			diff = diffResponses(args[0], args[1], responseName(args[2]),
+					responseName(args[3]), limit);
+		}
+
+		System.out.format("Documents in both runs: %d\n", diff.getJoinedCount());
+		System.out.format("Only in baseline: %d\n", diff.getBaselineOnlyCount());
+		System.out.format("Only in current: %d\n", diff.getCurrentOnlyCount());
+		for (Method method : diff.getMethods()) {
+			PrecisionRecallTermsAverages baseline = diff
+					.getBaselineAverages(method);
+			PrecisionRecallTermsAverages current = diff
+					.getCurrentAverages(method);
+			System.out.println(method);
+			System.out.format("\tMicro: %s -> %s (%+.4f)\n", baseline
+					.getMicroAverage(), current.getMicroAverage(), current
+					.getMicroAverage().getFScore()
+					- baseline.getMicroAverage().getFScore());
+			System.out.format("\tMacro: %s -> %s (%+.4f)\n", baseline
+					.getMacroAverage(), current.getMacroAverage(), current
+					.getMacroAverage().getFScore()
+					- baseline.getMacroAverage().getFScore());
+			System.out.println("\tRegressions");
+			for (DocumentDelta delta : diff.getRegressions(method))
+				System.out.println("\t\t" + delta);
+			System.out.println("\tImprovements");
+			for (DocumentDelta delta : diff.getImprovements(method))
+				System.out.println("\t\t" + delta);
+		}
+	}
+
+	private static String responseName(String name) {
+		return "Default".equals(name) ? null : name;
+	}
+
+	private static ScoreDiff diffResponses(String dataStorePath,
+			String corpusName, final String baselineResponse,
+			final String currentResponse, final int limit)
+			throws GateException, IOException, InterruptedException {
+		final Set<Method> methods = EnumSet.of(Method.MUC, Method.BCUBED);
+		return Datastore.withCorpus(dataStorePath, corpusName,
+				new Datastore.CorpusTask<ScoreDiff>() {
+					public ScoreDiff run(Corpus corpus) throws GateException {
+						ScoreStore baseline = new CorpusScorer(corpus, methods,
+								CorpusScorer.DEFAULT_KEY_NAME, baselineResponse)
+								.getScores();
+						ScoreStore current = new CorpusScorer(corpus, methods,
+								CorpusScorer.DEFAULT_KEY_NAME, currentResponse)
+								.getScores();
+						return new ScoreDiff(baseline, current, limit);
+					}
+				});
+	}
+}
@@ -0,0 +1,413 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.Corpus;
+import gate.coreference.scorer.PrecisionRecallTerms;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.util.GateException;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of the scores of the documents of a {@link CorpusScorer},
+ * so that a long scoring run can resume where it stopped.
+ * <p>
+ * After each document is scored its terms and stratum terms are appended to
+ * the journal. When a run starts over, the documents in the journal are given
+ * their saved scores, which rebuilds the corpus averages, and only the other
+ * documents are scored. Documents are identified by name and LRID.
+ * <p>
+ * The file starts with a header naming the scoring methods, followed by a
+ * record per document: the length of the record, its contents, and their
+ * CRC-32 checksum. A record cut short by a crash fails its checksum and is
+ * discarded along with the rest of the file, so the journal always holds the
+ * documents up to the last complete record. Every record is written through to
+ * the operating system, so a killed process loses nothing, and the file is
+ * synchronized with the disk when the journal is closed.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ScoreJournal {
+
+	static Logger logger = Logger.getLogger(ScoreJournal.class.getName());
+
+	private static final int MAGIC = 0x4743534A; // "GCSJ"
+
+	private static final int VERSION = 1;
+
+	final private CorpusScorer scorer;
+	final private Method[] methods;
+	final private RandomAccessFile file;
+
+	/**
+	 * Offset of the first record
+	 */
+	final private long start;
+
+	/**
+	 * Open a journal, creating it if it does not exist.
+	 *
+	 * @param file
+	 *            journal file
+	 * @param scorer
+	 *            scorer of the documents
+	 * @param methods
+	 *            scoring methods of the scorer
+	 * @throws IOException
+	 *             if the file cannot be opened or is a journal of other
+	 *             methods
+	 */
+	public ScoreJournal(File file, CorpusScorer scorer, Set<Method> methods)
+			throws IOException {
+		this.scorer = scorer;
+		this.methods = methods.toArray(new Method[methods.size()]);
+		this.file = new RandomAccessFile(file, "rw");
+		try {
+			if (0 == this.file.length())
+				writeHeader();
+			else
+				readHeader(file);
+			start = this.file.getFilePointer();
+			this.file.seek(this.file.length());
+		} catch (IOException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+
+	private void writeHeader() throws IOException {
+		file.writeInt(MAGIC);
+		file.writeInt(VERSION);
+		file.writeInt(methods.length);
+		for (Method method : methods)
+			file.writeUTF(method.name());
+	}
+
+	private void readHeader(File name) throws IOException {
+		if (MAGIC != file.readInt())
+			throw new IOException(name + " is not a score journal");
+		int version = file.readInt();
+		if (VERSION != version)
+			throw new IOException("Unsupported score journal version "
+					+ version);
+		List<Method> journaled = new ArrayList<Method>();
+		for (int i = file.readInt(); i > 0; i--)
+			journaled.add(Method.valueOf(file.readUTF()));
+		if (!new HashSet<Method>(journaled).equals(new HashSet<Method>(Arrays
+				.asList(methods))))
+			throw new IOException(name + " journals the methods " + journaled);
+		// Records are in the journal's order of methods.
+		journaled.toArray(methods);
+	}
+
+	/**
+	 * Give the documents in the journal their saved scores. Records after the
+	 * last complete one are removed from the file, so this should be called
+	 * before any documents are appended.
+	 * <p>
+	 * Scores are restored in document name order, the order in which the
+	 * scorer scores documents. When every document is restored, the averages
+	 * are therefore the same to the last bit as those of a run that scored
+	 * every document. Otherwise the documents scored after the restore are
+	 * added to the averages out of name order, and the floating point sums
+	 * may differ from those of a single run by rounding.
+	 *
+	 * @return number of documents restored
+	 * @throws IOException
+	 */
+	public int restore() throws IOException {
+		return restore(scorer, read());
+	}
+
+	/**
+	 * Give documents the scores saved in several journals, e.g. those written
+	 * for the shards of a corpus. Incomplete records at the ends of the
+	 * journals are removed as by {@link #restore()}.
+	 *
+	 * @param files
+	 *            journal files
+	 * @param scorer
+	 *            scorer of the documents
+	 * @param methods
+	 *            scoring methods of the scorer
+	 * @return number of documents restored
+	 * @throws IOException
+	 *             if a journal is missing or cannot be read
+	 */
+	public static int merge(List<File> files, CorpusScorer scorer,
+			Set<Method> methods) throws IOException {
+		Map<String, Saved> saved = new HashMap<String, Saved>();
+		for (File file : files) {
+			if (!file.isFile())
+				throw new IOException("Missing score journal " + file);
+			ScoreJournal journal = new ScoreJournal(file, scorer, methods);
+			try {
+				saved.putAll(journal.read());
+			} finally {
+				journal.file.close();
+			}
+		}
+		return restore(scorer, saved);
+	}
+
+	/**
+	 * Scores of a document saved in a record
+	 */
+	private static class Saved {
+		private Map<Method, PrecisionRecallTerms> terms = null;
+		private Map<Method, Map<String, PrecisionRecallTerms>> strata = null;
+	}
+
+	private static int restore(CorpusScorer scorer, Map<String, Saved> saved) {
+		int restored = 0;
+		// Documents no longer in the corpus are skipped.
+		for (int row : scorer.getRowsInNameOrder()) {
+			DocumentKey key = scorer.getDocumentKey(row);
+			Saved document = saved.get(identify(key));
+			if (null != document) {
+				scorer.restoreScores(key, document.terms, document.strata);
+				restored++;
+			}
+		}
+		return restored;
+	}
+
+	/**
+	 * Read the complete records and remove the rest of the file.
+	 *
+	 * @return table of document identifier->saved scores
+	 */
+	private Map<String, Saved> read() throws IOException {
+		Map<String, Saved> saved = new HashMap<String, Saved>();
+		long end = start;
+		file.seek(start);
+		long length = file.length();
+		// Read through a buffer from the current position of the file.
+		DataInputStream records = new DataInputStream(new BufferedInputStream(
+				Channels.newInputStream(file.getChannel())));
+		while (true) {
+			byte[] record = readRecord(records, length - end);
+			if (null == record)
+				break;
+			end += 4 + record.length + 8;
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+					record));
+			String id = in.readUTF();
+			Saved document = new Saved();
+			if (in.readBoolean()) {
+				document.terms = new EnumMap<Method, PrecisionRecallTerms>(
+						Method.class);
+				document.strata = new EnumMap<Method, Map<String, PrecisionRecallTerms>>(
+						Method.class);
+				for (Method method : methods) {
+					document.terms.put(method, readTerms(in));
+					Map<String, PrecisionRecallTerms> methodStrata = new HashMap<String, PrecisionRecallTerms>();
+					for (int i = in.readInt(); i > 0; i--)
+						methodStrata.put(in.readUTF(), readTerms(in));
+					document.strata.put(method, methodStrata);
+				}
+			}
+			// A document scored again replaces its earlier record.
+			saved.put(id, document);
+		}
+		if (end < length) {
+			logger.warn("Discard incomplete journal records after byte "
+					+ end);
+			file.setLength(end);
+		}
+		file.seek(end);
+		return saved;
+	}
+
+	/**
+	 * @param in
+	 *            journal positioned at the start of a record
+	 * @param remaining
+	 *            number of bytes left in the journal
+	 * @return the next complete record, or null at the end of the complete
+	 *         records
+	 */
+	private static byte[] readRecord(DataInputStream in, long remaining)
+			throws IOException {
+		try {
+			int length = in.readInt();
+			if (length < 0 || length > remaining - 12)
+				return null;
+			byte[] record = new byte[length];
+			in.readFully(record);
+			CRC32 crc = new CRC32();
+			crc.update(record);
+			return crc.getValue() == in.readLong() ? record : null;
+		} catch (EOFException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Append the scores of a document to the journal.
+	 *
+	 * @param key
+	 *            a document the scorer has scored
+	 * @throws IOException
+	 */
+	public void append(DocumentKey key) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeUTF(identify(key));
+		int row = scorer.getRow(key);
+		Map<Method, Map<String, PrecisionRecallTerms>> strata = scorer
+				.getStratumTerms(key);
+		boolean annotated = null != scorer.getScoreStore().getTerms(row,
+				methods[0]);
+		out.writeBoolean(annotated);
+		if (annotated)
+			for (Method method : methods) {
+				writeTerms(out, scorer.getScoreStore().getTerms(row, method));
+				Map<String, PrecisionRecallTerms> methodStrata = null == strata ? null
+						: strata.get(method);
+				out.writeInt(null == methodStrata ? 0 : methodStrata.size());
+				if (null != methodStrata)
+					for (Entry<String, PrecisionRecallTerms> entry : methodStrata
+							.entrySet()) {
+						out.writeUTF(entry.getKey());
+						writeTerms(out, entry.getValue());
+					}
+			}
+		out.close();
+		byte[] record = bytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(record);
+		// Write the record in one call so that it is not split by a crash
+		// any more than the operating system splits it.
+		ByteArrayOutputStream framed = new ByteArrayOutputStream(
+				record.length + 12);
+		DataOutputStream frame = new DataOutputStream(framed);
+		frame.writeInt(record.length);
+		frame.write(record);
+		frame.writeLong(crc.getValue());
+		frame.close();
+		file.write(framed.toByteArray());
+	}
+
+	/**
+	 * Synchronize the journal with the disk and close it.
+	 *
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		try {
+			file.getFD().sync();
+		} finally {
+			file.close();
+		}
+	}
+
+	private static String identify(DocumentKey key) {
+		Object persistenceId = key.getPersistenceId();
+		return key.getName() + "\t"
+				+ (null == persistenceId ? "" : persistenceId.toString());
+	}
+
+	private static void writeTerms(DataOutputStream out,
+			PrecisionRecallTerms terms) throws IOException {
+		out.writeDouble(terms.getPrecisionNumerator());
+		out.writeDouble(terms.getPrecisionDenominator());
+		out.writeDouble(terms.getRecallNumerator());
+		out.writeDouble(terms.getRecallDenominator());
+	}
+
+	private static PrecisionRecallTerms readTerms(DataInputStream in)
+			throws IOException {
+		return new PrecisionRecallTerms(in.readDouble(), in.readDouble(), in
+				.readDouble(), in.readDouble());
+	}
+
+	/**
+	 * Score a corpus in a data store, resuming from a journal, and print its
+	 * averages.
+	 *
+	 * @param args
+	 *            data store path, corpus name and journal file
+	 * @throws GateException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws GateException, IOException,
+			InterruptedException {
+		BasicConfigurator.configure();
+
+		String dataStorePath = args[0];
+		String corpusName = args[1];
+		final File journalFile = new File(args[2]);
+		final Set<Method> methods = EnumSet.of(Method.MUC, Method.BCUBED,
+				Method.MENTION);
+
+		Datastore.withCorpus(dataStorePath, corpusName,
+				new Datastore.CorpusTask<Void>() {
+					public Void run(Corpus corpus) throws GateException,
+							IOException {
+						CorpusScorer scorer = new CorpusScorer(corpus, methods);
+						ScoreJournal journal = new ScoreJournal(journalFile,
+								scorer, methods);
+						try {
+							int restored = journal.restore();
+							List<DocumentKey> unscored = scorer
+									.getUnscoredDocuments();
+							System.out.format(
+									"Restored %d documents, %d to score\n",
+									restored, unscored.size());
+							for (DocumentKey key : unscored) {
+								scorer.setChains(key, scorer.loadChains(key));
+								journal.append(key);
+							}
+						} finally {
+							journal.close();
+						}
+						for (Method method : methods)
+							System.out.format("%s: %s\n", method, scorer
+									.getAverages(method).getMacroAverage());
+						return null;
+					}
+				});
+	}
+}
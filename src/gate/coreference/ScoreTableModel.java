@@ -0,0 +1,372 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.coreference.scorer.ScoreStore;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.coreference.scorer.util.SortUtilities;
+import gate.coreference.scorer.util.SortUtilities.IndexComparator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model that reads document scores directly out of the
+ * {@link ScoreStore} of a {@link CorpusScorer}.
+ * <p>
+ * No cells are copied into the model. Sorting and filtering are done by
+ * rearranging an array of store row indices, so the model's memory use is an
+ * int per document and only the visible cells are ever boxed.
+ * <p>
+ * The model listens to the store for rows that are added, rescored or
+ * removed. A refresh only moves the rows that have changed, finding their new
+ * places by binary search of the rows that are already in order. Documents are
+ * ordered by name with the collation keys of the scorer's {@link DocumentKey}s.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+@SuppressWarnings("serial")
+public class ScoreTableModel extends AbstractTableModel {
+
+	/**
+	 * Filter that decides which rows of the score store are shown.
+	 */
+	public interface RowFilter {
+		/**
+		 * @param store
+		 *            score store
+		 * @param row
+		 *            store row index
+		 * @return true if the row should be shown
+		 */
+		public boolean include(ScoreStore store, int row);
+	}
+
+	/**
+	 * Column order of the methods.
+	 */
+	private static final Method[] COLUMN_METHODS = { Method.BCUBED,
+			Method.MUC, Method.MENTION };
+
+	private static final String[] COLUMN_METHOD_NAMES = { "B-Cubed", "MUC",
+			"Mention" };
+
+	private static final String[] COLUMN_MEASURES = { "Precision", "Recall",
+			"F-score" };
+
+	private CorpusScorer scorer = null;
+
+	private ScoreStore store = null;
+
+	/**
+	 * Store row index of each table row.
+	 */
+	private int[] permutation = new int[0];
+
+	/**
+	 * Number of rows that pass the filter.
+	 */
+	private int rowCount = 0;
+
+	/**
+	 * Store rows that have been added or rescored since the last refresh.
+	 */
+	final private BitSet changed = new BitSet();
+
+	/**
+	 * True if the sort order or filter has changed since the last refresh, so
+	 * that every row has to be put back in order.
+	 */
+	private boolean rebuild = true;
+
+	/**
+	 * Model column to sort on and the direction of the sort.
+	 */
+	private int sortColumn = 0;
+	private boolean ascending = true;
+
+	private RowFilter filter = null;
+
+	final private ScoreStore.Listener storeListener = new ScoreStore.Listener() {
+		@Override
+		public void rowChanged(int row) {
+			changed.set(row);
+		}
+
+		@Override
+		public void rowRemoved(int row, int moved) {
+			removeRow(row, moved);
+		}
+	};
+
+	/**
+	 * Create an empty model.
+	 */
+	public ScoreTableModel() {
+	}
+
+	/**
+	 * @param scorer
+	 *            scorer whose scores are displayed, or null to display nothing
+	 */
+	public void setScorer(CorpusScorer scorer) {
+		if (null != store)
+			store.removeListener(storeListener);
+		this.scorer = scorer;
+		store = null == scorer ? null : scorer.getScoreStore();
+		if (null != store)
+			store.addListener(storeListener);
+		rowCount = 0;
+		rebuild = true;
+		refresh();
+	}
+
+	/**
+	 * Bring the row permutation up to date with the store. This should be
+	 * called whenever rows have been added to, removed from or rescored in the
+	 * store. Nothing is fired if no row has changed.
+	 */
+	public void refresh() {
+		if (!rebuild && changed.isEmpty())
+			return;
+		int size = null == store ? 0 : store.size();
+		if (permutation.length < size)
+			permutation = Arrays.copyOf(permutation, Math.max(size,
+					2 * permutation.length));
+		if (rebuild) {
+			rowCount = 0;
+			for (int row = 0; row < size; row++)
+				if (include(row))
+					permutation[rowCount++] = row;
+			SortUtilities.sort(permutation, rowCount, comparator());
+			rebuild = false;
+		} else
+			reposition();
+		changed.clear();
+		fireTableDataChanged();
+	}
+
+	/**
+	 * Take the changed rows out of the permutation and insert the ones that
+	 * pass the filter in their sorted places. The rows that have not changed
+	 * are still in order, so each place is found by binary search and all the
+	 * rows are moved at most once.
+	 */
+	private void reposition() {
+		IndexComparator comparator = comparator();
+		int kept = 0;
+		for (int i = 0; i < rowCount; i++)
+			if (!changed.get(permutation[i]))
+				permutation[kept++] = permutation[i];
+		int[] inserted = new int[changed.cardinality()];
+		int n = 0;
+		for (int row = changed.nextSetBit(0); row >= 0; row = changed
+				.nextSetBit(row + 1))
+			if (include(row))
+				inserted[n++] = row;
+		SortUtilities.sort(inserted, n, comparator);
+		// Merge from the end so that each kept row is copied only once.
+		rowCount = kept + n;
+		int end = kept;
+		int to = rowCount;
+		for (int i = n - 1; i >= 0; i--) {
+			int place = upperBound(inserted[i], end, comparator);
+			to -= end - place;
+			System.arraycopy(permutation, place, permutation, to, end - place);
+			permutation[--to] = inserted[i];
+			end = place;
+		}
+	}
+
+	/**
+	 * @return the first place in the start of the permutation whose row sorts
+	 *         after a row
+	 */
+	private int upperBound(int row, int end, IndexComparator comparator) {
+		int low = 0, high = end;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (comparator.compare(permutation[middle], row) > 0)
+				high = middle;
+			else
+				low = middle + 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Take a removed row out of the permutation and rename the row that was
+	 * moved into its place.
+	 */
+	private void removeRow(int row, int moved) {
+		int removed = -1;
+		int kept = 0;
+		for (int i = 0; i < rowCount; i++)
+			if (permutation[i] == row)
+				removed = i;
+			else
+				permutation[kept++] = permutation[i] == moved ? row
+						: permutation[i];
+		rowCount = kept;
+		boolean movedChanged = moved >= 0 && changed.get(moved);
+		changed.clear(row);
+		if (movedChanged) {
+			changed.clear(moved);
+			changed.set(row);
+		}
+		if (removed >= 0)
+			fireTableRowsDeleted(removed, removed);
+	}
+
+	private boolean include(int row) {
+		return null == filter || filter.include(store, row);
+	}
+
+	/**
+	 * Sort on a column. Sorting on the column that is already sorted reverses
+	 * the direction of the sort.
+	 *
+	 * @param column
+	 *            model column index
+	 */
+	public void sortBy(int column) {
+		if (column == sortColumn)
+			ascending = !ascending;
+		else {
+			sortColumn = column;
+			ascending = true;
+		}
+		rebuild = true;
+		refresh();
+	}
+
+	/**
+	 * @param filter
+	 *            rows to show, or null to show all rows
+	 */
+	public void setFilter(RowFilter filter) {
+		this.filter = filter;
+		rebuild = true;
+		refresh();
+	}
+
+	/**
+	 * Rows are compared on the sort column and then by document name, so that
+	 * the order does not depend on the order in which rows were inserted.
+	 */
+	private IndexComparator comparator() {
+		final IndexComparator byName = new IndexComparator() {
+			@Override
+			public int compare(int a, int b) {
+				return scorer.getDocumentKey(a).compareTo(
+						scorer.getDocumentKey(b));
+			}
+		};
+		final IndexComparator comparator;
+		if (0 == sortColumn)
+			comparator = byName;
+		else {
+			final int column = sortColumn;
+			comparator = new IndexComparator() {
+				@Override
+				public int compare(int a, int b) {
+					int c = Double.compare(getValue(a, column), getValue(b,
+							column));
+					return 0 != c ? c : byName.compare(a, b);
+				}
+			};
+		}
+		if (ascending)
+			return comparator;
+		return new IndexComparator() {
+			@Override
+			public int compare(int a, int b) {
+				return comparator.compare(b, a);
+			}
+		};
+	}
+
+	/**
+	 * @param viewRow
+	 *            table row index
+	 * @return store row index
+	 */
+	public int getStoreRow(int viewRow) {
+		return permutation[viewRow];
+	}
+
+	/**
+	 * @param storeRow
+	 *            store row index
+	 * @return table row index, or -1 if the row is not shown
+	 */
+	public int getViewRow(int storeRow) {
+		for (int viewRow = 0; viewRow < rowCount; viewRow++)
+			if (permutation[viewRow] == storeRow)
+				return viewRow;
+		return -1;
+	}
+
+	private double getValue(int storeRow, int column) {
+		Method method = COLUMN_METHODS[(column - 1) / COLUMN_MEASURES.length];
+		switch ((column - 1) % COLUMN_MEASURES.length) {
+		case 0:
+			return store.getPrecision(storeRow, method);
+		case 1:
+			return store.getRecall(storeRow, method);
+		default:
+			return store.getFScore(storeRow, method);
+		}
+	}
+
+	@Override
+	public int getColumnCount() {
+		return 1 + COLUMN_METHODS.length * COLUMN_MEASURES.length;
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		if (0 == column)
+			return "Document";
+		return COLUMN_METHOD_NAMES[(column - 1) / COLUMN_MEASURES.length] + " "
+				+ COLUMN_MEASURES[(column - 1) % COLUMN_MEASURES.length];
+	}
+
+	@Override
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	@Override
+	public Object getValueAt(int rowIndex, int columnIndex) {
+		int storeRow = permutation[rowIndex];
+		if (0 == columnIndex)
+			return store.getName(storeRow);
+		if (ScoreStore.SCORED != store.getState(storeRow))
+			return "NA";
+		return getValue(storeRow, columnIndex);
+	}
+
+	@Override
+	public boolean isCellEditable(int rowIndex, int columnIndex) {
+		return false;
+	}
+}
@@ -0,0 +1,369 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import gate.coreference.CorpusScorer.DocumentChains;
+import gate.coreference.scorer.ChainOverlap;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.util.GateException;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Scores the documents of a {@link CorpusScorer} in a pipeline of concurrent
+ * stages.
+ * <p>
+ * Documents are read from the data store, their chains are extracted, the
+ * chains are compared, and the scores are entered in the scorer. Each of the
+ * first three stages runs on its own threads, as many as are asked for, and
+ * the last on the calling thread, so the scorer is only changed on that
+ * thread. The stages are joined by bounded queues. A stage that gets ahead
+ * blocks until the next stage catches up, which bounds the number of
+ * documents in memory, and the total time approaches that of the slowest
+ * stage rather than the sum of them all.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ * @see CorpusScorer#readDocument
+ * @see CorpusScorer#extractChains(DocumentKey, Document)
+ * @see CorpusScorer#compareChains
+ * @see CorpusScorer#setOverlap
+ */
+public class ScoringPipeline {
+
+	static Logger logger = Logger.getLogger(ScoringPipeline.class.getName());
+
+	/**
+	 * A document on its way through the pipeline.
+	 */
+	private static class Item {
+		final private DocumentKey key;
+		private Document document = null;
+		private DocumentChains chains = null;
+		private ChainOverlap<List<Long>> overlap = null;
+
+		public Item(DocumentKey key) {
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Marks the end of the documents in a queue.
+	 */
+	private static final Item END = new Item(null);
+
+	/**
+	 * Work done on each document by a stage.
+	 */
+	private interface Step {
+		/**
+		 * @param item
+		 *            document
+		 * @throws Exception
+		 *             if the document cannot be scored
+		 */
+		public void process(Item item) throws Exception;
+	}
+
+	/**
+	 * The threads of a stage take documents from one queue, process them and
+	 * put them on the next. The end of the documents is passed on to the next
+	 * queue once every thread of the stage has seen it. A document that cannot
+	 * be processed is logged and dropped. A thread that is interrupted deletes
+	 * the document it holds, since it is no longer in any queue.
+	 * <p>
+	 * Any other failure of a thread, e.g. an Error, is kept as the failure of
+	 * the pipeline and the thread passes the end on at once, so that the
+	 * caller stops the pipeline and rethrows the failure instead of waiting
+	 * for documents that will never come.
+	 */
+	private static class Stage {
+		final private String name;
+		final private Step step;
+		final private BlockingQueue<Item> input;
+		final private BlockingQueue<Item> output;
+		final private AtomicInteger running;
+		final private AtomicReference<Throwable> failure;
+		final private List<Thread> workers = new ArrayList<Thread>();
+
+		public Stage(String name, int threads, Step step,
+				BlockingQueue<Item> input, BlockingQueue<Item> output,
+				AtomicReference<Throwable> failure) {
+			this.name = name;
+			this.step = step;
+			this.input = input;
+			this.output = output;
+			this.failure = failure;
+			running = new AtomicInteger(threads);
+			for (int i = 0; i < threads; i++)
+				workers.add(new Thread(new Runnable() {
+					@Override
+					public void run() {
+						work();
+					}
+				}, "Scoring pipeline " + name + " " + i));
+		}
+
+		public void start() {
+			for (Thread worker : workers)
+				worker.start();
+		}
+
+		public void interrupt() {
+			for (Thread worker : workers)
+				worker.interrupt();
+		}
+
+		/**
+		 * Wait for the threads of the stage to finish. An interrupt of the
+		 * calling thread is kept for after they have finished.
+		 */
+		public void join() {
+			boolean interrupted = false;
+			for (Thread worker : workers)
+				while (worker.isAlive())
+					try {
+						worker.join();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+
+		private void work() {
+			Item item = null;
+			boolean stopped = false;
+			boolean failed = false;
+			try {
+				while (true) {
+					item = input.take();
+					if (END == item) {
+						// Let the other threads of this stage see the end.
+						input.put(END);
+						break;
+					}
+					try {
+						step.process(item);
+					} catch (InterruptedException e) {
+						throw e;
+					} catch (Exception e) {
+						logger.error("Cannot " + name + " " + item.key, e);
+						continue;
+					}
+					output.put(item);
+					item = null;
+				}
+			} catch (InterruptedException e) {
+				// The pipeline has been stopped.
+				stopped = true;
+			} catch (Throwable t) {
+				logger.error("Scoring pipeline " + name + " failed", t);
+				failure.compareAndSet(null, t);
+				failed = true;
+			} finally {
+				if (null != item)
+					discard(item);
+				if ((0 == running.decrementAndGet() || failed) && !stopped)
+					try {
+						output.put(END);
+					} catch (InterruptedException e) {
+						// The pipeline has been stopped.
+					}
+			}
+		}
+	}
+
+	/**
+	 * Delete the document held by an item that will not be scored.
+	 */
+	private static void discard(Item item) {
+		if (null != item.document) {
+			Factory.deleteResource(item.document);
+			item.document = null;
+		}
+	}
+
+	final private CorpusScorer scorer;
+	final private int readers;
+	final private int extractors;
+	final private int comparers;
+	final private int capacity;
+
+	/**
+	 * @param scorer
+	 *            scorer of the documents
+	 * @param readers
+	 *            number of threads reading documents from the data store
+	 * @param extractors
+	 *            number of threads extracting chains
+	 * @param comparers
+	 *            number of threads comparing chains
+	 * @param capacity
+	 *            number of documents each queue between stages may hold
+	 */
+	public ScoringPipeline(CorpusScorer scorer, int readers, int extractors,
+			int comparers, int capacity) {
+		if (readers < 1 || extractors < 1 || comparers < 1 || capacity < 1)
+			throw new IllegalArgumentException(
+					"Every stage needs a thread and every queue some capacity");
+		this.scorer = scorer;
+		this.readers = readers;
+		this.extractors = extractors;
+		this.comparers = comparers;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Score all the documents the scorer has not scored. If a stage fails,
+	 * e.g. with an Error, the pipeline is stopped and the failure is rethrown.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void scoreUnscored() throws InterruptedException {
+		List<DocumentKey> keys = scorer.getUnscoredDocuments();
+		BlockingQueue<Item> unread = new ArrayBlockingQueue<Item>(keys.size() + 1);
+		for (DocumentKey key : keys)
+			unread.add(new Item(key));
+		unread.add(END);
+		BlockingQueue<Item> read = new ArrayBlockingQueue<Item>(capacity);
+		BlockingQueue<Item> extracted = new ArrayBlockingQueue<Item>(capacity);
+		BlockingQueue<Item> compared = new ArrayBlockingQueue<Item>(capacity);
+		List<BlockingQueue<Item>> queues = new ArrayList<BlockingQueue<Item>>();
+		queues.add(unread);
+		queues.add(read);
+		queues.add(extracted);
+		queues.add(compared);
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		List<Stage> stages = new ArrayList<Stage>();
+		stages.add(new Stage("read", readers, new Step() {
+			@Override
+			public void process(Item item) throws GateException {
+				item.document = scorer.readDocument(item.key);
+			}
+		}, unread, read, failure));
+		stages.add(new Stage("extract", extractors, new Step() {
+			@Override
+			public void process(Item item) {
+				Document document = item.document;
+				item.document = null;
+				item.chains = scorer.extractChains(item.key, document);
+			}
+		}, read, extracted, failure));
+		stages.add(new Stage("compare", comparers, new Step() {
+			@Override
+			public void process(Item item) {
+				item.overlap = scorer.compareChains(item.key, item.chains);
+			}
+		}, extracted, compared, failure));
+		for (Stage stage : stages)
+			stage.start();
+		try {
+			for (Item item = compared.take(); END != item; item = compared
+					.take())
+				scorer.setOverlap(item.key, item.chains, item.overlap);
+			rethrow(failure.get());
+		} finally {
+			for (Stage stage : stages)
+				stage.interrupt();
+			for (Stage stage : stages)
+				stage.join();
+			// Delete the documents left in the queues when stopped early.
+			for (BlockingQueue<Item> queue : queues) {
+				List<Item> items = new ArrayList<Item>();
+				queue.drainTo(items);
+				for (Item item : items)
+					discard(item);
+			}
+		}
+	}
+
+	/**
+	 * Rethrow the failure of a stage, which is not a checked exception since
+	 * those are handled for each document.
+	 *
+	 * @param failure
+	 *            failure of a stage, or null if none failed
+	 */
+	private static void rethrow(Throwable failure) {
+		if (failure instanceof Error)
+			throw (Error) failure;
+		if (failure instanceof RuntimeException)
+			throw (RuntimeException) failure;
+		if (null != failure)
+			throw new IllegalStateException(failure);
+	}
+
+	/**
+	 * Score a corpus in a data store and print its averages.
+	 *
+	 * @param args
+	 *            data store path, corpus name, and optionally the number of
+	 *            threads in each stage, the number of available processors by
+	 *            default, and the capacity of the queues, twice the number of
+	 *            threads by default
+	 * @throws GateException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws GateException, IOException,
+			InterruptedException {
+		BasicConfigurator.configure();
+
+		String dataStorePath = args[0];
+		String corpusName = args[1];
+		final int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		final int capacity = args.length > 3 ? Integer.parseInt(args[3])
+				: 2 * threads;
+		final Set<Method> methods = EnumSet.of(Method.MUC, Method.BCUBED,
+				Method.MENTION);
+
+		Datastore.withCorpus(dataStorePath, corpusName,
+				new Datastore.CorpusTask<Void>() {
+					public Void run(Corpus corpus) throws GateException,
+							InterruptedException {
+						CorpusScorer scorer = new CorpusScorer(corpus, methods);
+						long start = System.nanoTime();
+						new ScoringPipeline(scorer, threads, threads, threads,
+								capacity).scoreUnscored();
+						System.out.format("Scored %d documents in %.1f s\n",
+								corpus.size(), (System.nanoTime() - start) / 1e9);
+						for (Method method : methods)
+							System.out.format("%s: %s\n", method, scorer
+									.getAverages(method).getMacroAverage());
+						return null;
+					}
+				});
+	}
+}
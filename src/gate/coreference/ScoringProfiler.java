@@ -0,0 +1,356 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.Corpus;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.util.GateException;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-document timings of the phases of scoring a corpus.
+ * <p>
+ * When a profiler is set on a {@link CorpusScorer} it records, for every
+ * document, the time taken and the bytes allocated while loading the document
+ * from its data store, extracting its chains from the annotations, and scoring
+ * them, along with the numbers of mentions and chains. Allocated bytes are
+ * those of the thread that ran the phase, and are -1 if the virtual machine
+ * cannot measure them. Each finished phase is also logged at debug level, so
+ * that a log can be read as a stream of profiling events.
+ * <p>
+ * The profiler is only consulted while it is set, so scoring without one
+ * costs nothing extra.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ * @see CorpusScorer#setProfiler
+ */
+public class ScoringProfiler {
+
+	static Logger logger = Logger.getLogger(ScoringProfiler.class.getName());
+
+	/**
+	 * A phase of scoring a document.
+	 */
+	public enum Phase {
+		/**
+		 * Loading the document from its data store
+		 */
+		LOAD,
+		/**
+		 * Extracting the key and response chains from the annotations
+		 */
+		EXTRACT,
+		/**
+		 * Comparing the chains and adding the scores to the averages
+		 */
+		SCORE
+	}
+
+	/**
+	 * The time and allocated bytes at the start of a phase.
+	 */
+	public static class Mark {
+		final private long nanos;
+		final private long bytes;
+
+		private Mark(long nanos, long bytes) {
+			this.nanos = nanos;
+			this.bytes = bytes;
+		}
+	}
+
+	/**
+	 * Measurements of a single document.
+	 */
+	public static class DocumentProfile {
+		final private String name;
+		final private long[] nanos = new long[Phase.values().length];
+		final private long[] bytes = new long[Phase.values().length];
+		private int mentions = 0;
+		private int chains = 0;
+
+		private DocumentProfile(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @return document name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @param phase
+		 *            phase of scoring
+		 * @return nanoseconds spent in the phase
+		 */
+		public synchronized long getNanos(Phase phase) {
+			return nanos[phase.ordinal()];
+		}
+
+		/**
+		 * @param phase
+		 *            phase of scoring
+		 * @return bytes allocated in the phase, or -1 if they could not be
+		 *         measured
+		 */
+		public synchronized long getBytes(Phase phase) {
+			return bytes[phase.ordinal()];
+		}
+
+		/**
+		 * @return nanoseconds spent in all the phases
+		 */
+		public synchronized long getTotalNanos() {
+			long total = 0;
+			for (long phaseNanos : nanos)
+				total += phaseNanos;
+			return total;
+		}
+
+		/**
+		 * @return number of key and response mentions
+		 */
+		public synchronized int getMentions() {
+			return mentions;
+		}
+
+		/**
+		 * @return number of key and response chains
+		 */
+		public synchronized int getChains() {
+			return chains;
+		}
+
+		private synchronized void add(Phase phase, long phaseNanos,
+				long phaseBytes) {
+			nanos[phase.ordinal()] += phaseNanos;
+			if (phaseBytes < 0 || bytes[phase.ordinal()] < 0)
+				bytes[phase.ordinal()] = -1;
+			else
+				bytes[phase.ordinal()] += phaseBytes;
+		}
+
+		private synchronized void setCounts(int mentions, int chains) {
+			this.mentions = mentions;
+			this.chains = chains;
+		}
+
+		@Override
+		public synchronized String toString() {
+			StringBuilder s = new StringBuilder(name);
+			s.append(String.format(": %.1f ms", getTotalNanos() / 1e6));
+			for (Phase phase : Phase.values())
+				s.append(String.format(", %s %.1f ms %d bytes", phase,
+						nanos[phase.ordinal()] / 1e6, bytes[phase.ordinal()]));
+			s.append(String.format(", %d mentions, %d chains", mentions,
+					chains));
+			return s.toString();
+		}
+	}
+
+	/**
+	 * Orders profiles by decreasing total time.
+	 */
+	public static final Comparator<DocumentProfile> SLOWEST_FIRST = new Comparator<DocumentProfile>() {
+		@Override
+		public int compare(DocumentProfile a, DocumentProfile b) {
+			long ta = a.getTotalNanos(), tb = b.getTotalNanos();
+			return ta == tb ? a.getName().compareTo(b.getName())
+					: (ta > tb ? -1 : 1);
+		}
+	};
+
+	/**
+	 * Thread allocation counter, or null if it is not available.
+	 */
+	final private com.sun.management.ThreadMXBean allocation;
+
+	final private Map<DocumentKey, DocumentProfile> profiles = new HashMap<DocumentKey, DocumentProfile>();
+
+	public ScoringProfiler() {
+		allocation = getAllocationCounter();
+	}
+
+	private static com.sun.management.ThreadMXBean getAllocationCounter() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return null;
+		com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+		try {
+			if (!counter.isThreadAllocatedMemorySupported())
+				return null;
+			counter.setThreadAllocatedMemoryEnabled(true);
+		} catch (UnsupportedOperationException e) {
+			return null;
+		}
+		return counter;
+	}
+
+	/**
+	 * Mark the start of a phase on the current thread.
+	 *
+	 * @return the time and allocated bytes now
+	 */
+	public Mark mark() {
+		return new Mark(System.nanoTime(), allocatedBytes());
+	}
+
+	/**
+	 * Record the end of a phase started on the current thread.
+	 *
+	 * @param key
+	 *            document
+	 * @param phase
+	 *            phase that ended
+	 * @param start
+	 *            mark made at the start of the phase
+	 */
+	public void record(DocumentKey key, Phase phase, Mark start) {
+		long nanos = System.nanoTime() - start.nanos;
+		long bytes = start.bytes < 0 ? -1 : allocatedBytes() - start.bytes;
+		getProfile(key).add(phase, nanos, bytes);
+		if (logger.isDebugEnabled())
+			logger.debug(String.format("%s %s %d ns %d bytes", key.getName(),
+					phase, nanos, bytes));
+	}
+
+	/**
+	 * Record the size of a document's chains.
+	 *
+	 * @param key
+	 *            document
+	 * @param mentions
+	 *            number of key and response mentions
+	 * @param chains
+	 *            number of key and response chains
+	 */
+	public void recordCounts(DocumentKey key, int mentions, int chains) {
+		getProfile(key).setCounts(mentions, chains);
+	}
+
+	private long allocatedBytes() {
+		if (null == allocation)
+			return -1;
+		return allocation.getThreadAllocatedBytes(Thread.currentThread()
+				.getId());
+	}
+
+	private synchronized DocumentProfile getProfile(DocumentKey key) {
+		DocumentProfile profile = profiles.get(key);
+		if (null == profile) {
+			profile = new DocumentProfile(key.getName());
+			profiles.put(key, profile);
+		}
+		return profile;
+	}
+
+	/**
+	 * @param n
+	 *            maximum number of documents
+	 * @return profiles of the slowest documents, slowest first
+	 */
+	public synchronized List<DocumentProfile> getSlowest(int n) {
+		List<DocumentProfile> sorted = new ArrayList<DocumentProfile>(profiles
+				.values());
+		Collections.sort(sorted, SLOWEST_FIRST);
+		return sorted.subList(0, Math.min(n, sorted.size()));
+	}
+
+	/**
+	 * @param phase
+	 *            phase of scoring
+	 * @return nanoseconds spent in the phase over all documents
+	 */
+	public synchronized long getTotalNanos(Phase phase) {
+		long total = 0;
+		for (DocumentProfile profile : profiles.values())
+			total += profile.getNanos(phase);
+		return total;
+	}
+
+	/**
+	 * Print the time spent in each phase and the slowest documents.
+	 *
+	 * @param out
+	 *            stream to print to
+	 * @param n
+	 *            number of slowest documents to print
+	 */
+	public synchronized void printSummary(PrintStream out, int n) {
+		out.format("Documents: %d\n", profiles.size());
+		for (Phase phase : Phase.values())
+			out.format("%s: %.1f ms\n", phase, getTotalNanos(phase) / 1e6);
+		out.println("Slowest documents:");
+		for (DocumentProfile profile : getSlowest(n))
+			out.println("\t" + profile);
+	}
+
+	/**
+	 * Score every document in a corpus and print a profile of the run.
+	 *
+	 * @param args
+	 *            data store path, corpus name, and optionally the number of
+	 *            slowest documents to print, 10 by default
+	 * @throws GateException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws GateException, IOException,
+			InterruptedException {
+		BasicConfigurator.configure();
+
+		String dataStorePath = args[0];
+		String corpusName = args[1];
+		final int n = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		final Set<Method> methods = EnumSet.of(Method.MUC, Method.BCUBED,
+				Method.MENTION);
+
+		final long start = System.nanoTime();
+		Datastore.withCorpus(dataStorePath, corpusName,
+				new Datastore.CorpusTask<Void>() {
+					public Void run(Corpus corpus) throws GateException {
+						System.out.format("GATE and corpus load: %.1f ms\n",
+								(System.nanoTime() - start) / 1e6);
+						CorpusScorer scorer = new CorpusScorer(corpus, methods);
+						ScoringProfiler profiler = new ScoringProfiler();
+						scorer.setProfiler(profiler);
+						scorer.getScores();
+						profiler.printSummary(System.out, n);
+						return null;
+					}
+				});
+	}
+}
@@ -0,0 +1,340 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.coreference.CorpusScorer.DocumentChains;
+import gate.util.GateException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.SwingUtilities;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Scores the documents of a {@link CorpusScorer} in the background, most
+ * important documents first.
+ * <p>
+ * A worker thread takes documents off a priority queue and loads their chains.
+ * The chains are handed to the Swing event dispatch thread, which enters them
+ * in the scorer, so the scorer is only ever changed on that thread. Results
+ * that arrive while the event thread is busy are applied together and followed
+ * by a single call to the update callback.
+ * <p>
+ * GATE resources are not thread safe, so the worker thread never touches the
+ * corpus or its documents. It only reads private copies of documents that are
+ * in the corpus' data store and not loaded. The chains of all other documents
+ * are extracted on the event dispatch thread.
+ * <p>
+ * A document may be queued several times at different priorities. It is loaded
+ * the first time it comes off the queue and the other entries are skipped.
+ * Documents whose chains are being loaded are not queued again as unscored
+ * until their chains have been entered in the scorer.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ScoringScheduler {
+
+	static Logger logger = Logger.getLogger(ScoringScheduler.class.getName());
+
+	/**
+	 * Priority of the selected documents.
+	 */
+	public static final int SELECTED = 0;
+
+	/**
+	 * Priority of the documents visible in a view.
+	 */
+	public static final int VISIBLE = 1;
+
+	/**
+	 * Priority of the rest of the corpus.
+	 */
+	public static final int BACKGROUND = 2;
+
+	/**
+	 * A queued document. Lower priorities are scored first, and documents of
+	 * the same priority in the order they were queued.
+	 */
+	private static class Task implements Comparable<Task> {
+		final private DocumentKey key;
+		final private int priority;
+		final private long sequence;
+
+		public Task(DocumentKey key, int priority, long sequence) {
+			this.key = key;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(Task other) {
+			if (priority != other.priority)
+				return priority < other.priority ? -1 : 1;
+			return sequence < other.sequence ? -1
+					: (sequence == other.sequence ? 0 : 1);
+		}
+	}
+
+	/**
+	 * The chains loaded for a document.
+	 */
+	private static class Result {
+		final private DocumentKey key;
+		final private DocumentChains chains;
+
+		public Result(DocumentKey key, DocumentChains chains) {
+			this.key = key;
+			this.chains = chains;
+		}
+	}
+
+	final private CorpusScorer scorer;
+
+	/**
+	 * Called on the event dispatch thread after scores have been entered in
+	 * the scorer.
+	 */
+	final private Runnable update;
+
+	final private PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<Task>();
+
+	/**
+	 * Documents that are queued and have not been loaded yet.
+	 */
+	final private Set<DocumentKey> pending = new HashSet<DocumentKey>();
+
+	/**
+	 * Documents that have been taken off the queue and whose chains have not
+	 * been entered in the scorer yet. This is synchronized on {@link #pending}.
+	 */
+	final private Set<DocumentKey> inFlight = new HashSet<DocumentKey>();
+
+	final private AtomicLong sequence = new AtomicLong();
+
+	final private ConcurrentLinkedQueue<Result> results = new ConcurrentLinkedQueue<Result>();
+
+	/**
+	 * True if a task to apply the results is waiting on the event dispatch
+	 * thread.
+	 */
+	final private AtomicBoolean applyPosted = new AtomicBoolean(false);
+
+	final private Thread worker;
+
+	/**
+	 * @param scorer
+	 *            scorer whose documents are scored
+	 * @param update
+	 *            called on the event dispatch thread when scores change
+	 */
+	public ScoringScheduler(CorpusScorer scorer, Runnable update) {
+		this.scorer = scorer;
+		this.update = update;
+		worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				work();
+			}
+		}, "Coreference scoring");
+		worker.setDaemon(true);
+		worker.setPriority(Thread.MIN_PRIORITY);
+	}
+
+	/**
+	 * Start scoring.
+	 */
+	public void start() {
+		worker.start();
+	}
+
+	/**
+	 * Stop scoring. Documents still in the queue are not scored.
+	 */
+	public void stop() {
+		worker.interrupt();
+		queue.clear();
+		synchronized (pending) {
+			pending.clear();
+			inFlight.clear();
+			scorer.getStatistics().setQueueDepth(pending.size());
+		}
+	}
+
+	/**
+	 * Queue a document for scoring. The document is queued even if its chains
+	 * are being loaded, because it may have changed since they were read.
+	 *
+	 * @param key
+	 *            document
+	 * @param priority
+	 *            {@link #SELECTED}, {@link #VISIBLE} or {@link #BACKGROUND}
+	 */
+	public void schedule(DocumentKey key, int priority) {
+		synchronized (pending) {
+			pending.add(key);
+			scorer.getStatistics().setQueueDepth(pending.size());
+		}
+		queue.add(new Task(key, priority, sequence.getAndIncrement()));
+	}
+
+	/**
+	 * Queue all the documents the scorer has not scored that are not queued or
+	 * being loaded already at {@link #BACKGROUND} priority.
+	 */
+	public void scheduleUnscored() {
+		for (DocumentKey key : scorer.getUnscoredDocuments()) {
+			boolean added;
+			synchronized (pending) {
+				added = !inFlight.contains(key) && pending.add(key);
+				scorer.getStatistics().setQueueDepth(pending.size());
+			}
+			if (added)
+				queue.add(new Task(key, BACKGROUND, sequence.getAndIncrement()));
+		}
+	}
+
+	/**
+	 * Move documents that are waiting to be scored ahead of the documents of
+	 * lower priority. Documents that are not waiting are ignored.
+	 *
+	 * @param keys
+	 *            documents
+	 * @param priority
+	 *            {@link #SELECTED}, {@link #VISIBLE} or {@link #BACKGROUND}
+	 */
+	public void prioritize(Collection<DocumentKey> keys, int priority) {
+		for (DocumentKey key : keys) {
+			boolean waiting;
+			synchronized (pending) {
+				waiting = pending.contains(key);
+			}
+			if (waiting)
+				queue.add(new Task(key, priority, sequence.getAndIncrement()));
+		}
+	}
+
+	private void work() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				Task task = queue.take();
+				boolean waiting;
+				synchronized (pending) {
+					waiting = pending.remove(task.key);
+					if (waiting)
+						inFlight.add(task.key);
+					scorer.getStatistics().setQueueDepth(pending.size());
+				}
+				// The document has already been loaded from an earlier entry.
+				if (!waiting)
+					continue;
+				DocumentChains chains;
+				try {
+					chains = load(task.key);
+				} catch (RuntimeException e) {
+					logger.error("Cannot score " + task.key, e);
+					finishLoading(task.key);
+					continue;
+				} catch (GateException e) {
+					logger.error("Cannot score " + task.key, e);
+					finishLoading(task.key);
+					continue;
+				}
+				results.add(new Result(task.key, chains));
+				if (applyPosted.compareAndSet(false, true))
+					SwingUtilities.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							applyResults();
+						}
+					});
+			}
+		} catch (InterruptedException e) {
+			// Stopped.
+		}
+	}
+
+	/**
+	 * Load the chains of a document. A document that is in the data store and
+	 * not loaded is read into a private copy on this thread. The chains of any
+	 * other document are extracted on the event dispatch thread, where the
+	 * corpus and its loaded documents are used.
+	 */
+	private DocumentChains load(final DocumentKey key) throws GateException,
+			InterruptedException {
+		final boolean[] stored = new boolean[1];
+		final DocumentChains[] chains = new DocumentChains[1];
+		invokeAndWait(new Runnable() {
+			@Override
+			public void run() {
+				stored[0] = scorer.isStored(key);
+				if (!stored[0])
+					chains[0] = scorer.loadChains(key);
+			}
+		});
+		if (!stored[0])
+			return chains[0];
+		return scorer.extractChains(key, scorer.readStoredDocument(key));
+	}
+
+	private static void invokeAndWait(Runnable runnable)
+			throws InterruptedException {
+		try {
+			SwingUtilities.invokeAndWait(runnable);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Stop treating a document as being loaded.
+	 */
+	private void finishLoading(DocumentKey key) {
+		synchronized (pending) {
+			inFlight.remove(key);
+		}
+	}
+
+	/**
+	 * Enter the loaded chains in the scorer. This runs on the event dispatch
+	 * thread.
+	 */
+	private void applyResults() {
+		applyPosted.set(false);
+		if (!worker.isAlive())
+			return;
+		Result result;
+		while (null != (result = results.poll())) {
+			scorer.setChains(result.key, result.chains);
+			finishLoading(result.key);
+		}
+		update.run();
+	}
+}
@@ -0,0 +1,276 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Counters and latency histograms of a {@link CorpusScorer}, readable with
+ * standard JMX tools once {@link #register registered}.
+ * <p>
+ * All the counters are atomic, so the scorer records into them from whichever
+ * thread it is running on without locking. Throughput is counted in one second
+ * buckets in a small ring so that it reflects only recent scoring.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ScoringStatistics implements ScoringStatisticsMBean {
+
+	static Logger logger = Logger.getLogger(ScoringStatistics.class.getName());
+
+	/**
+	 * JMX domain of the registered statistics.
+	 */
+	public static final String DOMAIN = "gate.coreference";
+
+	/**
+	 * Number of one second throughput buckets, including the current second
+	 * which is not counted.
+	 */
+	private static final int THROUGHPUT_SECONDS = 11;
+
+	final private AtomicLong documentsScored = new AtomicLong();
+	final private AtomicLong documentsUnannotated = new AtomicLong();
+	final private AtomicLong mentionsProcessed = new AtomicLong();
+	final private AtomicLong overlapHits = new AtomicLong();
+	final private AtomicLong overlapMisses = new AtomicLong();
+	final private AtomicInteger queueDepth = new AtomicInteger();
+	final private AtomicInteger inFlight = new AtomicInteger();
+
+	/**
+	 * Documents scored in each second of the ring and the second each bucket
+	 * was last used for.
+	 */
+	final private AtomicLongArray throughputCounts = new AtomicLongArray(
+			THROUGHPUT_SECONDS);
+	final private AtomicLongArray throughputSeconds = new AtomicLongArray(
+			THROUGHPUT_SECONDS);
+
+	final private LatencyHistogram extraction = new LatencyHistogram();
+
+	/**
+	 * Time taken to update chain overlaps. The overlap computes the terms of
+	 * all the methods at once, so this is the time taken to score a document
+	 * once its chains have been extracted.
+	 */
+	final private LatencyHistogram scoring = new LatencyHistogram();
+
+	private ObjectName name = null;
+
+	/**
+	 * Register these statistics with the platform MBean server. Failure to
+	 * register is logged and otherwise ignored, since scoring does not depend
+	 * on it.
+	 *
+	 * @param scorerName
+	 *            name that identifies the scorer, e.g. the corpus name
+	 */
+	public synchronized void register(String scorerName) {
+		unregister();
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(DOMAIN
+					+ ":type=ScoringStatistics,name="
+					+ ObjectName.quote(scorerName) + ",id="
+					+ System.identityHashCode(this));
+			server.registerMBean(this, objectName);
+			name = objectName;
+		} catch (JMException e) {
+			logger.warn("Cannot register scoring statistics", e);
+		}
+	}
+
+	/**
+	 * Unregister these statistics from the platform MBean server if they have
+	 * been registered.
+	 */
+	public synchronized void unregister() {
+		if (null == name)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException e) {
+			logger.warn("Cannot unregister scoring statistics", e);
+		}
+		name = null;
+	}
+
+	/**
+	 * Record the extraction of a document's chains.
+	 *
+	 * @param nanos
+	 *            time taken in nanoseconds
+	 */
+	void recordExtraction(long nanos) {
+		extraction.record(nanos);
+	}
+
+	/**
+	 * Record the scoring of a document by updating its chain overlap.
+	 *
+	 * @param nanos
+	 *            time taken in nanoseconds
+	 * @param reused
+	 *            true if an existing overlap was updated
+	 * @param mentions
+	 *            number of key and response mentions in the document
+	 */
+	void recordScoring(long nanos, boolean reused, int mentions) {
+		scoring.record(nanos);
+		(reused ? overlapHits : overlapMisses).incrementAndGet();
+		mentionsProcessed.addAndGet(mentions);
+	}
+
+	/**
+	 * Record that a document has been scored.
+	 *
+	 * @param annotated
+	 *            false if the document has no coreference information
+	 */
+	void recordDocument(boolean annotated) {
+		(annotated ? documentsScored : documentsUnannotated).incrementAndGet();
+		long second = System.nanoTime() / 1000000000L;
+		// The time origin is arbitrary and may make the second negative.
+		int bucket = (int) ((second % THROUGHPUT_SECONDS + THROUGHPUT_SECONDS)
+				% THROUGHPUT_SECONDS);
+		long last = throughputSeconds.get(bucket);
+		if (last != second && throughputSeconds.compareAndSet(bucket, last,
+				second))
+			throughputCounts.set(bucket, 0);
+		throughputCounts.incrementAndGet(bucket);
+	}
+
+	/**
+	 * @param depth
+	 *            number of documents waiting to be scored
+	 */
+	void setQueueDepth(int depth) {
+		queueDepth.set(depth);
+	}
+
+	/**
+	 * Record the start of the extraction of a document's chains.
+	 */
+	void extractionStarted() {
+		inFlight.incrementAndGet();
+	}
+
+	/**
+	 * Record the end of the extraction of a document's chains.
+	 */
+	void extractionFinished() {
+		inFlight.decrementAndGet();
+	}
+
+	@Override
+	public long getDocumentsScored() {
+		return documentsScored.get();
+	}
+
+	@Override
+	public long getDocumentsUnannotated() {
+		return documentsUnannotated.get();
+	}
+
+	@Override
+	public long getMentionsProcessed() {
+		return mentionsProcessed.get();
+	}
+
+	@Override
+	public long getOverlapHits() {
+		return overlapHits.get();
+	}
+
+	@Override
+	public long getOverlapMisses() {
+		return overlapMisses.get();
+	}
+
+	@Override
+	public double getThroughput() {
+		long second = System.nanoTime() / 1000000000L;
+		long documents = 0;
+		// Skip the current second, which is not over.
+		for (int i = 0; i < THROUGHPUT_SECONDS; i++) {
+			long bucketSecond = throughputSeconds.get(i);
+			if (bucketSecond < second
+					&& bucketSecond >= second - (THROUGHPUT_SECONDS - 1))
+				documents += throughputCounts.get(i);
+		}
+		return (double) documents / (THROUGHPUT_SECONDS - 1);
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	@Override
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	@Override
+	public long[] getHistogramUpperBounds() {
+		return LatencyHistogram.getUpperBounds();
+	}
+
+	@Override
+	public long[] getExtractionHistogram() {
+		return extraction.getCounts();
+	}
+
+	@Override
+	public double getExtractionMeanMillis() {
+		return extraction.getMeanMillis();
+	}
+
+	@Override
+	public long[] getScoringHistogram() {
+		return scoring.getCounts();
+	}
+
+	@Override
+	public double getScoringMeanMillis() {
+		return scoring.getMeanMillis();
+	}
+
+	@Override
+	public void reset() {
+		documentsScored.set(0);
+		documentsUnannotated.set(0);
+		mentionsProcessed.set(0);
+		overlapHits.set(0);
+		overlapMisses.set(0);
+		for (int i = 0; i < THROUGHPUT_SECONDS; i++)
+			throughputCounts.set(i, 0);
+		extraction.reset();
+		scoring.reset();
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+/**
+ * Management interface of the statistics of a {@link CorpusScorer}.
+ * <p>
+ * Latency histograms have the power of two microsecond buckets of
+ * {@link LatencyHistogram}, whose upper bounds are given by
+ * {@link #getHistogramUpperBounds}.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public interface ScoringStatisticsMBean {
+
+	/**
+	 * @return number of documents scored
+	 */
+	public long getDocumentsScored();
+
+	/**
+	 * @return number of documents found to have no coreference information
+	 */
+	public long getDocumentsUnannotated();
+
+	/**
+	 * @return number of key and response mentions in the scored documents
+	 */
+	public long getMentionsProcessed();
+
+	/**
+	 * @return number of rescored documents whose chain overlap was reused
+	 */
+	public long getOverlapHits();
+
+	/**
+	 * @return number of scored documents whose chain overlap was built from
+	 *         scratch
+	 */
+	public long getOverlapMisses();
+
+	/**
+	 * @return documents scored per second over the last few seconds
+	 */
+	public double getThroughput();
+
+	/**
+	 * @return number of documents waiting to be scored in the background
+	 */
+	public int getQueueDepth();
+
+	/**
+	 * @return number of documents whose chains are being extracted
+	 */
+	public int getInFlight();
+
+	/**
+	 * @return upper bound in microseconds of every histogram bucket but the
+	 *         last
+	 */
+	public long[] getHistogramUpperBounds();
+
+	/**
+	 * @return histogram of the time taken to load a document and extract its
+	 *         chains
+	 */
+	public long[] getExtractionHistogram();
+
+	/**
+	 * @return mean time in milliseconds taken to load a document and extract
+	 *         its chains
+	 */
+	public double getExtractionMeanMillis();
+
+	/**
+	 * @return histogram of the time taken to score a document by updating its
+	 *         chain overlap, which gives the terms of all the methods at once
+	 */
+	public long[] getScoringHistogram();
+
+	/**
+	 * @return mean time in milliseconds taken to score a document by updating
+	 *         its chain overlap
+	 */
+	public double getScoringMeanMillis();
+
+	/**
+	 * Set all the counters and histograms to zero.
+	 */
+	public void reset();
+}
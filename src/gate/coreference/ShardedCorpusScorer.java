@@ -0,0 +1,282 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.Corpus;
+import gate.coreference.scorer.ScoreStore;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.util.GateException;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Scores a corpus in a data store with several worker processes, each
+ * scoring a shard of the documents.
+ * <p>
+ * The documents in name order are dealt out to the shards in turn. Each
+ * worker is a separate virtual machine that opens the data store, scores the
+ * documents of its shard and writes their scores to a {@link ScoreJournal}.
+ * The coordinator waits for the workers and merges their journals, which
+ * gives the same micro and macro averages as scoring the corpus in one
+ * process. A worker that is run again resumes from its journal, so a failed
+ * run can be repeated without rescoring finished documents.
+ * <p>
+ * Workers are started with the class path and virtual machine arguments of
+ * the coordinator, e.g. its maximum heap size, except for debugger agents.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ShardedCorpusScorer {
+
+	static Logger logger = Logger.getLogger(ShardedCorpusScorer.class
+			.getName());
+
+	/**
+	 * First argument of a worker process
+	 */
+	private static final String WORKER = "-worker";
+
+	/**
+	 * @return scoring methods used by the coordinator and workers
+	 */
+	private static Set<Method> getMethods() {
+		return EnumSet.of(Method.MUC, Method.BCUBED, Method.MENTION);
+	}
+
+	/**
+	 * @param directory
+	 *            directory of the journals
+	 * @param shard
+	 *            shard index
+	 * @return journal file of a shard
+	 */
+	public static File getJournal(File directory, int shard) {
+		return new File(directory, "shard-" + shard + ".journal");
+	}
+
+	/**
+	 * @param scorer
+	 *            scorer of a corpus
+	 * @param shard
+	 *            shard index
+	 * @param shards
+	 *            number of shards
+	 * @return documents of the shard
+	 */
+	public static List<DocumentKey> getShard(CorpusScorer scorer, int shard,
+			int shards) {
+		List<DocumentKey> documents = new ArrayList<DocumentKey>();
+		int[] rows = scorer.getRowsInNameOrder();
+		for (int i = shard; i < rows.length; i += shards)
+			documents.add(scorer.getDocumentKey(rows[i]));
+		return documents;
+	}
+
+	/**
+	 * Score the documents of a shard that are not in its journal.
+	 *
+	 * @param scorer
+	 *            scorer of a corpus
+	 * @param methods
+	 *            scoring methods of the scorer
+	 * @param shard
+	 *            shard index
+	 * @param shards
+	 *            number of shards
+	 * @param journalFile
+	 *            journal of the shard
+	 * @throws IOException
+	 */
+	public static void scoreShard(CorpusScorer scorer, Set<Method> methods,
+			int shard, int shards, File journalFile) throws IOException {
+		ScoreJournal journal = new ScoreJournal(journalFile, scorer, methods);
+		try {
+			journal.restore();
+			for (DocumentKey key : getShard(scorer, shard, shards)) {
+				// Skip the documents restored from the journal.
+				if (ScoreStore.UNSCORED != scorer.getScoreStore().getState(
+						scorer.getRow(key)))
+					continue;
+				scorer.setChains(key, scorer.loadChains(key));
+				journal.append(key);
+			}
+		} finally {
+			journal.close();
+		}
+	}
+
+	/**
+	 * Start the worker processes and wait for them to finish.
+	 *
+	 * @param dataStorePath
+	 *            data store path
+	 * @param corpusName
+	 *            corpus name
+	 * @param shards
+	 *            number of workers
+	 * @param directory
+	 *            directory of the journals
+	 * @throws IOException
+	 *             if a worker cannot be started or fails
+	 * @throws InterruptedException
+	 */
+	public static void runWorkers(String dataStorePath, String corpusName,
+			int shards, File directory) throws IOException,
+			InterruptedException {
+		String java = new File(new File(System.getProperty("java.home"),
+				"bin"), "java").getPath();
+		List<Process> workers = new ArrayList<Process>();
+		try {
+			for (int shard = 0; shard < shards; shard++) {
+				List<String> command = new ArrayList<String>();
+				command.add(java);
+				for (String argument : ManagementFactory.getRuntimeMXBean()
+						.getInputArguments())
+					// Debugger agents would all listen on the same port.
+					if (!argument.startsWith("-agentlib:jdwp")
+							&& !argument.startsWith("-Xrunjdwp"))
+						command.add(argument);
+				command.add("-cp");
+				command.add(System.getProperty("java.class.path"));
+				command.add(ShardedCorpusScorer.class.getName());
+				command.add(WORKER);
+				command.add(dataStorePath);
+				command.add(corpusName);
+				command.add(Integer.toString(shard));
+				command.add(Integer.toString(shards));
+				command.add(getJournal(directory, shard).getPath());
+				Process worker = new ProcessBuilder(command).redirectErrorStream(
+						true).start();
+				echo(worker, "Shard " + shard);
+				workers.add(worker);
+			}
+			for (int shard = 0; shard < shards; shard++) {
+				int status = workers.get(shard).waitFor();
+				if (0 != status)
+					throw new IOException("Shard " + shard
+							+ " failed with status " + status);
+			}
+		} finally {
+			for (Process worker : workers)
+				worker.destroy();
+		}
+	}
+
+	/**
+	 * Copy a worker's output to the log so that its pipe does not fill up.
+	 */
+	private static void echo(final Process worker, final String name) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				BufferedReader in = new BufferedReader(new InputStreamReader(
+						worker.getInputStream()));
+				try {
+					for (String line = in.readLine(); null != line; line = in
+							.readLine())
+						logger.info(name + ": " + line);
+				} catch (IOException e) {
+					// The worker has exited.
+				}
+			}
+		}, name + " output");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Score a corpus with worker processes and print its averages.
+	 *
+	 * @param args
+	 *            data store path, corpus name, number of shards, and
+	 *            optionally the directory of the shard journals, the current
+	 *            directory by default
+	 * @throws GateException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws GateException, IOException,
+			InterruptedException {
+		BasicConfigurator.configure();
+
+		if (WORKER.equals(args[0])) {
+			work(args[1], args[2], Integer.parseInt(args[3]), Integer
+					.parseInt(args[4]), new File(args[5]));
+			return;
+		}
+		String dataStorePath = args[0];
+		String corpusName = args[1];
+		final int shards = Integer.parseInt(args[2]);
+		final File directory = new File(args.length > 3 ? args[3] : ".");
+
+		final long start = System.nanoTime();
+		runWorkers(dataStorePath, corpusName, shards, directory);
+
+		final Set<Method> methods = getMethods();
+		Datastore.withCorpus(dataStorePath, corpusName,
+				new Datastore.CorpusTask<Void>() {
+					public Void run(Corpus corpus) throws GateException,
+							IOException {
+						CorpusScorer scorer = new CorpusScorer(corpus, methods);
+						List<File> journals = new ArrayList<File>();
+						for (int shard = 0; shard < shards; shard++)
+							journals.add(getJournal(directory, shard));
+						int merged = ScoreJournal.merge(journals, scorer,
+								methods);
+						System.out.format(
+								"Merged %d documents from %d shards in %.1f s\n",
+								merged, shards,
+								(System.nanoTime() - start) / 1e9);
+						for (Method method : methods) {
+							System.out.format("%s micro: %s\n", method, scorer
+									.getAverages(method).getMicroAverage());
+							System.out.format("%s macro: %s\n", method, scorer
+									.getAverages(method).getMacroAverage());
+						}
+						return null;
+					}
+				});
+	}
+
+	private static void work(String dataStorePath, String corpusName,
+			final int shard, final int shards, final File journal)
+			throws GateException, IOException, InterruptedException {
+		final Set<Method> methods = getMethods();
+		Datastore.withCorpus(dataStorePath, corpusName,
+				new Datastore.CorpusTask<Void>() {
+					public Void run(Corpus corpus) throws GateException,
+							IOException {
+						scoreShard(new CorpusScorer(corpus, methods), methods,
+								shard, shards, journal);
+						return null;
+					}
+				});
+	}
+}
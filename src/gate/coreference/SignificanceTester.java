@@ -0,0 +1,401 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.coreference.scorer.PrecisionRecallTerms;
+import gate.coreference.scorer.ScoreStore;
+import gate.coreference.scorer.ScoreStoreFile;
+import gate.coreference.scorer.ScoreTable;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Paired significance tests of the difference between two systems' scores on
+ * the same corpus.
+ * <p>
+ * The statistic tested is the difference in F-score of the macro averages,
+ * which are calculated from the score terms pooled over the documents. The
+ * terms of every document scored by both systems are copied once into
+ * primitive arrays, so a resample only sums array elements and never rescores
+ * any chains. Resamples are drawn in fixed-size batches on a thread pool. Each
+ * batch has its own random number generator seeded from the test seed and the
+ * batch number, so results depend only on the seed and not on the number of
+ * threads.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class SignificanceTester {
+
+	/**
+	 * Result of a significance test.
+	 */
+	public static class Result {
+		final private double delta;
+		final private double pValue;
+		final private int samples;
+
+		/**
+		 * @param delta
+		 *            observed difference in F-score
+		 * @param pValue
+		 *            two-sided p-value
+		 * @param samples
+		 *            number of resamples
+		 */
+		public Result(double delta, double pValue, int samples) {
+			this.delta = delta;
+			this.pValue = pValue;
+			this.samples = samples;
+		}
+
+		/**
+		 * @return observed difference in F-score, second system minus first
+		 */
+		public double getDelta() {
+			return delta;
+		}
+
+		/**
+		 * @return two-sided p-value
+		 */
+		public double getPValue() {
+			return pValue;
+		}
+
+		/**
+		 * @return number of resamples
+		 */
+		public int getSamples() {
+			return samples;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("delta = %+.4f, p = %.4f (%d samples)", delta,
+					pValue, samples);
+		}
+	}
+
+	/**
+	 * Number of resamples drawn by each task.
+	 */
+	private static final int BATCH_SIZE = 250;
+
+	private static final int TERMS = 4;
+
+	/**
+	 * Number of documents scored by both systems.
+	 */
+	final private int n;
+
+	/**
+	 * Table of method->score terms of the documents, four per document in the
+	 * order precision numerator, precision denominator, recall numerator,
+	 * recall denominator.
+	 */
+	final private Map<Method, double[]> termsA = new HashMap<Method, double[]>();
+	final private Map<Method, double[]> termsB = new HashMap<Method, double[]>();
+
+	final private ExecutorService executor;
+
+	/**
+	 * Pair the documents of two systems' scores by name. Only documents scored
+	 * by both systems, and methods stored in both tables, are tested.
+	 *
+	 * @param a
+	 *            scores of the first system
+	 * @param b
+	 *            scores of the second system
+	 * @param threads
+	 *            number of threads to use
+	 */
+	public SignificanceTester(ScoreTable a, ScoreTable b, int threads) {
+		Map<String, Integer> rowsA = new HashMap<String, Integer>(
+				2 * a.size());
+		for (int row = 0; row < a.size(); row++)
+			if (ScoreStore.SCORED == a.getState(row)
+					&& !rowsA.containsKey(a.getName(row)))
+				rowsA.put(a.getName(row), row);
+		List<int[]> pairs = new ArrayList<int[]>();
+		for (int row = 0; row < b.size(); row++) {
+			if (ScoreStore.SCORED != b.getState(row))
+				continue;
+			Integer rowA = rowsA.remove(b.getName(row));
+			if (null != rowA)
+				pairs.add(new int[] { rowA, row });
+		}
+		n = pairs.size();
+
+		Set<Method> methodsB = new HashSet<Method>();
+		for (Method method : b.getMethods())
+			methodsB.add(method);
+		for (Method method : a.getMethods()) {
+			if (!methodsB.contains(method))
+				continue;
+			double[] da = new double[TERMS * n];
+			double[] db = new double[TERMS * n];
+			for (int i = 0; i < n; i++) {
+				copyTerms(a.getTerms(pairs.get(i)[0], method), da, i);
+				copyTerms(b.getTerms(pairs.get(i)[1], method), db, i);
+			}
+			termsA.put(method, da);
+			termsB.put(method, db);
+		}
+		executor = Executors.newFixedThreadPool(threads);
+	}
+
+	/**
+	 * Pair the documents of two systems' scores by name, using a thread per
+	 * processor.
+	 *
+	 * @param a
+	 *            scores of the first system
+	 * @param b
+	 *            scores of the second system
+	 */
+	public SignificanceTester(ScoreTable a, ScoreTable b) {
+		this(a, b, Runtime.getRuntime().availableProcessors());
+	}
+
+	private static void copyTerms(PrecisionRecallTerms terms, double[] to,
+			int document) {
+		int offset = TERMS * document;
+		to[offset] = terms.getPrecisionNumerator();
+		to[offset + 1] = terms.getPrecisionDenominator();
+		to[offset + 2] = terms.getRecallNumerator();
+		to[offset + 3] = terms.getRecallDenominator();
+	}
+
+	/**
+	 * Stop the thread pool.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * @return number of documents scored by both systems
+	 */
+	public int size() {
+		return n;
+	}
+
+	/**
+	 * @return methods that can be tested
+	 */
+	public Set<Method> getMethods() {
+		return termsA.keySet();
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @return difference in macro average F-score, second system minus first
+	 */
+	public double getDelta(Method method) {
+		double[] a = terms(termsA, method), b = terms(termsB, method);
+		double[] sums = new double[2 * TERMS];
+		for (int i = 0; i < n; i++)
+			add(sums, a, b, i, false);
+		return delta(sums);
+	}
+
+	private static double[] terms(Map<Method, double[]> terms, Method method) {
+		double[] t = terms.get(method);
+		if (null == t)
+			throw new IllegalArgumentException("Method " + method
+					+ " is not scored by both systems");
+		return t;
+	}
+
+	/**
+	 * Add a document's terms to running sums, optionally swapping the systems.
+	 */
+	private static void add(double[] sums, double[] a, double[] b,
+			int document, boolean swap) {
+		double[] first = swap ? b : a, second = swap ? a : b;
+		int offset = TERMS * document;
+		for (int t = 0; t < TERMS; t++) {
+			sums[t] += first[offset + t];
+			sums[TERMS + t] += second[offset + t];
+		}
+	}
+
+	private static double fScore(double[] sums, int offset) {
+		double precision = sums[offset] / sums[offset + 1];
+		double recall = sums[offset + 2] / sums[offset + 3];
+		return 2 * precision * recall / (precision + recall);
+	}
+
+	private static double delta(double[] sums) {
+		return fScore(sums, TERMS) - fScore(sums, 0);
+	}
+
+	/**
+	 * Paired bootstrap test. Each resample draws the documents with
+	 * replacement. The p-value is the fraction of resamples whose difference
+	 * is further from the observed difference than the observed difference is
+	 * from zero, the resampled distribution being centered on the observed
+	 * difference rather than on zero.
+	 *
+	 * @param method
+	 *            scoring method
+	 * @param samples
+	 *            number of resamples
+	 * @param seed
+	 *            random number seed
+	 * @return test result
+	 */
+	public Result bootstrap(Method method, int samples, long seed) {
+		final double[] a = terms(termsA, method), b = terms(termsB, method);
+		final double observed = getDelta(method);
+		long count = run(samples, seed, new Sampler() {
+			@Override
+			public boolean sample(Random random, double[] sums) {
+				for (int i = 0; i < n; i++)
+					add(sums, a, b, random.nextInt(n), false);
+				return Math.abs(delta(sums) - observed) >= Math.abs(observed);
+			}
+		});
+		return new Result(observed, (count + 1.0) / (samples + 1.0), samples);
+	}
+
+	/**
+	 * Approximate randomization test. Each trial swaps the two systems' terms
+	 * of each document with probability one half. The p-value is the fraction
+	 * of trials whose difference is at least as large in magnitude as the
+	 * observed difference.
+	 *
+	 * @param method
+	 *            scoring method
+	 * @param trials
+	 *            number of trials
+	 * @param seed
+	 *            random number seed
+	 * @return test result
+	 */
+	public Result randomization(Method method, int trials, long seed) {
+		final double[] a = terms(termsA, method), b = terms(termsB, method);
+		final double observed = getDelta(method);
+		long count = run(trials, seed, new Sampler() {
+			@Override
+			public boolean sample(Random random, double[] sums) {
+				for (int i = 0; i < n; i++)
+					add(sums, a, b, i, random.nextBoolean());
+				return Math.abs(delta(sums)) >= Math.abs(observed);
+			}
+		});
+		return new Result(observed, (count + 1.0) / (trials + 1.0), trials);
+	}
+
+	/**
+	 * A single resample.
+	 */
+	private interface Sampler {
+		/**
+		 * @param random
+		 *            random number generator
+		 * @param sums
+		 *            zeroed array in which to sum the terms of the first and
+		 *            second system
+		 * @return true if the resample is counted towards the p-value
+		 */
+		public boolean sample(Random random, double[] sums);
+	}
+
+	/**
+	 * Draw resamples in batches on the thread pool.
+	 *
+	 * @return number of resamples counted
+	 */
+	private long run(int samples, final long seed, final Sampler sampler) {
+		List<Future<Long>> batches = new ArrayList<Future<Long>>();
+		for (int start = 0; start < samples; start += BATCH_SIZE) {
+			final int batch = start / BATCH_SIZE;
+			final int size = Math.min(BATCH_SIZE, samples - start);
+			batches.add(executor.submit(new Callable<Long>() {
+				@Override
+				public Long call() {
+					Random random = new Random(seed * 31 + batch);
+					double[] sums = new double[2 * TERMS];
+					long count = 0;
+					for (int s = 0; s < size; s++) {
+						Arrays.fill(sums, 0);
+						if (sampler.sample(random, sums))
+							count++;
+					}
+					return count;
+				}
+			}));
+		}
+		long count = 0;
+		try {
+			for (Future<Long> batch : batches)
+				count += batch.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		return count;
+	}
+
+	/**
+	 * Test the difference between two score files written by
+	 * {@link CorpusScorer#exportScores}.
+	 *
+	 * @param args
+	 *            first system's score file, second system's score file and
+	 *            optionally the number of resamples
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		int samples = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+		SignificanceTester test = new SignificanceTester(new ScoreStoreFile(
+				new File(args[0])), new ScoreStoreFile(new File(args[1])));
+		try {
+			System.out.format("Documents: %d\n", test.size());
+			for (Method method : test.getMethods()) {
+				System.out.println(method);
+				System.out.println("\tPaired bootstrap: "
+						+ test.bootstrap(method, samples, 0));
+				System.out.println("\tApproximate randomization: "
+						+ test.randomization(method, samples, 0));
+			}
+		} finally {
+			test.shutdown();
+		}
+	}
+}
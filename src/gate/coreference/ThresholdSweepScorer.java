@@ -0,0 +1,198 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import gate.AnnotationSet;
+import gate.Corpus;
+import gate.Document;
+import gate.FeatureMap;
+import gate.coreference.scorer.PrecisionRecall;
+import gate.coreference.scorer.ScoredLink;
+import gate.coreference.scorer.SweepPoint;
+import gate.coreference.scorer.ThresholdSweep;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.creole.ANNIEConstants;
+import gate.util.GateException;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Precision/recall curves for a corpus of documents with scored coreference
+ * links.
+ * <p>
+ * The scored links of a document are stored in a feature with the same layout
+ * as the matches feature: a table of annotation set name->collection of links,
+ * where each link is a list of two annotation IDs followed by the link's
+ * confidence. The response chains at a threshold are the connected components
+ * of the links whose confidence is at least the threshold.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ThresholdSweepScorer {
+
+	static Logger logger = Logger.getLogger(ThresholdSweepScorer.class
+			.getName());
+
+	final public static String DEFAULT_LINKS_FEATURE = "MatchesLinks";
+
+	/**
+	 * Scoring is done over sets of (Start, End) offset pairs which are stored
+	 * as lists of long values.
+	 */
+	final private ThresholdSweep<List<Long>> sweep;
+
+	/**
+	 * @param methods
+	 *            scoring methods, e.g. B-Cubed or MUC
+	 */
+	public ThresholdSweepScorer(Set<Method> methods) {
+		sweep = new ThresholdSweep<List<Long>>(methods);
+	}
+
+	/**
+	 * Add all the documents in a corpus. Use the default links and match
+	 * features and key and response names.
+	 *
+	 * @param corpus
+	 *            corpus to add
+	 */
+	public void addCorpus(Corpus corpus) {
+		for (Object object : corpus)
+			addDocument((Document) object, DEFAULT_LINKS_FEATURE,
+					ANNIEConstants.DOCUMENT_COREF_FEATURE_NAME,
+					CorpusScorer.DEFAULT_KEY_NAME, null);
+	}
+
+	/**
+	 * Add the key chains and scored response links of a document. Documents
+	 * without a links feature are skipped.
+	 *
+	 * @param document
+	 *            document to add
+	 * @param linksFeature
+	 *            name of the document scored links feature
+	 * @param matchFeature
+	 *            name of the document matches feature, e.g. MatchesAnnots
+	 * @param keyName
+	 *            name of the key match sets in the matches annotation, e.g. Key
+	 * @param responseName
+	 *            name of the response links in the links feature, e.g. null
+	 */
+	public void addDocument(Document document, String linksFeature,
+			String matchFeature, String keyName, String responseName) {
+		FeatureMap features = document.getFeatures();
+		if (!features.containsKey(linksFeature))
+			return;
+		logger.debug("Add links " + document.getName());
+
+		@SuppressWarnings("unchecked")
+		Map<String, Collection<List<? extends Number>>> linkIDs = (Map<String, Collection<List<? extends Number>>>) features
+				.get(linksFeature);
+		@SuppressWarnings("unchecked")
+		Map<String, Collection<Collection<Integer>>> matchIDsets = (Map<String, Collection<Collection<Integer>>>) features
+				.get(matchFeature);
+
+		Set<Set<List<Long>>> key = new HashSet<Set<List<Long>>>();
+		// Response elements that are not linked to anything are singletons.
+		Set<List<Long>> responseElements = new HashSet<List<Long>>();
+		if (null != matchIDsets) {
+			key = CorpusScorer.getMatchSets(document, matchIDsets, keyName);
+			for (Set<List<Long>> responseSet : CorpusScorer.getMatchSets(
+					document, matchIDsets, responseName))
+				responseElements.addAll(responseSet);
+		}
+
+		List<ScoredLink<List<Long>>> links = new ArrayList<ScoredLink<List<Long>>>();
+		Collection<List<? extends Number>> responseLinks = linkIDs
+				.get(responseName);
+		if (null != responseLinks) {
+			AnnotationSet annotations = document.getAnnotations(responseName);
+			for (List<? extends Number> link : responseLinks)
+				links.add(new ScoredLink<List<Long>>(CorpusScorer.getOffsets(
+						annotations, link.get(0).intValue()), CorpusScorer
+						.getOffsets(annotations, link.get(1).intValue()), link
+						.get(2).doubleValue()));
+		}
+		sweep.addDocument(key, responseElements, links);
+	}
+
+	/**
+	 * @return micro and macro averages at every threshold in order of
+	 *         descending threshold
+	 */
+	public List<SweepPoint> sweep() {
+		return sweep.sweep();
+	}
+
+	/**
+	 * Print the precision/recall curve for all the documents in a corpus in a
+	 * data store.
+	 *
+	 * @param args
+	 *            first argument is the data store path, second argument is the
+	 *            corpus name
+	 * @throws GateException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws GateException, IOException,
+			InterruptedException {
+		BasicConfigurator.configure();
+
+		String dataStorePath = args[0];
+		String corpusName = args[1];
+
+		// Use both scoring methods.
+		final Set<Method> methods = EnumSet.of(Method.MUC, Method.BCUBED);
+
+		Datastore.withCorpus(dataStorePath, corpusName,
+				new Datastore.CorpusTask<Void>() {
+					public Void run(Corpus corpus) throws GateException {
+						ThresholdSweepScorer scorer = new ThresholdSweepScorer(
+								methods);
+						scorer.addCorpus(corpus);
+						System.out.println("Threshold\tMUC Precision\t"
+								+ "MUC Recall\tMUC F-score\tB-Cubed Precision\t"
+								+ "B-Cubed Recall\tB-Cubed F-score");
+						for (SweepPoint point : scorer.sweep()) {
+							PrecisionRecall muc = point
+									.getMacroAverage(Method.MUC);
+							PrecisionRecall bCubed = point
+									.getMacroAverage(Method.BCUBED);
+							System.out.format("%f\t%f\t%f\t%f\t%f\t%f\t%f\n",
+									point.getThreshold(), muc.getPrecision(),
+									muc.getRecall(), muc.getFScore(), bCubed
+											.getPrecision(), bCubed.getRecall(),
+									bCubed.getFScore());
+						}
+						return null;
+					}
+				});
+	}
+}
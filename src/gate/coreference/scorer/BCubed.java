@@ -20,9 +20,9 @@ package gate.coreference.scorer;
 
 
 import gate.coreference.scorer.util.NumericUtilities;
-import gate.coreference.scorer.util.SetUtilities;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +55,26 @@ public class BCubed<T> implements EquivalenceClassScorer<T> {
 		return new PrecisionRecall(precision, recall);
 	}
 
+	/**
+	 * B-Cubed terms for a pair of equivalence sets. The numerators are the sums
+	 * of the element scores and the denominators are the numbers of elements.
+	 * 
+	 * @see gate.coreference.scorer.EquivalenceClassScorer#scoreTerms(java.util.Set,
+	 *      java.util.Set)
+	 */
+	@Override
+	public PrecisionRecallTerms scoreTerms(Set<Set<T>> key,
+			Set<Set<T>> response) {
+		Map<T, Set<T>> keyTable = buildTable(key);
+		Map<T, Set<T>> responseTable = buildTable(response);
+
+		double precision = bCubedSum(keyTable, responseTable);
+		double recall = bCubedSum(responseTable, keyTable);
+
+		return new PrecisionRecallTerms(precision, responseTable.size(),
+				recall, keyTable.size());
+	}
+
 	/**
 	 * B-Cubed scores for a set of equivalence set pairs and their micro and
 	 * macro averages.
@@ -98,21 +118,28 @@ public class BCubed<T> implements EquivalenceClassScorer<T> {
 	 * @return average of the scores for individual elements
 	 */
 	private double bCubedScore(Map<T, Set<T>> numTable, Map<T, Set<T>> denTable) {
-		double score = 0;
+		return bCubedSum(numTable, denTable) / denTable.keySet().size();
+	}
+
+	/**
+	 * Calculate the sum of the score ratios for a set of elements in an
+	 * equivalence set partition.
+	 * 
+	 * @param numTable
+	 *            set table of the score numerator
+	 * @param denTable
+	 *            set table of the score denominator
+	 * @return sum of the scores for individual elements
+	 */
+	private double bCubedSum(Map<T, Set<T>> numTable, Map<T, Set<T>> denTable) {
+		double sum = 0;
+		Map<T, Integer> overlaps = overlapSizes(numTable, denTable);
 		for (T element : denTable.keySet()) {
-			double numerator, denominator;
-			if (!numTable.containsKey(element))
-				numerator = 0;
-			else {
-				Set<T> intersection = SetUtilities.intersection(
-						numTable.get(element), denTable.get(element));
-				numerator = intersection.size();
-			}
-			denominator = denTable.get(element).size();
-			score += numerator / denominator;
+			double numerator = overlaps.get(element);
+			double denominator = denTable.get(element).size();
+			sum += numerator / denominator;
 		}
-		score /= denTable.keySet().size();
-		return score;
+		return sum;
 	}
 
 	/**
@@ -129,21 +156,53 @@ public class BCubed<T> implements EquivalenceClassScorer<T> {
 	private List<Double> bCubedElementScores(Map<T, Set<T>> numTable,
 			Map<T, Set<T>> denTable) {
 		List<Double> elementScores = new LinkedList<Double>();
+		Map<T, Integer> overlaps = overlapSizes(numTable, denTable);
 		for (T element : denTable.keySet()) {
-			double numerator, denominator;
-			if (!numTable.containsKey(element))
-				numerator = 0;
-			else {
-				Set<T> intersection = SetUtilities.intersection(
-						numTable.get(element), denTable.get(element));
-				numerator = intersection.size();
-			}
-			denominator = denTable.get(element).size();
+			double numerator = overlaps.get(element);
+			double denominator = denTable.get(element).size();
 			elementScores.add(numerator / denominator);
 		}
 		return elementScores;
 	}
 
+	/**
+	 * Find the size of the intersection of every element's numerator and
+	 * denominator sets.
+	 * <p>
+	 * Each denominator set is scanned once, counting its elements by the
+	 * numerator set they are in, so this takes time linear in the number of
+	 * elements instead of intersecting a pair of sets for every element.
+	 * 
+	 * @param numTable
+	 *            set table of the score numerator
+	 * @param denTable
+	 *            set table of the score denominator
+	 * @return table of element->intersection size for the elements of the
+	 *         denominator table
+	 */
+	private Map<T, Integer> overlapSizes(Map<T, Set<T>> numTable,
+			Map<T, Set<T>> denTable) {
+		Map<T, Integer> overlaps = new HashMap<T, Integer>();
+		Map<Set<T>, Boolean> scanned = new IdentityHashMap<Set<T>, Boolean>();
+		for (Set<T> denSet : denTable.values()) {
+			if (null != scanned.put(denSet, Boolean.TRUE))
+				continue;
+			Map<Set<T>, Integer> counts = new IdentityHashMap<Set<T>, Integer>();
+			for (T element : denSet) {
+				Set<T> numSet = numTable.get(element);
+				if (null != numSet) {
+					Integer count = counts.get(numSet);
+					counts.put(numSet, null == count ? 1 : count + 1);
+				}
+			}
+			for (T element : denSet) {
+				Set<T> numSet = numTable.get(element);
+				overlaps.put(element, null == numSet ? 0 : counts.get(numSet));
+			}
+		}
+		return overlaps;
+	}
+
 	/**
 	 * Build a table of elements to sets
 	 * 
@@ -0,0 +1,172 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A key chain that was split across several response chains, or a response
+ * chain that merged several key chains.
+ * <p>
+ * The impact of an error is the amount by which it lowers a score: recall for
+ * a split and precision for a merge. It is the part of the score numerator that
+ * the chain loses divided by the score denominator of the whole document, so
+ * the impacts of all the splits add up to one minus the recall, and those of
+ * all the merges to one minus the precision. The only exception is B-Cubed,
+ * which also penalizes single element chains missing from the other side.
+ * Splits and merges have no impact on mention detection scores.
+ *
+ * @param T
+ *            type of objects in equivalence sets
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ * @see ChainOverlap#getErrors
+ */
+public class ChainError<T> {
+
+	/**
+	 * Kind of error.
+	 */
+	public enum Kind {
+		/**
+		 * A key chain split across response chains
+		 */
+		SPLIT,
+		/**
+		 * A response chain that merged key chains
+		 */
+		MERGE
+	}
+
+	final private Kind kind;
+	final private Set<T> chain;
+	final private List<Set<T>> parts;
+	final private int unmatched;
+	final private double mucImpact;
+	final private double bCubedImpact;
+
+	/**
+	 * @param kind
+	 *            kind of error
+	 * @param chain
+	 *            the key chain that was split or the response chain that
+	 *            merged
+	 * @param parts
+	 *            chains on the other side that overlap the chain
+	 * @param unmatched
+	 *            number of elements of the chain not in any chain on the other
+	 *            side
+	 * @param mucImpact
+	 *            drop in MUC score caused by the error
+	 * @param bCubedImpact
+	 *            drop in B-Cubed score caused by the error
+	 */
+	public ChainError(Kind kind, Set<T> chain, List<Set<T>> parts,
+			int unmatched, double mucImpact, double bCubedImpact) {
+		this.kind = kind;
+		this.chain = chain;
+		this.parts = parts;
+		this.unmatched = unmatched;
+		this.mucImpact = mucImpact;
+		this.bCubedImpact = bCubedImpact;
+	}
+
+	/**
+	 * @return kind of error
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the key chain that was split or the response chain that merged
+	 */
+	public Set<T> getChain() {
+		return chain;
+	}
+
+	/**
+	 * @return chains on the other side that overlap the chain
+	 */
+	public List<Set<T>> getParts() {
+		return parts;
+	}
+
+	/**
+	 * @return number of elements of the chain not in any chain on the other
+	 *         side
+	 */
+	public int getUnmatched() {
+		return unmatched;
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @return drop in the recall (for a split) or precision (for a merge)
+	 *         caused by the error
+	 */
+	public double getImpact(Method method) {
+		switch (method) {
+		case MUC:
+			return mucImpact;
+		case MENTION:
+			// Splits and merges do not change which mentions were found.
+			return 0;
+		case BCUBED:
+		default:
+			return bCubedImpact;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s %s into %d parts (MUC %.4f, B-Cubed %.4f)",
+				kind, chain, parts.size() + unmatched, mucImpact, bCubedImpact);
+	}
+
+	/**
+	 * Orders errors by decreasing impact on a scoring method, breaking ties by
+	 * decreasing impact on the other methods.
+	 *
+	 * @param method
+	 *            scoring method
+	 * @return comparator of errors
+	 */
+	public static <T> Comparator<ChainError<T>> byImpact(final Method method) {
+		return new Comparator<ChainError<T>>() {
+			@Override
+			public int compare(ChainError<T> a, ChainError<T> b) {
+				int c = Double.compare(b.getImpact(method), a.getImpact(method));
+				if (0 != c)
+					return c;
+				for (Method other : Method.values()) {
+					c = Double.compare(b.getImpact(other), a.getImpact(other));
+					if (0 != c)
+						return c;
+				}
+				return 0;
+			}
+		};
+	}
+}
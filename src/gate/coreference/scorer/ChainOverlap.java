@@ -0,0 +1,585 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Map.Entry;
+
+/**
+ * The overlap between a pair of equivalence sets, maintained along with their
+ * MUC, B-Cubed and mention detection score terms.
+ * <p>
+ * For every key chain this records the number of elements it shares with each
+ * response chain and vice versa. All the scores can be written in terms of
+ * these counts, so adding or removing a single chain only changes the terms of
+ * the chains that overlap it. This lets a document whose chains have been edited be
+ * rescored by diffing the old and new chains with {@link #update} instead of
+ * scoring it from scratch.
+ * <p>
+ * The B-Cubed numerators are kept as integer sums of squared overlaps grouped by
+ * chain size, so any sequence of updates gives exactly the same terms as
+ * building the overlap from the final chains.
+ * <p>
+ * An optional {@link Stratifier} assigns every chain to named strata, such as
+ * a chain size range or an entity type. The terms contributed by each chain
+ * are then also accumulated for each of its strata in the same pass, giving
+ * score breakdowns at the cost of a few extra additions per overlap. Recall
+ * terms are broken down by the strata of the key chains and precision terms by
+ * the strata of the response chains.
+ *
+ * @param T
+ *            type of objects in equivalence sets
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ChainOverlap<T> {
+
+	/**
+	 * Assigns chains to strata.
+	 *
+	 * @param T
+	 *            type of objects in equivalence sets
+	 */
+	public interface Stratifier<T> {
+		/**
+		 * @param chain
+		 *            a key or response chain
+		 * @return names of the strata the chain belongs to. The same chain
+		 *         must always give an equal collection.
+		 */
+		public Collection<String> getStrata(Set<T> chain);
+	}
+
+	private static final int KEY = 0;
+	private static final int RESPONSE = 1;
+
+	/**
+	 * MUC, B-Cubed and mention detection score terms of the chains on both
+	 * sides.
+	 */
+	private static class Terms {
+		/**
+		 * MUC numerator and denominator for each side. The key side gives
+		 * recall and the response side gives precision.
+		 */
+		final private long[] mucNumerators = new long[2];
+		final private long[] mucDenominators = new long[2];
+
+		/**
+		 * Table of chain size->sum of squared overlaps of chains of that size
+		 * for each side. The B-Cubed numerator is the sum of these divided by
+		 * the chain sizes.
+		 */
+		final private List<Map<Integer, Long>> bCubedSquares = new ArrayList<Map<Integer, Long>>(
+				2);
+		final private long[] bCubedDenominators = new long[2];
+
+		/**
+		 * Number of elements that are also on the other side for each side.
+		 * These are the mention detection numerators.
+		 */
+		final private long[] matched = new long[2];
+
+		public Terms() {
+			bCubedSquares.add(new HashMap<Integer, Long>());
+			bCubedSquares.add(new HashMap<Integer, Long>());
+		}
+
+		private void addSquares(int side, int size, long squares) {
+			Map<Integer, Long> table = bCubedSquares.get(side);
+			Long sum = table.get(size);
+			long total = (null == sum ? 0 : sum) + squares;
+			if (0 == total)
+				table.remove(size);
+			else
+				table.put(size, total);
+		}
+
+		private double bCubedNumerator(int side) {
+			double numerator = 0;
+			for (Entry<Integer, Long> entry : bCubedSquares.get(side)
+					.entrySet())
+				numerator += (double) entry.getValue() / entry.getKey();
+			return numerator;
+		}
+
+		private PrecisionRecallTerms getTerms(Method method) {
+			switch (method) {
+			case MUC:
+				return new PrecisionRecallTerms(mucNumerators[RESPONSE],
+						mucDenominators[RESPONSE], mucNumerators[KEY],
+						mucDenominators[KEY]);
+			case MENTION:
+				return new PrecisionRecallTerms(matched[RESPONSE],
+						bCubedDenominators[RESPONSE], matched[KEY],
+						bCubedDenominators[KEY]);
+			case BCUBED:
+			default:
+				return new PrecisionRecallTerms(bCubedNumerator(RESPONSE),
+						bCubedDenominators[RESPONSE], bCubedNumerator(KEY),
+						bCubedDenominators[KEY]);
+			}
+		}
+	}
+
+	/**
+	 * A key or response chain and its overlap with the chains on the other
+	 * side.
+	 */
+	private class Chain {
+		final private Set<T> elements;
+		final private Map<Chain, Integer> overlaps = new HashMap<Chain, Integer>();
+		final private Collection<String> strataNames;
+		final private List<Terms> strata = new ArrayList<Terms>();
+
+		public Chain(Set<T> elements, Collection<String> strataNames) {
+			this.elements = elements;
+			this.strataNames = strataNames;
+			for (String name : strataNames) {
+				Terms terms = ChainOverlap.this.strata.get(name);
+				if (null == terms) {
+					terms = new Terms();
+					ChainOverlap.this.strata.put(name, terms);
+				}
+				strata.add(terms);
+			}
+		}
+	}
+
+	/**
+	 * Table of element->chain for each side.
+	 */
+	private List<Map<T, Chain>> elementTables = new ArrayList<Map<T, Chain>>(2);
+
+	/**
+	 * Table of chain elements->chain for each side.
+	 */
+	private List<Map<Set<T>, Chain>> chainTables = new ArrayList<Map<Set<T>, Chain>>(
+			2);
+
+	/**
+	 * Terms of all the chains.
+	 */
+	final private Terms totals = new Terms();
+
+	/**
+	 * Table of stratum name->terms of the chains in that stratum.
+	 */
+	final private Map<String, Terms> strata = new HashMap<String, Terms>();
+
+	private Stratifier<T> stratifier;
+
+	/**
+	 * Create an empty overlap.
+	 */
+	public ChainOverlap() {
+		this(null);
+	}
+
+	/**
+	 * Create an empty overlap that also keeps terms for strata of chains.
+	 *
+	 * @param stratifier
+	 *            assigns chains to strata, or null to keep only the total
+	 *            terms
+	 */
+	public ChainOverlap(Stratifier<T> stratifier) {
+		this.stratifier = stratifier;
+		for (int side = KEY; side <= RESPONSE; side++) {
+			elementTables.add(new HashMap<T, Chain>());
+			chainTables.add(new HashMap<Set<T>, Chain>());
+		}
+	}
+
+	/**
+	 * @param key
+	 *            key equivalence classes
+	 * @param response
+	 *            response equivalence classes
+	 */
+	public ChainOverlap(Set<Set<T>> key, Set<Set<T>> response) {
+		this(key, response, null);
+	}
+
+	/**
+	 * @param key
+	 *            key equivalence classes
+	 * @param response
+	 *            response equivalence classes
+	 * @param stratifier
+	 *            assigns chains to strata, or null to keep only the total
+	 *            terms
+	 */
+	public ChainOverlap(Set<Set<T>> key, Set<Set<T>> response,
+			Stratifier<T> stratifier) {
+		this(stratifier);
+		update(key, response);
+	}
+
+	/**
+	 * Replace the key and response chains. Only the chains that differ from
+	 * the current ones are removed and added.
+	 *
+	 * @param key
+	 *            new key equivalence classes
+	 * @param response
+	 *            new response equivalence classes
+	 */
+	public void update(Set<Set<T>> key, Set<Set<T>> response) {
+		update(key, response, false, null);
+	}
+
+	/**
+	 * Replace the key and response chains and the stratifier. Chains whose
+	 * strata have changed are moved to their new strata. The strata of every
+	 * chain that is kept are recomputed unless the stratifier is the current
+	 * one.
+	 *
+	 * @param key
+	 *            new key equivalence classes
+	 * @param response
+	 *            new response equivalence classes
+	 * @param stratifier
+	 *            assigns chains to strata, or null to keep only the total
+	 *            terms
+	 */
+	public void update(Set<Set<T>> key, Set<Set<T>> response,
+			Stratifier<T> stratifier) {
+		boolean changed = stratifier != this.stratifier;
+		this.stratifier = stratifier;
+		update(key, response, changed, null);
+	}
+
+	/**
+	 * Replace the key and response chains and the stratifier, given the
+	 * elements whose strata may differ under the new stratifier, e.g. because
+	 * their types have changed. The strata of the chains that are kept are
+	 * only recomputed for chains that contain one of these elements.
+	 *
+	 * @param key
+	 *            new key equivalence classes
+	 * @param response
+	 *            new response equivalence classes
+	 * @param stratifier
+	 *            assigns chains to strata, or null to keep only the total
+	 *            terms
+	 * @param restratified
+	 *            elements whose strata may have changed
+	 */
+	public void update(Set<Set<T>> key, Set<Set<T>> response,
+			Stratifier<T> stratifier, Set<T> restratified) {
+		this.stratifier = stratifier;
+		update(key, response, false, restratified);
+	}
+
+	/**
+	 * @param restratifyAll
+	 *            true to recompute the strata of all the chains that are kept
+	 * @param restratified
+	 *            elements whose chains' strata are recomputed, or null
+	 */
+	private void update(Set<Set<T>> key, Set<Set<T>> response,
+			boolean restratifyAll, Set<T> restratified) {
+		List<Set<T>> added = new ArrayList<Set<T>>();
+		// Remove all the old chains before adding any new ones so that an
+		// element moving between chains is never in two chains at once.
+		removeMissingChains(KEY, key, restratifyAll, restratified);
+		removeMissingChains(RESPONSE, response, restratifyAll, restratified);
+		for (Set<T> chain : key)
+			if (!chainTables.get(KEY).containsKey(chain))
+				added.add(chain);
+		for (Set<T> chain : added)
+			addChain(KEY, chain);
+		added.clear();
+		for (Set<T> chain : response)
+			if (!chainTables.get(RESPONSE).containsKey(chain))
+				added.add(chain);
+		for (Set<T> chain : added)
+			addChain(RESPONSE, chain);
+	}
+
+	/**
+	 * Remove the chains on one side that are not in a new set of chains, or
+	 * whose strata have changed.
+	 */
+	private void removeMissingChains(int side, Set<Set<T>> chains,
+			boolean restratifyAll, Set<T> restratified) {
+		Set<Chain> restratify = new HashSet<Chain>();
+		if (!restratifyAll && null != restratified) {
+			Map<T, Chain> elementTable = elementTables.get(side);
+			for (T element : restratified) {
+				Chain chain = elementTable.get(element);
+				if (null != chain)
+					restratify.add(chain);
+			}
+		}
+		List<Set<T>> removed = new ArrayList<Set<T>>();
+		for (Chain chain : chainTables.get(side).values())
+			if (!chains.contains(chain.elements)
+					|| ((restratifyAll || restratify.contains(chain)) && !chain.strataNames
+							.equals(getStrataNames(chain.elements))))
+				removed.add(chain.elements);
+		for (Set<T> chain : removed)
+			removeChain(side, chain);
+	}
+
+	/**
+	 * @return the stratifier, or null if only the total terms are kept
+	 */
+	public Stratifier<T> getStratifier() {
+		return stratifier;
+	}
+
+	/**
+	 * @param chain
+	 *            key chain to add
+	 */
+	public void addKeyChain(Set<T> chain) {
+		addChain(KEY, chain);
+	}
+
+	/**
+	 * @param chain
+	 *            key chain to remove
+	 */
+	public void removeKeyChain(Set<T> chain) {
+		removeChain(KEY, chain);
+	}
+
+	/**
+	 * @param chain
+	 *            response chain to add
+	 */
+	public void addResponseChain(Set<T> chain) {
+		addChain(RESPONSE, chain);
+	}
+
+	/**
+	 * @param chain
+	 *            response chain to remove
+	 */
+	public void removeResponseChain(Set<T> chain) {
+		removeChain(RESPONSE, chain);
+	}
+
+	private void addChain(int side, Set<T> elements) {
+		if (chainTables.get(side).containsKey(elements))
+			throw new IllegalArgumentException("Chain " + elements
+					+ " has already been added");
+		Chain chain = new Chain(elements, getStrataNames(elements));
+		Map<T, Chain> elementTable = elementTables.get(side);
+		Map<T, Chain> otherTable = elementTables.get(1 - side);
+		for (T element : elements) {
+			if (elementTable.containsKey(element)) {
+				// Undo the elements added so far.
+				for (T added : elements) {
+					if (added == element)
+						break;
+					elementTable.remove(added);
+					Chain other = otherTable.get(added);
+					if (null != other)
+						other.overlaps.remove(chain);
+				}
+				throw new IllegalArgumentException("Element " + element
+						+ " appears in more than one set");
+			}
+			elementTable.put(element, chain);
+			Chain other = otherTable.get(element);
+			if (null != other) {
+				increment(chain.overlaps, other);
+				increment(other.overlaps, chain);
+			}
+		}
+		chainTables.get(side).put(elements, chain);
+		updateTerms(side, chain, 1);
+	}
+
+	private void removeChain(int side, Set<T> elements) {
+		Chain chain = chainTables.get(side).remove(elements);
+		if (null == chain)
+			throw new IllegalArgumentException("Chain " + elements
+					+ " has not been added");
+		updateTerms(side, chain, -1);
+		for (Chain other : chain.overlaps.keySet())
+			other.overlaps.remove(chain);
+		Map<T, Chain> elementTable = elementTables.get(side);
+		for (T element : elements)
+			elementTable.remove(element);
+	}
+
+	private Collection<String> getStrataNames(Set<T> elements) {
+		if (null == stratifier)
+			return Collections.emptyList();
+		return stratifier.getStrata(elements);
+	}
+
+	private void increment(Map<Chain, Integer> overlaps, Chain chain) {
+		Integer count = overlaps.get(chain);
+		overlaps.put(chain, null == count ? 1 : count + 1);
+	}
+
+	/**
+	 * Add or subtract the contribution of a chain to the score terms.
+	 *
+	 * @param side
+	 *            side of the chain
+	 * @param chain
+	 *            chain that is being added or removed
+	 * @param sign
+	 *            1 to add the chain, -1 to remove it
+	 */
+	private void updateTerms(int side, Chain chain, int sign) {
+		int other = 1 - side;
+		int size = chain.elements.size();
+		int overlapping = 0;
+		long squares = 0;
+		for (Entry<Chain, Integer> entry : chain.overlaps.entrySet()) {
+			int n = entry.getValue();
+			overlapping += n;
+			squares += (long) n * n;
+			// The elements shared with the other chain go from n separate
+			// partitions of it to a single partition.
+			Chain otherChain = entry.getKey();
+			int otherSize = otherChain.elements.size();
+			totals.mucNumerators[other] += sign * (n - 1);
+			totals.addSquares(other, otherSize, sign * n * n);
+			totals.matched[other] += sign * n;
+			for (Terms terms : otherChain.strata) {
+				terms.mucNumerators[other] += sign * (n - 1);
+				terms.addSquares(other, otherSize, sign * n * n);
+				terms.matched[other] += sign * n;
+			}
+		}
+		// The chain is partitioned into one part for each overlapping chain and
+		// one part for each element not in any chain on the other side.
+		int partitions = chain.overlaps.size() + size - overlapping;
+		addChainTerms(totals, side, size, partitions, overlapping, sign
+				* squares, sign);
+		for (Terms terms : chain.strata)
+			addChainTerms(terms, side, size, partitions, overlapping, sign
+					* squares, sign);
+	}
+
+	private static void addChainTerms(Terms terms, int side, int size,
+			int partitions, int overlapping, long squares, int sign) {
+		terms.matched[side] += sign * overlapping;
+		terms.mucNumerators[side] += sign * (size - partitions);
+		terms.mucDenominators[side] += sign * (size - 1);
+		terms.addSquares(side, size, squares);
+		terms.bCubedDenominators[side] += sign * size;
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @return score terms of the current key and response chains
+	 */
+	public PrecisionRecallTerms getTerms(Method method) {
+		return totals.getTerms(method);
+	}
+
+	/**
+	 * @return names of the strata of the chains that have been added. A
+	 *         stratum whose chains have all been removed may still be listed,
+	 *         with zero terms.
+	 */
+	public Set<String> getStrata() {
+		return Collections.unmodifiableSet(strata.keySet());
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @param stratum
+	 *            stratum name
+	 * @return score terms of the chains in the stratum, with recall terms from
+	 *         its key chains and precision terms from its response chains
+	 */
+	public PrecisionRecallTerms getTerms(Method method, String stratum) {
+		Terms terms = strata.get(stratum);
+		return null == terms ? new PrecisionRecallTerms() : terms
+				.getTerms(method);
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @return score of the current key and response chains
+	 */
+	public PrecisionRecall getScore(Method method) {
+		return getTerms(method).getScore();
+	}
+
+	/**
+	 * List the split key chains and the response chains that merged key
+	 * chains, most harmful first. These are read from the overlap counts that
+	 * give the scores, so no sets are intersected.
+	 *
+	 * @param method
+	 *            scoring method whose impact orders the errors
+	 * @return split and merge errors
+	 */
+	public List<ChainError<T>> getErrors(Method method) {
+		List<ChainError<T>> errors = new ArrayList<ChainError<T>>();
+		addErrors(errors, KEY, ChainError.Kind.SPLIT);
+		addErrors(errors, RESPONSE, ChainError.Kind.MERGE);
+		Comparator<ChainError<T>> byImpact = ChainError.byImpact(method);
+		Collections.sort(errors, byImpact);
+		return errors;
+	}
+
+	private void addErrors(List<ChainError<T>> errors, int side,
+			ChainError.Kind kind) {
+		for (Chain chain : chainTables.get(side).values()) {
+			int size = chain.elements.size();
+			int overlapping = 0;
+			long squares = 0;
+			List<Set<T>> parts = new ArrayList<Set<T>>(chain.overlaps.size());
+			for (Entry<Chain, Integer> entry : chain.overlaps.entrySet()) {
+				int n = entry.getValue();
+				overlapping += n;
+				squares += (long) n * n;
+				parts.add(entry.getKey().elements);
+			}
+			int unmatched = size - overlapping;
+			int partitions = parts.size() + unmatched;
+			if (partitions < 2)
+				continue;
+			// The chain loses one MUC link per extra partition, and each of
+			// its elements loses the B-Cubed credit of the chain elements
+			// that are not in its own part.
+			double mucImpact = (double) (partitions - 1)
+					/ totals.mucDenominators[side];
+			double bCubedImpact = (size - (double) squares / size)
+					/ totals.bCubedDenominators[side];
+			errors.add(new ChainError<T>(kind, chain.elements, parts,
+					unmatched, mucImpact, bCubedImpact));
+		}
+	}
+}
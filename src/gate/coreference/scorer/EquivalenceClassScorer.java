@@ -44,6 +44,20 @@ public interface EquivalenceClassScorer<T> {
 	 */
 	public PrecisionRecall score(Set<Set<T>> key, Set<Set<T>> response);
 
+	/**
+	 * Numerator and denominator terms of the precision and recall scores for a
+	 * pair of equivalence sets. Terms from several pairs may be added together
+	 * to get their macro average.
+	 * 
+	 * @param key
+	 *            key equivalence classes
+	 * @param response
+	 *            response equivalence classes
+	 * @return Precision and recall terms
+	 */
+	public PrecisionRecallTerms scoreTerms(Set<Set<T>> key,
+			Set<Set<T>> response);
+
 	/**
 	 * Generate precision and recall scores for multiple equivalence classes
 	 * along with their micro and macro averages.
@@ -28,7 +28,7 @@ package gate.coreference.scorer;
 public class EquivalenceClassScorerFactory<T> {
 
 	public static enum Method {
-		BCUBED, MUC
+		BCUBED, MUC, MENTION
 	};
 
 	public EquivalenceClassScorer<T> getScorer(Method method) {
@@ -38,6 +38,9 @@ public class EquivalenceClassScorerFactory<T> {
 		case MUC:
 			scorer = new MUC<T>();
 			break;
+		case MENTION:
+			scorer = new MentionDetection<T>();
+			break;
 		case BCUBED:
 		default:
 			scorer = new BCubed<T>();
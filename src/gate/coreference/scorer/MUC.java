@@ -20,10 +20,13 @@ package gate.coreference.scorer;
 
 
 import gate.coreference.scorer.util.NumericUtilities;
-import gate.coreference.scorer.util.SetUtilities;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -43,6 +46,18 @@ public class MUC<T> implements EquivalenceClassScorer<T> {
 		return new PrecisionRecall(precision, recall);
 	}
 
+	@Override
+	public PrecisionRecallTerms scoreTerms(Set<Set<T>> key,
+			Set<Set<T>> response) {
+		List<List<Integer>> precisionTerms = MUCscoreTerms(response, key);
+		List<List<Integer>> recallTerms = MUCscoreTerms(key, response);
+		return new PrecisionRecallTerms(
+				NumericUtilities.sumTerms(precisionTerms.get(0)),
+				NumericUtilities.sumTerms(precisionTerms.get(1)),
+				NumericUtilities.sumTerms(recallTerms.get(0)),
+				NumericUtilities.sumTerms(recallTerms.get(1)));
+	}
+
 	@Override
 	public PrecisionRecallAverages scoreMultipleSets(
 			Iterable<List<Set<Set<T>>>> sets) {
@@ -87,9 +102,10 @@ public class MUC<T> implements EquivalenceClassScorer<T> {
 	private double MUCscore(Set<Set<T>> keySets, Set<Set<T>> responseSets) {
 		int numerator = 0;
 		int denominator = 0;
+		Map<T, Set<T>> responseTable = buildTable(responseSets);
 		for (Set<T> keySet : keySets) {
 			int s = keySet.size();
-			numerator += s - partitionSize(keySet, responseSets);
+			numerator += s - partitionSize(keySet, responseTable);
 			denominator += s - 1;
 		}
 		return ((double) numerator) / denominator;
@@ -112,9 +128,10 @@ public class MUC<T> implements EquivalenceClassScorer<T> {
 		List<Integer> numeratorTerms = new LinkedList<Integer>();
 		List<Integer> denominatorTerms = new LinkedList<Integer>();
 
+		Map<T, Set<T>> responseTable = buildTable(responseSets);
 		for (Set<T> keySet : keySets) {
 			int s = keySet.size();
-			numeratorTerms.add(s - partitionSize(keySet, responseSets));
+			numeratorTerms.add(s - partitionSize(keySet, responseTable));
 			denominatorTerms.add(s - 1);
 		}
 		terms.add(numeratorTerms);
@@ -123,19 +140,43 @@ public class MUC<T> implements EquivalenceClassScorer<T> {
 	}
 
 	/**
+	 * The partition is counted from the response sets of the key set's own
+	 * elements, so this takes time linear in the size of the key set rather
+	 * than in the size of all the response sets.
+	 * 
 	 * @param keySet
 	 *            key set
-	 * @param responseSets
-	 *            response sets on which to partition the key set
+	 * @param responseTable
+	 *            table of the response sets on which to partition the key set
+	 *            indexed by their elements
 	 * @return size of the partition of the key set on the response sets
 	 */
-	private int partitionSize(Set<T> keySet, Set<Set<T>> responseSets) {
-		Set<T> union = SetUtilities.union(responseSets);
-		int n = SetUtilities.difference(keySet, union).size();
-		for (Set<T> responseSet : responseSets)
-			if (!SetUtilities.intersection(keySet, responseSet).isEmpty())
+	private int partitionSize(Set<T> keySet, Map<T, Set<T>> responseTable) {
+		int n = 0;
+		Set<Set<T>> parts = Collections
+				.newSetFromMap(new IdentityHashMap<Set<T>, Boolean>());
+		for (T element : keySet) {
+			Set<T> responseSet = responseTable.get(element);
+			// Each element missing from the responses is a part by itself.
+			if (null == responseSet)
 				n++;
-		return n;
+			else
+				parts.add(responseSet);
+		}
+		return n + parts.size();
+	}
+
+	/**
+	 * @param sets
+	 *            equivalence sets
+	 * @return table of the sets indexed by their elements
+	 */
+	private Map<T, Set<T>> buildTable(Set<Set<T>> sets) {
+		Map<T, Set<T>> table = new HashMap<T, Set<T>>();
+		for (Set<T> set : sets)
+			for (T item : set)
+				table.put(item, set);
+		return table;
 	}
 
 }
@@ -0,0 +1,246 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Aligns response mentions with key mentions whose boundaries differ
+ * slightly, so that they are scored as the same element.
+ * <p>
+ * Mentions are (Start, End) offset pairs stored as lists of long values. A
+ * response mention may be aligned with a key mention that has the same
+ * offsets, that has offsets within a boundary tolerance of its own, that has a
+ * head contained in it, or that overlaps it. These criteria are tried in that
+ * order of preference and the last three may each be turned off. Every
+ * mention is aligned with at most one mention on the other side.
+ * <p>
+ * Candidate pairs are found by sweeping over the mentions in start offset
+ * order with the key mentions that might still overlap a response mention in
+ * a priority queue ordered by end offset. Alignment takes O(n log n) time for
+ * n mentions as long as each mention overlaps only a few others.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class MentionAligner {
+
+	private static final int EXACT = 0;
+	private static final int TOLERANCE = 1;
+	private static final int HEAD = 2;
+	private static final int OVERLAP = 3;
+
+	/**
+	 * A key mention and a response mention that may be aligned.
+	 */
+	private static class Candidate {
+		final private int key;
+		final private int response;
+		final private int rank;
+		final private long overlap;
+
+		public Candidate(int key, int response, int rank, long overlap) {
+			this.key = key;
+			this.response = response;
+			this.rank = rank;
+			this.overlap = overlap;
+		}
+	}
+
+	/**
+	 * Preferred candidates first: better criteria, then larger overlaps, then
+	 * earlier mentions.
+	 */
+	private static final Comparator<Candidate> PREFERENCE = new Comparator<Candidate>() {
+		@Override
+		public int compare(Candidate a, Candidate b) {
+			if (a.rank != b.rank)
+				return a.rank - b.rank;
+			if (a.overlap != b.overlap)
+				return a.overlap > b.overlap ? -1 : 1;
+			if (a.response != b.response)
+				return a.response - b.response;
+			return a.key - b.key;
+		}
+	};
+
+	final private long tolerance;
+	final private boolean heads;
+	final private boolean overlap;
+
+	/**
+	 * @param tolerance
+	 *            greatest difference between the start offsets and between
+	 *            the end offsets of aligned mentions, or a negative value to
+	 *            not align by tolerance
+	 * @param heads
+	 *            align a response mention with a key mention whose head it
+	 *            contains
+	 * @param overlap
+	 *            align a response mention with a key mention it overlaps
+	 */
+	public MentionAligner(long tolerance, boolean heads, boolean overlap) {
+		this.tolerance = tolerance;
+		this.heads = heads;
+		this.overlap = overlap;
+	}
+
+	/**
+	 * @return true if this aligner needs the heads of the key mentions
+	 */
+	public boolean usesHeads() {
+		return heads;
+	}
+
+	/**
+	 * Align response mentions with key mentions.
+	 *
+	 * @param keyMentions
+	 *            key mentions
+	 * @param responseMentions
+	 *            response mentions
+	 * @param keyHeads
+	 *            table of key mention->offsets of its head, or null if heads
+	 *            are not used
+	 * @return table of response mention->key mention it is aligned with
+	 */
+	public Map<List<Long>, List<Long>> align(
+			Collection<List<Long>> keyMentions,
+			Collection<List<Long>> responseMentions,
+			Map<List<Long>, List<Long>> keyHeads) {
+		final List<List<Long>> key = sortByStart(keyMentions);
+		List<List<Long>> response = sortByStart(responseMentions);
+		long margin = Math.max(tolerance, 0);
+
+		// Sweep over the response mentions, keeping the key mentions that
+		// start before the end of the current one and have not ended before
+		// its start.
+		List<Candidate> candidates = new ArrayList<Candidate>();
+		PriorityQueue<Integer> active = new PriorityQueue<Integer>(16,
+				new Comparator<Integer>() {
+					@Override
+					public int compare(Integer a, Integer b) {
+						return end(key.get(a)).compareTo(end(key.get(b)));
+					}
+				});
+		int next = 0;
+		for (int r = 0; r < response.size(); r++) {
+			List<Long> mention = response.get(r);
+			long start = start(mention), end = end(mention);
+			while (next < key.size() && start(key.get(next)) <= end + margin)
+				active.add(next++);
+			while (!active.isEmpty()
+					&& end(key.get(active.peek())) < start - margin)
+				active.poll();
+			for (int k : active) {
+				List<Long> keyMention = key.get(k);
+				int rank = rank(keyMention, mention, null == keyHeads ? null
+						: keyHeads.get(keyMention));
+				if (rank >= 0)
+					candidates.add(new Candidate(k, r, rank, Math.min(end,
+							end(keyMention))
+							- Math.max(start, start(keyMention))));
+			}
+		}
+
+		// Take the preferred candidates, each mention at most once.
+		Collections.sort(candidates, PREFERENCE);
+		Map<List<Long>, List<Long>> alignment = new HashMap<List<Long>, List<Long>>();
+		Set<Integer> alignedKeys = new HashSet<Integer>();
+		for (Candidate candidate : candidates) {
+			List<Long> responseMention = response.get(candidate.response);
+			if (alignment.containsKey(responseMention)
+					|| alignedKeys.contains(candidate.key))
+				continue;
+			alignment.put(responseMention, key.get(candidate.key));
+			alignedKeys.add(candidate.key);
+		}
+		return alignment;
+	}
+
+	/**
+	 * @return the best criterion by which the mentions may be aligned, or -1
+	 *         if they may not be aligned
+	 */
+	private int rank(List<Long> key, List<Long> response, List<Long> head) {
+		long ks = start(key), ke = end(key), rs = start(response), re = end(response);
+		if (ks == rs && ke == re)
+			return EXACT;
+		if (tolerance >= 0 && Math.abs(ks - rs) <= tolerance
+				&& Math.abs(ke - re) <= tolerance)
+			return TOLERANCE;
+		if (heads && null != head && rs <= start(head) && end(head) <= re)
+			return HEAD;
+		if (overlap && Math.max(ks, rs) < Math.min(ke, re))
+			return OVERLAP;
+		return -1;
+	}
+
+	/**
+	 * Replace the aligned elements of chains with the mentions they are
+	 * aligned with.
+	 *
+	 * @param chains
+	 *            equivalence classes
+	 * @param alignment
+	 *            table of element->mention it is aligned with
+	 * @return equivalence classes with aligned elements replaced
+	 */
+	public static Set<Set<List<Long>>> replace(Set<Set<List<Long>>> chains,
+			Map<List<Long>, List<Long>> alignment) {
+		Set<Set<List<Long>>> replaced = new HashSet<Set<List<Long>>>();
+		for (Set<List<Long>> chain : chains) {
+			Set<List<Long>> elements = new HashSet<List<Long>>();
+			for (List<Long> element : chain) {
+				List<Long> aligned = alignment.get(element);
+				elements.add(null == aligned ? element : aligned);
+			}
+			replaced.add(elements);
+		}
+		return replaced;
+	}
+
+	private static List<List<Long>> sortByStart(Collection<List<Long>> mentions) {
+		List<List<Long>> sorted = new ArrayList<List<Long>>(mentions);
+		Collections.sort(sorted, new Comparator<List<Long>>() {
+			@Override
+			public int compare(List<Long> a, List<Long> b) {
+				int c = start(a).compareTo(start(b));
+				return 0 != c ? c : end(a).compareTo(end(b));
+			}
+		});
+		return sorted;
+	}
+
+	private static Long start(List<Long> mention) {
+		return mention.get(0);
+	}
+
+	private static Long end(List<Long> mention) {
+		return mention.get(1);
+	}
+}
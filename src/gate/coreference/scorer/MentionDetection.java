@@ -0,0 +1,75 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import gate.coreference.scorer.util.SetUtilities;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Mention detection scores for a pair of equivalence sets. These ignore the
+ * chains and only compare the elements: precision is the fraction of response
+ * elements that are key elements and recall is the fraction of key elements
+ * that are response elements.
+ * 
+ * @param T
+ *            type of objects in equivalence sets
+ * 
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class MentionDetection<T> implements EquivalenceClassScorer<T> {
+
+	@Override
+	public PrecisionRecall score(Set<Set<T>> key, Set<Set<T>> response) {
+		return scoreTerms(key, response).getScore();
+	}
+
+	/**
+	 * The numerators are the number of elements common to the key and
+	 * response and the denominators are the numbers of response and key
+	 * elements.
+	 * 
+	 * @see gate.coreference.scorer.EquivalenceClassScorer#scoreTerms(java.util.Set,
+	 *      java.util.Set)
+	 */
+	@Override
+	public PrecisionRecallTerms scoreTerms(Set<Set<T>> key,
+			Set<Set<T>> response) {
+		Set<T> keyElements = SetUtilities.union(key);
+		Set<T> responseElements = SetUtilities.union(response);
+		int common = SetUtilities.intersection(keyElements, responseElements)
+				.size();
+		return new PrecisionRecallTerms(common, responseElements.size(),
+				common, keyElements.size());
+	}
+
+	@Override
+	public PrecisionRecallAverages scoreMultipleSets(
+			Iterable<List<Set<Set<T>>>> sets) {
+		MentionPrecisionRecallAverages scores = new MentionPrecisionRecallAverages();
+		for (List<Set<Set<T>>> equivalenceSets : sets) {
+			PrecisionRecallTerms terms = scoreTerms(equivalenceSets.get(0),
+					equivalenceSets.get(1));
+			scores.addScore(terms.getScore());
+			scores.addTerms(terms);
+		}
+		return scores;
+	}
+}
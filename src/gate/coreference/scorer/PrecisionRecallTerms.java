@@ -0,0 +1,150 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import java.util.Formatter;
+
+/**
+ * Numerator and denominator terms of a precision/recall score.
+ * <p>
+ * Both MUC and B-Cubed scores are ratios of sums. For MUC the numerator and
+ * denominator are sums of per-chain link counts. For B-Cubed the numerator is
+ * the sum of the per-element scores and the denominator is the number of
+ * elements. Terms from different equivalence set pairs can be added together,
+ * which gives the macro average without having to keep the individual terms.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class PrecisionRecallTerms {
+	private double precisionNumerator;
+	private double precisionDenominator;
+	private double recallNumerator;
+	private double recallDenominator;
+
+	/**
+	 * Create empty terms.
+	 */
+	public PrecisionRecallTerms() {
+		this(0, 0, 0, 0);
+	}
+
+	/**
+	 * @param precisionNumerator
+	 *            numerator of the precision score
+	 * @param precisionDenominator
+	 *            denominator of the precision score
+	 * @param recallNumerator
+	 *            numerator of the recall score
+	 * @param recallDenominator
+	 *            denominator of the recall score
+	 */
+	public PrecisionRecallTerms(double precisionNumerator,
+			double precisionDenominator, double recallNumerator,
+			double recallDenominator) {
+		this.precisionNumerator = precisionNumerator;
+		this.precisionDenominator = precisionDenominator;
+		this.recallNumerator = recallNumerator;
+		this.recallDenominator = recallDenominator;
+	}
+
+	/**
+	 * Add another set of terms to these terms.
+	 *
+	 * @param other
+	 *            terms to add
+	 */
+	public void add(PrecisionRecallTerms other) {
+		precisionNumerator += other.precisionNumerator;
+		precisionDenominator += other.precisionDenominator;
+		recallNumerator += other.recallNumerator;
+		recallDenominator += other.recallDenominator;
+	}
+
+	/**
+	 * Subtract another set of terms from these terms.
+	 *
+	 * @param other
+	 *            terms to subtract
+	 */
+	public void subtract(PrecisionRecallTerms other) {
+		precisionNumerator -= other.precisionNumerator;
+		precisionDenominator -= other.precisionDenominator;
+		recallNumerator -= other.recallNumerator;
+		recallDenominator -= other.recallDenominator;
+	}
+
+	/**
+	 * The terms obtained by swapping the key and response sets.
+	 * <p>
+	 * Both MUC and B-Cubed are symmetric in this way: precision of the key
+	 * against the response is recall of the response against the key.
+	 *
+	 * @return terms with precision and recall exchanged
+	 */
+	public PrecisionRecallTerms transpose() {
+		return new PrecisionRecallTerms(recallNumerator, recallDenominator,
+				precisionNumerator, precisionDenominator);
+	}
+
+	/**
+	 * @return precision and recall scores computed from these terms
+	 */
+	public PrecisionRecall getScore() {
+		return new PrecisionRecall(precisionNumerator / precisionDenominator,
+				recallNumerator / recallDenominator);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		Formatter formatter = new Formatter(s);
+		formatter.format("Precision = %f/%f, Recall = %f/%f",
+				precisionNumerator, precisionDenominator, recallNumerator,
+				recallDenominator);
+		return s.toString();
+	}
+
+	/**
+	 * @return the precision numerator
+	 */
+	public double getPrecisionNumerator() {
+		return precisionNumerator;
+	}
+
+	/**
+	 * @return the precision denominator
+	 */
+	public double getPrecisionDenominator() {
+		return precisionDenominator;
+	}
+
+	/**
+	 * @return the recall numerator
+	 */
+	public double getRecallNumerator() {
+		return recallNumerator;
+	}
+
+	/**
+	 * @return the recall denominator
+	 */
+	public double getRecallDenominator() {
+		return recallDenominator;
+	}
+}
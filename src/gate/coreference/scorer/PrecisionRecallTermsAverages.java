@@ -0,0 +1,132 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+/**
+ * Micro and macro averages accumulated from {@link PrecisionRecallTerms}.
+ * <p>
+ * Unlike {@link PrecisionRecallAverages} this does not keep the individual
+ * scores. It keeps running sums of the per-pair precision and recall values for
+ * the micro average and the sum of the terms for the macro average, so it uses
+ * constant memory however many equivalence set pairs are added. Terms that have
+ * been added can also be removed again, which lets the averages follow a set of
+ * scores that changes over time.
+ * <p>
+ * Undefined (NaN) scores are counted separately from the running sums so that
+ * removing them restores the averages. Removing defined scores restores the
+ * floating point sums only to within rounding. As with
+ * {@link PrecisionRecallAverages}, the micro average is NaN while any undefined
+ * score is included.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class PrecisionRecallTermsAverages {
+	private int n = 0;
+	private double precisionSum = 0;
+	private double recallSum = 0;
+	private int undefinedPrecisions = 0;
+	private int undefinedRecalls = 0;
+	private PrecisionRecallTerms pooledTerms = new PrecisionRecallTerms();
+
+	/**
+	 * @param terms
+	 *            terms of the score for a pair of equivalence sets
+	 */
+	public void addTerms(PrecisionRecallTerms terms) {
+		PrecisionRecall score = terms.getScore();
+		if (Double.isNaN(score.getPrecision()))
+			undefinedPrecisions++;
+		else
+			precisionSum += score.getPrecision();
+		if (Double.isNaN(score.getRecall()))
+			undefinedRecalls++;
+		else
+			recallSum += score.getRecall();
+		n++;
+		pooledTerms.add(terms);
+	}
+
+	/**
+	 * @param terms
+	 *            terms previously passed to {@link #addTerms}
+	 */
+	public void removeTerms(PrecisionRecallTerms terms) {
+		PrecisionRecall score = terms.getScore();
+		if (Double.isNaN(score.getPrecision()))
+			undefinedPrecisions--;
+		else
+			precisionSum -= score.getPrecision();
+		if (Double.isNaN(score.getRecall()))
+			undefinedRecalls--;
+		else
+			recallSum -= score.getRecall();
+		n--;
+		pooledTerms.subtract(terms);
+	}
+
+	/**
+	 * @param other
+	 *            averages to combine with these averages
+	 */
+	public void addAverages(PrecisionRecallTermsAverages other) {
+		precisionSum += other.precisionSum;
+		recallSum += other.recallSum;
+		undefinedPrecisions += other.undefinedPrecisions;
+		undefinedRecalls += other.undefinedRecalls;
+		n += other.n;
+		pooledTerms.add(other.pooledTerms);
+	}
+
+	/**
+	 * @return the number of equivalence set pairs added
+	 */
+	public int size() {
+		return n;
+	}
+
+	/**
+	 * The micro average is the average of the precision and recall scores for
+	 * the individual equivalence set pairs.
+	 *
+	 * @return the micro average
+	 */
+	public PrecisionRecall getMicroAverage() {
+		double precision = undefinedPrecisions > 0 ? Double.NaN
+				: precisionSum / n;
+		double recall = undefinedRecalls > 0 ? Double.NaN : recallSum / n;
+		return new PrecisionRecall(precision, recall);
+	}
+
+	/**
+	 * The macro average is the precision and recall scores generated by scoring
+	 * all equivalence set pairs at once.
+	 *
+	 * @return the macro average
+	 */
+	public PrecisionRecall getMacroAverage() {
+		return pooledTerms.getScore();
+	}
+
+	/**
+	 * @return the sum of the terms of all the equivalence set pairs
+	 */
+	public PrecisionRecallTerms getPooledTerms() {
+		return pooledTerms;
+	}
+}
@@ -0,0 +1,368 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import java.util.Arrays;
+
+/**
+ * Estimates of corpus average F-scores from a stratified random sample of
+ * documents drawn without replacement.
+ * <p>
+ * The micro average, the F-score of the mean document precision and recall as
+ * in {@link PrecisionRecallTermsAverages}, is estimated from the stratified
+ * sample means of the precision and recall. The macro average, the F-score of
+ * the pooled terms, is estimated by the combined ratio estimator. The variance
+ * of either F-score is approximated by linearizing it around the estimated
+ * precision and recall. Variances include the finite population correction,
+ * so an interval shrinks to a point once every document has been sampled.
+ * <p>
+ * As in {@link PrecisionRecallTermsAverages}, the micro average is undefined
+ * if any document's precision or recall is. Once such a document has been
+ * sampled the micro estimate is NaN with an interval of zero width, since
+ * further sampling cannot change it.
+ * <p>
+ * Documents without coreference information are sampled but are not part of
+ * the averages. The number of documents with coreference information in each
+ * stratum is estimated from the fraction of the stratum's sample that has it.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class SampleEstimator {
+
+	/**
+	 * An estimate with a confidence interval.
+	 */
+	public static class Estimate {
+		final private double value;
+		final private double halfWidth;
+
+		/**
+		 * @param value
+		 *            estimated value
+		 * @param halfWidth
+		 *            half the width of the confidence interval
+		 */
+		public Estimate(double value, double halfWidth) {
+			this.value = value;
+			this.halfWidth = halfWidth;
+		}
+
+		/**
+		 * @return estimated value
+		 */
+		public double getValue() {
+			return value;
+		}
+
+		/**
+		 * @return half the width of the confidence interval
+		 */
+		public double getHalfWidth() {
+			return halfWidth;
+		}
+
+		/**
+		 * @return lower bound of the confidence interval
+		 */
+		public double getLower() {
+			return value - halfWidth;
+		}
+
+		/**
+		 * @return upper bound of the confidence interval
+		 */
+		public double getUpper() {
+			return value + halfWidth;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%.4f +/- %.4f", value, halfWidth);
+		}
+	}
+
+	private static final int TERMS = 4;
+
+	/**
+	 * Number of documents in each stratum.
+	 */
+	final private int[] populations;
+
+	/**
+	 * Number of documents sampled from each stratum.
+	 */
+	final private int[] sampled;
+
+	/**
+	 * Number of sampled documents with coreference information in each
+	 * stratum.
+	 */
+	final private int[] annotated;
+
+	/**
+	 * Score terms of the sampled documents with coreference information in
+	 * each stratum, four per document.
+	 */
+	final private double[][] terms;
+
+	/**
+	 * @param populations
+	 *            number of documents in each stratum
+	 */
+	public SampleEstimator(int[] populations) {
+		this.populations = populations.clone();
+		sampled = new int[populations.length];
+		annotated = new int[populations.length];
+		terms = new double[populations.length][TERMS * 16];
+	}
+
+	/**
+	 * Add a sampled document.
+	 *
+	 * @param stratum
+	 *            stratum index
+	 * @param documentTerms
+	 *            the document's score terms, or null if it has no coreference
+	 *            information
+	 */
+	public void addDocument(int stratum, PrecisionRecallTerms documentTerms) {
+		sampled[stratum]++;
+		if (null == documentTerms)
+			return;
+		int offset = TERMS * annotated[stratum];
+		if (offset == terms[stratum].length)
+			terms[stratum] = Arrays.copyOf(terms[stratum], 2 * offset);
+		double[] t = terms[stratum];
+		t[offset] = documentTerms.getPrecisionNumerator();
+		t[offset + 1] = documentTerms.getPrecisionDenominator();
+		t[offset + 2] = documentTerms.getRecallNumerator();
+		t[offset + 3] = documentTerms.getRecallDenominator();
+		annotated[stratum]++;
+	}
+
+	/**
+	 * @return number of documents sampled
+	 */
+	public int size() {
+		int size = 0;
+		for (int n : sampled)
+			size += n;
+		return size;
+	}
+
+	/**
+	 * @return estimated number of documents with coreference information in
+	 *         each stratum
+	 */
+	private double[] annotatedPopulations() {
+		double[] n = new double[populations.length];
+		for (int h = 0; h < n.length; h++)
+			n[h] = 0 == sampled[h] ? 0 : populations[h] * annotated[h]
+					/ (double) sampled[h];
+		return n;
+	}
+
+	/**
+	 * Return a stratified estimate of the mean of per-document values.
+	 *
+	 * @param values
+	 *            table of stratum->per-document values
+	 * @param confidence
+	 *            confidence level, e.g. 0.95
+	 */
+	private Estimate stratifiedMean(double[][] values, double confidence) {
+		double[] n = annotatedPopulations();
+		double total = 0;
+		for (int h = 0; h < n.length; h++)
+			total += n[h];
+		double mean = 0, variance = 0;
+		for (int h = 0; h < n.length; h++) {
+			int k = annotated[h];
+			if (0 == k)
+				continue;
+			double w = n[h] / total;
+			double sum = 0;
+			for (int i = 0; i < k; i++)
+				sum += values[h][i];
+			double stratumMean = sum / k;
+			mean += w * stratumMean;
+			double fpc = 1 - sampled[h] / (double) populations[h];
+			if (0 == fpc)
+				continue;
+			if (k < 2) {
+				// The variance of the stratum cannot be estimated.
+				variance = Double.POSITIVE_INFINITY;
+				continue;
+			}
+			double squares = 0;
+			for (int i = 0; i < k; i++)
+				squares += (values[h][i] - stratumMean)
+						* (values[h][i] - stratumMean);
+			variance += w * w * fpc * squares / (k - 1) / k;
+		}
+		return new Estimate(mean, normalQuantile(0.5 + confidence / 2)
+				* Math.sqrt(variance));
+	}
+
+	/**
+	 * Return the precision or recall of each sampled document with
+	 * coreference information.
+	 *
+	 * @param numerator
+	 *            index of the numerator among a document's terms, 0 for
+	 *            precision or 2 for recall
+	 * @return table of stratum->per-document values, or null if any of them
+	 *         is undefined
+	 */
+	private double[][] documentRatios(int numerator) {
+		double[][] ratios = new double[populations.length][];
+		for (int h = 0; h < ratios.length; h++) {
+			ratios[h] = new double[annotated[h]];
+			double[] t = terms[h];
+			for (int i = 0; i < annotated[h]; i++) {
+				ratios[h][i] = t[TERMS * i + numerator]
+						/ t[TERMS * i + numerator + 1];
+				if (Double.isNaN(ratios[h][i]))
+					return null;
+			}
+		}
+		return ratios;
+	}
+
+	/**
+	 * Return a stratified estimate of the mean document precision or recall.
+	 *
+	 * @param numerator
+	 *            index of the numerator among a document's terms
+	 * @param confidence
+	 *            confidence level, e.g. 0.95
+	 */
+	private Estimate ratioMean(int numerator, double confidence) {
+		double[][] ratios = documentRatios(numerator);
+		if (null == ratios)
+			return new Estimate(Double.NaN, 0);
+		return stratifiedMean(ratios, confidence);
+	}
+
+	/**
+	 * @param confidence
+	 *            confidence level, e.g. 0.95
+	 * @return estimate of the mean of the document precision scores
+	 */
+	public Estimate getMicroPrecisionEstimate(double confidence) {
+		return ratioMean(0, confidence);
+	}
+
+	/**
+	 * @param confidence
+	 *            confidence level, e.g. 0.95
+	 * @return estimate of the mean of the document recall scores
+	 */
+	public Estimate getMicroRecallEstimate(double confidence) {
+		return ratioMean(2, confidence);
+	}
+
+	/**
+	 * @param confidence
+	 *            confidence level, e.g. 0.95
+	 * @return estimate of the F-score of the mean document precision and
+	 *         recall
+	 */
+	public Estimate getMicroEstimate(double confidence) {
+		double[][] precisions = documentRatios(0);
+		double[][] recalls = documentRatios(2);
+		if (null == precisions || null == recalls)
+			return new Estimate(Double.NaN, 0);
+		double precision = stratifiedMean(precisions, confidence).getValue();
+		double recall = stratifiedMean(recalls, confidence).getValue();
+		double f = 2 * precision * recall / (precision + recall);
+		// Linearize the F-score, which takes the correlation between a
+		// document's precision and recall into account.
+		double sum = precision + recall;
+		double dP = 2 * recall * recall / (sum * sum);
+		double dR = 2 * precision * precision / (sum * sum);
+		double[][] linear = new double[populations.length][];
+		for (int h = 0; h < linear.length; h++) {
+			linear[h] = new double[annotated[h]];
+			for (int i = 0; i < annotated[h]; i++)
+				linear[h][i] = dP * precisions[h][i] + dR * recalls[h][i];
+		}
+		return new Estimate(f, stratifiedMean(linear, confidence)
+				.getHalfWidth());
+	}
+
+	/**
+	 * @param confidence
+	 *            confidence level, e.g. 0.95
+	 * @return estimate of the F-score of the pooled terms
+	 */
+	public Estimate getMacroEstimate(double confidence) {
+		// Estimated population means of the four terms.
+		double[] n = annotatedPopulations();
+		double total = 0;
+		for (int h = 0; h < n.length; h++)
+			total += n[h];
+		double[] means = new double[TERMS];
+		for (int h = 0; h < n.length; h++) {
+			if (0 == annotated[h])
+				continue;
+			for (int i = 0; i < annotated[h]; i++)
+				for (int t = 0; t < TERMS; t++)
+					means[t] += n[h] / total * terms[h][TERMS * i + t]
+							/ annotated[h];
+		}
+		double precision = means[0] / means[1];
+		double recall = means[2] / means[3];
+		double f = 2 * precision * recall / (precision + recall);
+		// Linearize the F-score: each document's value is its contribution
+		// to the first order change in F.
+		double sum = precision + recall;
+		double dP = 2 * recall * recall / (sum * sum);
+		double dR = 2 * precision * precision / (sum * sum);
+		double[][] linear = new double[populations.length][];
+		for (int h = 0; h < linear.length; h++) {
+			linear[h] = new double[annotated[h]];
+			double[] t = terms[h];
+			for (int i = 0; i < annotated[h]; i++)
+				linear[h][i] = dP * (t[TERMS * i] - precision * t[TERMS * i + 1])
+						/ means[1] + dR
+						* (t[TERMS * i + 2] - recall * t[TERMS * i + 3])
+						/ means[3];
+		}
+		return new Estimate(f, stratifiedMean(linear, confidence)
+				.getHalfWidth());
+	}
+
+	/**
+	 * Approximate quantile function of the standard normal distribution.
+	 * This uses the rational approximation of Abramowitz and Stegun 26.2.23,
+	 * which is accurate to 4.5e-4.
+	 *
+	 * @param p
+	 *            probability strictly between 0 and 1
+	 * @return x such that P(Z &lt; x) = p
+	 */
+	public static double normalQuantile(double p) {
+		if (p < 0.5)
+			return -normalQuantile(1 - p);
+		double t = Math.sqrt(-2 * Math.log(1 - p));
+		return t - (2.515517 + 0.802853 * t + 0.010328 * t * t)
+				/ (1 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+	}
+}
@@ -0,0 +1,481 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact table of document scores.
+ * <p>
+ * Each row is a document and the score terms of each method are stored in
+ * columns of primitive arrays, so a table of many documents holds a handful of
+ * arrays rather than an object per document per method. Rows are identified by
+ * their index. Removing a row moves the last row into its place.
+ * <p>
+ * The terms of named strata of a document's chains are kept in the same way,
+ * with a column for each stratum and method. Stratum columns are added when a
+ * stratum is first set. A row's terms in a stratum that its document does not
+ * have are zero.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ScoreStore implements ScoreTable {
+
+	/**
+	 * Receives notice of changes to the rows of a store.
+	 */
+	public interface Listener {
+		/**
+		 * A row has been added, or its state or terms have been set.
+		 *
+		 * @param row
+		 *            row index
+		 */
+		public void rowChanged(int row);
+
+		/**
+		 * A row has been removed.
+		 *
+		 * @param row
+		 *            index of the removed row
+		 * @param moved
+		 *            former index of the row that was moved into the removed
+		 *            row's place, or -1 if the removed row was the last one
+		 */
+		public void rowRemoved(int row, int moved);
+	}
+
+	/**
+	 * The document has not been scored yet.
+	 */
+	public static final byte UNSCORED = 0;
+
+	/**
+	 * The document has no coreference information.
+	 */
+	public static final byte UNANNOTATED = 1;
+
+	/**
+	 * The document has been scored.
+	 */
+	public static final byte SCORED = 2;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * Scoring methods in column order.
+	 */
+	final private Method[] methods;
+
+	/**
+	 * Table of method ordinal->column, or -1 if the method is not stored.
+	 */
+	final private int[] columns = new int[Method.values().length];
+
+	private int size = 0;
+	private String[] names = new String[INITIAL_CAPACITY];
+	private byte[] states = new byte[INITIAL_CAPACITY];
+	private double[][] precisionNumerators;
+	private double[][] precisionDenominators;
+	private double[][] recallNumerators;
+	private double[][] recallDenominators;
+
+	/**
+	 * Stratum names in the order their columns were added.
+	 */
+	final private List<String> strata = new ArrayList<String>();
+
+	/**
+	 * Table of stratum name->index of the stratum in {@link #strata}. The
+	 * stratum columns of a method are at the stratum index times the number
+	 * of methods plus the method's column.
+	 */
+	final private Map<String, Integer> strataIndices = new HashMap<String, Integer>();
+
+	private double[][] stratumPrecisionNumerators = new double[0][];
+	private double[][] stratumPrecisionDenominators = new double[0][];
+	private double[][] stratumRecallNumerators = new double[0][];
+	private double[][] stratumRecallDenominators = new double[0][];
+
+	final private List<Listener> listeners = new ArrayList<Listener>();
+
+	/**
+	 * @param methods
+	 *            scoring methods to store
+	 */
+	public ScoreStore(Set<Method> methods) {
+		this.methods = methods.toArray(new Method[methods.size()]);
+		Arrays.sort(this.methods);
+		Arrays.fill(columns, -1);
+		for (int column = 0; column < this.methods.length; column++)
+			columns[this.methods[column].ordinal()] = column;
+		int n = this.methods.length;
+		precisionNumerators = new double[n][INITIAL_CAPACITY];
+		precisionDenominators = new double[n][INITIAL_CAPACITY];
+		recallNumerators = new double[n][INITIAL_CAPACITY];
+		recallDenominators = new double[n][INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Add an unscored row.
+	 *
+	 * @param name
+	 *            document name
+	 * @return index of the new row
+	 */
+	public int addRow(String name) {
+		if (size == names.length)
+			grow(2 * size);
+		int row = size++;
+		names[row] = name;
+		states[row] = UNSCORED;
+		clearStratumTerms(row);
+		for (Listener listener : listeners)
+			listener.rowChanged(row);
+		return row;
+	}
+
+	/**
+	 * Remove a row by moving the last row into its place.
+	 *
+	 * @param row
+	 *            index of the row to remove
+	 * @return former index of the row that was moved into the removed row's
+	 *         place, or -1 if the removed row was the last one
+	 */
+	public int removeRow(int row) {
+		int last = --size;
+		if (row != last) {
+			names[row] = names[last];
+			states[row] = states[last];
+			for (int column = 0; column < methods.length; column++) {
+				precisionNumerators[column][row] = precisionNumerators[column][last];
+				precisionDenominators[column][row] = precisionDenominators[column][last];
+				recallNumerators[column][row] = recallNumerators[column][last];
+				recallDenominators[column][row] = recallDenominators[column][last];
+			}
+			for (int column = 0; column < stratumPrecisionNumerators.length; column++) {
+				stratumPrecisionNumerators[column][row] = stratumPrecisionNumerators[column][last];
+				stratumPrecisionDenominators[column][row] = stratumPrecisionDenominators[column][last];
+				stratumRecallNumerators[column][row] = stratumRecallNumerators[column][last];
+				stratumRecallDenominators[column][row] = stratumRecallDenominators[column][last];
+			}
+		}
+		names[last] = null;
+		int moved = row == last ? -1 : last;
+		for (Listener listener : listeners)
+			listener.rowRemoved(row, moved);
+		return moved;
+	}
+
+	private void grow(int capacity) {
+		names = Arrays.copyOf(names, capacity);
+		states = Arrays.copyOf(states, capacity);
+		for (int column = 0; column < methods.length; column++) {
+			precisionNumerators[column] = Arrays.copyOf(
+					precisionNumerators[column], capacity);
+			precisionDenominators[column] = Arrays.copyOf(
+					precisionDenominators[column], capacity);
+			recallNumerators[column] = Arrays.copyOf(recallNumerators[column],
+					capacity);
+			recallDenominators[column] = Arrays.copyOf(
+					recallDenominators[column], capacity);
+		}
+		for (int column = 0; column < stratumPrecisionNumerators.length; column++) {
+			stratumPrecisionNumerators[column] = Arrays.copyOf(
+					stratumPrecisionNumerators[column], capacity);
+			stratumPrecisionDenominators[column] = Arrays.copyOf(
+					stratumPrecisionDenominators[column], capacity);
+			stratumRecallNumerators[column] = Arrays.copyOf(
+					stratumRecallNumerators[column], capacity);
+			stratumRecallDenominators[column] = Arrays.copyOf(
+					stratumRecallDenominators[column], capacity);
+		}
+	}
+
+	/**
+	 * @param row
+	 *            row index
+	 * @param state
+	 *            {@link #UNSCORED}, {@link #UNANNOTATED} or {@link #SCORED}
+	 */
+	public void setState(int row, byte state) {
+		states[row] = state;
+		for (Listener listener : listeners)
+			listener.rowChanged(row);
+	}
+
+	/**
+	 * Set the terms of one method's score. The row's state must be set to
+	 * {@link #SCORED} separately.
+	 *
+	 * @param row
+	 *            row index
+	 * @param method
+	 *            scoring method
+	 * @param terms
+	 *            score terms
+	 */
+	public void setTerms(int row, Method method, PrecisionRecallTerms terms) {
+		int column = column(method);
+		precisionNumerators[column][row] = terms.getPrecisionNumerator();
+		precisionDenominators[column][row] = terms.getPrecisionDenominator();
+		recallNumerators[column][row] = terms.getRecallNumerator();
+		recallDenominators[column][row] = terms.getRecallDenominator();
+		for (Listener listener : listeners)
+			listener.rowChanged(row);
+	}
+
+	/**
+	 * Set the terms of one method's score in a stratum. Listeners are not
+	 * notified, because stratum terms are set along with the row's state.
+	 *
+	 * @param row
+	 *            row index
+	 * @param stratum
+	 *            stratum name
+	 * @param method
+	 *            scoring method
+	 * @param terms
+	 *            score terms of the row's chains in the stratum
+	 */
+	public void setStratumTerms(int row, String stratum, Method method,
+			PrecisionRecallTerms terms) {
+		Integer index = strataIndices.get(stratum);
+		if (null == index)
+			index = addStratum(stratum);
+		int column = index * methods.length + column(method);
+		stratumPrecisionNumerators[column][row] = terms
+				.getPrecisionNumerator();
+		stratumPrecisionDenominators[column][row] = terms
+				.getPrecisionDenominator();
+		stratumRecallNumerators[column][row] = terms.getRecallNumerator();
+		stratumRecallDenominators[column][row] = terms.getRecallDenominator();
+	}
+
+	/**
+	 * Set all of a row's stratum terms to zero.
+	 *
+	 * @param row
+	 *            row index
+	 */
+	public void clearStratumTerms(int row) {
+		for (int column = 0; column < stratumPrecisionNumerators.length; column++) {
+			stratumPrecisionNumerators[column][row] = 0;
+			stratumPrecisionDenominators[column][row] = 0;
+			stratumRecallNumerators[column][row] = 0;
+			stratumRecallDenominators[column][row] = 0;
+		}
+	}
+
+	private int addStratum(String stratum) {
+		int index = strata.size();
+		strata.add(stratum);
+		strataIndices.put(stratum, index);
+		int columns = strata.size() * methods.length;
+		int capacity = names.length;
+		stratumPrecisionNumerators = addColumns(stratumPrecisionNumerators,
+				columns, capacity);
+		stratumPrecisionDenominators = addColumns(
+				stratumPrecisionDenominators, columns, capacity);
+		stratumRecallNumerators = addColumns(stratumRecallNumerators, columns,
+				capacity);
+		stratumRecallDenominators = addColumns(stratumRecallDenominators,
+				columns, capacity);
+		return index;
+	}
+
+	private static double[][] addColumns(double[][] columns, int n,
+			int capacity) {
+		double[][] added = Arrays.copyOf(columns, n);
+		for (int column = columns.length; column < n; column++)
+			added[column] = new double[capacity];
+		return added;
+	}
+
+	/**
+	 * @param listener
+	 *            listener to notify when rows change
+	 */
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * @param listener
+	 *            listener to stop notifying
+	 */
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	private int column(Method method) {
+		int column = columns[method.ordinal()];
+		if (column < 0)
+			throw new IllegalArgumentException("Method " + method
+					+ " is not stored");
+		return column;
+	}
+
+	/**
+	 * @return number of rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return stored scoring methods in column order
+	 */
+	public Method[] getMethods() {
+		return methods;
+	}
+
+	/**
+	 * @param row
+	 *            row index
+	 * @return document name
+	 */
+	public String getName(int row) {
+		return names[row];
+	}
+
+	/**
+	 * @param row
+	 *            row index
+	 * @return {@link #UNSCORED}, {@link #UNANNOTATED} or {@link #SCORED}
+	 */
+	public byte getState(int row) {
+		return states[row];
+	}
+
+	/**
+	 * @param row
+	 *            row index
+	 * @param method
+	 *            scoring method
+	 * @return score terms, or null if the row has not been scored
+	 */
+	public PrecisionRecallTerms getTerms(int row, Method method) {
+		if (SCORED != states[row])
+			return null;
+		int column = column(method);
+		return new PrecisionRecallTerms(precisionNumerators[column][row],
+				precisionDenominators[column][row],
+				recallNumerators[column][row], recallDenominators[column][row]);
+	}
+
+	/**
+	 * @return names of the strata that have been set, in the order they were
+	 *         first set
+	 */
+	public List<String> getStrata() {
+		return Collections.unmodifiableList(strata);
+	}
+
+	/**
+	 * @param row
+	 *            row index
+	 * @param stratum
+	 *            stratum name
+	 * @param method
+	 *            scoring method
+	 * @return score terms of the row's chains in the stratum, zero if the row
+	 *         has none, or null if the row has not been scored
+	 */
+	public PrecisionRecallTerms getStratumTerms(int row, String stratum,
+			Method method) {
+		if (SCORED != states[row])
+			return null;
+		Integer index = strataIndices.get(stratum);
+		if (null == index)
+			return new PrecisionRecallTerms();
+		int column = index * methods.length + column(method);
+		return new PrecisionRecallTerms(
+				stratumPrecisionNumerators[column][row],
+				stratumPrecisionDenominators[column][row],
+				stratumRecallNumerators[column][row],
+				stratumRecallDenominators[column][row]);
+	}
+
+	/**
+	 * @param row
+	 *            row index
+	 * @param method
+	 *            scoring method
+	 * @return score, or null if the row has not been scored
+	 */
+	public PrecisionRecall getScore(int row, Method method) {
+		if (SCORED != states[row])
+			return null;
+		return new PrecisionRecall(getPrecision(row, method), getRecall(row,
+				method));
+	}
+
+	/**
+	 * @param row
+	 *            row index
+	 * @param method
+	 *            scoring method
+	 * @return precision, or NaN if the row has not been scored
+	 */
+	public double getPrecision(int row, Method method) {
+		if (SCORED != states[row])
+			return Double.NaN;
+		int column = column(method);
+		return precisionNumerators[column][row]
+				/ precisionDenominators[column][row];
+	}
+
+	/**
+	 * @param row
+	 *            row index
+	 * @param method
+	 *            scoring method
+	 * @return recall, or NaN if the row has not been scored
+	 */
+	public double getRecall(int row, Method method) {
+		if (SCORED != states[row])
+			return Double.NaN;
+		int column = column(method);
+		return recallNumerators[column][row] / recallDenominators[column][row];
+	}
+
+	/**
+	 * @param row
+	 *            row index
+	 * @param method
+	 *            scoring method
+	 * @return F-score, or NaN if the row has not been scored
+	 * @see PrecisionRecall#getFScore()
+	 */
+	public double getFScore(int row, Method method) {
+		double precision = getPrecision(row, method);
+		double recall = getRecall(row, method);
+		return 2 * precision * recall / (precision + recall);
+	}
+}
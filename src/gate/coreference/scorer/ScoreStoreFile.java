@@ -0,0 +1,370 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.coreference.scorer.util.SortUtilities;
+import gate.coreference.scorer.util.SortUtilities.IndexComparator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Binary columnar file of the contents of a {@link ScoreStore}.
+ * <p>
+ * The file is read through a memory map, so opening it costs the same for any
+ * number of rows and only the cells that are read are paged in. All values are
+ * big-endian. The file consists of the following sections.
+ * <ol>
+ * <li>Header: magic number, version, row count, method count, the name of each
+ * method as a length-prefixed UTF-8 string, and the offsets of the other
+ * sections.</li>
+ * <li>States: a byte per row.</li>
+ * <li>Terms: for each method, four columns of doubles with a value per row,
+ * the precision numerator and denominator and recall numerator and
+ * denominator.</li>
+ * <li>Name index: an int per row plus one giving the offset of each name in
+ * the names section.</li>
+ * <li>Names: UTF-8 document names.</li>
+ * <li>Sorted index: the row indices ordered by name, used to look rows up by
+ * name.</li>
+ * </ol>
+ * Because the whole file is mapped at once it may not be larger than 2 GB,
+ * which is room for roughly ten million rows.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ScoreStoreFile implements ScoreTable {
+
+	private static final int MAGIC = 0x47435346; // "GCSF"
+
+	private static final int VERSION = 1;
+
+	private static final int TERMS = 4;
+
+	final private MappedByteBuffer buffer;
+	final private int size;
+	final private Method[] methods;
+	final private int[] columns = new int[Method.values().length];
+	final private int statesOffset;
+	final private int termsOffset;
+	final private int nameIndexOffset;
+	final private int namesOffset;
+	final private int sortedIndexOffset;
+
+	/**
+	 * Map a score file.
+	 *
+	 * @param file
+	 *            file written by {@link #write}
+	 * @throws IOException
+	 */
+	public ScoreStoreFile(File file) throws IOException {
+		FileInputStream input = new FileInputStream(file);
+		try {
+			FileChannel channel = input.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel
+					.size());
+		} finally {
+			input.close();
+		}
+		if (MAGIC != buffer.getInt())
+			throw new IOException(file + " is not a score file");
+		int version = buffer.getInt();
+		if (VERSION != version)
+			throw new IOException("Unsupported score file version " + version);
+		size = buffer.getInt();
+		methods = new Method[buffer.getInt()];
+		Arrays.fill(columns, -1);
+		for (int column = 0; column < methods.length; column++) {
+			byte[] name = new byte[buffer.getShort()];
+			buffer.get(name);
+			methods[column] = Method.valueOf(new String(name, "UTF-8"));
+			columns[methods[column].ordinal()] = column;
+		}
+		statesOffset = buffer.getInt();
+		termsOffset = buffer.getInt();
+		nameIndexOffset = buffer.getInt();
+		namesOffset = buffer.getInt();
+		sortedIndexOffset = buffer.getInt();
+	}
+
+	/**
+	 * Write the rows of a score table to a file.
+	 *
+	 * @param store
+	 *            score table
+	 * @param rows
+	 *            store row indices in the order they are written, or null to
+	 *            write them in store order
+	 * @param file
+	 *            output file
+	 * @throws IOException
+	 */
+	public static void write(ScoreTable store, int[] rows, File file)
+			throws IOException {
+		int size = store.size();
+		if (null == rows) {
+			rows = new int[size];
+			for (int row = 0; row < size; row++)
+				rows[row] = row;
+		}
+		Method[] methods = store.getMethods();
+		final String[] nameStrings = new String[rows.length];
+		byte[][] names = new byte[rows.length][];
+		int namesLength = 0;
+		for (int i = 0; i < rows.length; i++) {
+			nameStrings[i] = store.getName(rows[i]);
+			names[i] = utf8(nameStrings[i]);
+			namesLength += names[i].length;
+		}
+		int[] sorted = new int[rows.length];
+		for (int i = 0; i < sorted.length; i++)
+			sorted[i] = i;
+		SortUtilities.sort(sorted, sorted.length, new IndexComparator() {
+			@Override
+			public int compare(int a, int b) {
+				return nameStrings[a].compareTo(nameStrings[b]);
+			}
+		});
+
+		// Lay out the sections.
+		int headerLength = 4 * 4 + 5 * 4;
+		byte[][] methodNames = new byte[methods.length][];
+		for (int column = 0; column < methods.length; column++) {
+			methodNames[column] = utf8(methods[column].name());
+			headerLength += 2 + methodNames[column].length;
+		}
+		int statesOffset = headerLength;
+		int termsOffset = align(statesOffset + rows.length);
+		int nameIndexOffset = termsOffset + methods.length * TERMS * 8
+				* rows.length;
+		int namesOffset = nameIndexOffset + 4 * (rows.length + 1);
+		int sortedIndexOffset = align(namesOffset + namesLength);
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(rows.length);
+			out.writeInt(methods.length);
+			for (byte[] methodName : methodNames) {
+				out.writeShort(methodName.length);
+				out.write(methodName);
+			}
+			out.writeInt(statesOffset);
+			out.writeInt(termsOffset);
+			out.writeInt(nameIndexOffset);
+			out.writeInt(namesOffset);
+			out.writeInt(sortedIndexOffset);
+			for (int row : rows)
+				out.writeByte(store.getState(row));
+			pad(out, termsOffset);
+			for (Method method : methods)
+				for (int term = 0; term < TERMS; term++)
+					for (int row : rows)
+						out.writeDouble(getTerm(store, row, method, term));
+			int nameOffset = 0;
+			for (byte[] name : names) {
+				out.writeInt(nameOffset);
+				nameOffset += name.length;
+			}
+			out.writeInt(nameOffset);
+			for (byte[] name : names)
+				out.write(name);
+			pad(out, sortedIndexOffset);
+			for (int i : sorted)
+				out.writeInt(i);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static double getTerm(ScoreTable store, int row, Method method,
+			int term) {
+		PrecisionRecallTerms terms = store.getTerms(row, method);
+		if (null == terms)
+			return Double.NaN;
+		switch (term) {
+		case 0:
+			return terms.getPrecisionNumerator();
+		case 1:
+			return terms.getPrecisionDenominator();
+		case 2:
+			return terms.getRecallNumerator();
+		default:
+			return terms.getRecallDenominator();
+		}
+	}
+
+	private static int align(int offset) {
+		return (offset + 7) & ~7;
+	}
+
+	private static void pad(DataOutputStream out, int offset)
+			throws IOException {
+		while (out.size() < offset)
+			out.writeByte(0);
+	}
+
+	private static byte[] utf8(String s) {
+		try {
+			return s.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return number of rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return stored scoring methods in column order
+	 */
+	public Method[] getMethods() {
+		return methods;
+	}
+
+	/**
+	 * @param row
+	 *            row index
+	 * @return document name
+	 */
+	public String getName(int row) {
+		int start = buffer.getInt(nameIndexOffset + 4 * row);
+		int end = buffer.getInt(nameIndexOffset + 4 * (row + 1));
+		byte[] name = new byte[end - start];
+		for (int i = 0; i < name.length; i++)
+			name[i] = buffer.get(namesOffset + start + i);
+		try {
+			return new String(name, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Find a row by document name.
+	 *
+	 * @param name
+	 *            document name
+	 * @return index of a row with this name, or -1 if there is none
+	 */
+	public int indexOf(String name) {
+		int low = 0, high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int row = buffer.getInt(sortedIndexOffset + 4 * middle);
+			int c = getName(row).compareTo(name);
+			if (c < 0)
+				low = middle + 1;
+			else if (c > 0)
+				high = middle - 1;
+			else
+				return row;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param row
+	 *            row index
+	 * @return {@link ScoreStore#UNSCORED}, {@link ScoreStore#UNANNOTATED} or
+	 *         {@link ScoreStore#SCORED}
+	 */
+	public byte getState(int row) {
+		return buffer.get(statesOffset + row);
+	}
+
+	private double getTerm(int row, Method method, int term) {
+		int column = columns[method.ordinal()];
+		if (column < 0)
+			throw new IllegalArgumentException("Method " + method
+					+ " is not stored");
+		return buffer.getDouble(termsOffset + 8
+				* ((column * TERMS + term) * size + row));
+	}
+
+	/**
+	 * @param row
+	 *            row index
+	 * @param method
+	 *            scoring method
+	 * @return score terms, or null if the row has not been scored
+	 */
+	public PrecisionRecallTerms getTerms(int row, Method method) {
+		if (ScoreStore.SCORED != getState(row))
+			return null;
+		return new PrecisionRecallTerms(getTerm(row, method, 0), getTerm(row,
+				method, 1), getTerm(row, method, 2), getTerm(row, method, 3));
+	}
+
+	/**
+	 * @param row
+	 *            row index
+	 * @param method
+	 *            scoring method
+	 * @return precision, or NaN if the row has not been scored
+	 */
+	public double getPrecision(int row, Method method) {
+		if (ScoreStore.SCORED != getState(row))
+			return Double.NaN;
+		return getTerm(row, method, 0) / getTerm(row, method, 1);
+	}
+
+	/**
+	 * @param row
+	 *            row index
+	 * @param method
+	 *            scoring method
+	 * @return recall, or NaN if the row has not been scored
+	 */
+	public double getRecall(int row, Method method) {
+		if (ScoreStore.SCORED != getState(row))
+			return Double.NaN;
+		return getTerm(row, method, 2) / getTerm(row, method, 3);
+	}
+
+	/**
+	 * @param row
+	 *            row index
+	 * @param method
+	 *            scoring method
+	 * @return F-score, or NaN if the row has not been scored
+	 * @see PrecisionRecall#getFScore()
+	 */
+	public double getFScore(int row, Method method) {
+		double precision = getPrecision(row, method);
+		double recall = getRecall(row, method);
+		return 2 * precision * recall / (precision + recall);
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+
+/**
+ * Read access to a table of document scores with a row per document, whether
+ * it is held in memory or in a file.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ * @see ScoreStore
+ * @see ScoreStoreFile
+ */
+public interface ScoreTable {
+
+	/**
+	 * @return number of rows
+	 */
+	public int size();
+
+	/**
+	 * @return stored scoring methods in column order
+	 */
+	public Method[] getMethods();
+
+	/**
+	 * @param row
+	 *            row index
+	 * @return document name
+	 */
+	public String getName(int row);
+
+	/**
+	 * @param row
+	 *            row index
+	 * @return {@link ScoreStore#UNSCORED}, {@link ScoreStore#UNANNOTATED} or
+	 *         {@link ScoreStore#SCORED}
+	 */
+	public byte getState(int row);
+
+	/**
+	 * @param row
+	 *            row index
+	 * @param method
+	 *            scoring method
+	 * @return score terms, or null if the row has not been scored
+	 */
+	public PrecisionRecallTerms getTerms(int row, Method method);
+
+	/**
+	 * @param row
+	 *            row index
+	 * @param method
+	 *            scoring method
+	 * @return precision, or NaN if the row has not been scored
+	 */
+	public double getPrecision(int row, Method method);
+
+	/**
+	 * @param row
+	 *            row index
+	 * @param method
+	 *            scoring method
+	 * @return recall, or NaN if the row has not been scored
+	 */
+	public double getRecall(int row, Method method);
+
+	/**
+	 * @param row
+	 *            row index
+	 * @param method
+	 *            scoring method
+	 * @return F-score, or NaN if the row has not been scored
+	 */
+	public double getFScore(int row, Method method);
+}
@@ -0,0 +1,74 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+/**
+ * A coreference link between two elements along with the confidence a resolver
+ * assigned to it.
+ *
+ * @param T
+ *            type of objects in equivalence sets
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ScoredLink<T> {
+	final private T first;
+	final private T second;
+	final private double score;
+
+	/**
+	 * @param first
+	 *            one end of the link
+	 * @param second
+	 *            other end of the link
+	 * @param score
+	 *            confidence of the link
+	 */
+	public ScoredLink(T first, T second, double score) {
+		this.first = first;
+		this.second = second;
+		this.score = score;
+	}
+
+	/**
+	 * @return one end of the link
+	 */
+	public T getFirst() {
+		return first;
+	}
+
+	/**
+	 * @return other end of the link
+	 */
+	public T getSecond() {
+		return second;
+	}
+
+	/**
+	 * @return confidence of the link
+	 */
+	public double getScore() {
+		return score;
+	}
+
+	@Override
+	public String toString() {
+		return first + " - " + second + " (" + score + ")";
+	}
+}
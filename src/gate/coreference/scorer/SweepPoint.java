@@ -0,0 +1,80 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Micro and macro averaged scores at a single point on a precision/recall
+ * curve.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class SweepPoint {
+	final private double threshold;
+	final private Map<Method, PrecisionRecall> microAverages = new HashMap<Method, PrecisionRecall>();
+	final private Map<Method, PrecisionRecall> macroAverages = new HashMap<Method, PrecisionRecall>();
+
+	/**
+	 * @param threshold
+	 *            links with at least this score are accepted
+	 */
+	public SweepPoint(double threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @param averages
+	 *            averages of the method at this threshold
+	 */
+	void setAverages(Method method, PrecisionRecallTermsAverages averages) {
+		microAverages.put(method, averages.getMicroAverage());
+		macroAverages.put(method, averages.getMacroAverage());
+	}
+
+	/**
+	 * @return links with at least this score are accepted
+	 */
+	public double getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @return micro average at this threshold
+	 */
+	public PrecisionRecall getMicroAverage(Method method) {
+		return microAverages.get(method);
+	}
+
+	/**
+	 * @param method
+	 *            scoring method
+	 * @return macro average at this threshold
+	 */
+	public PrecisionRecall getMacroAverage(Method method) {
+		return macroAverages.get(method);
+	}
+}
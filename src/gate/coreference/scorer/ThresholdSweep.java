@@ -0,0 +1,362 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Map.Entry;
+
+/**
+ * Precision/recall curves for scored coreference links.
+ * <p>
+ * A resolver that assigns a confidence to each link produces a different set of
+ * response chains for every threshold. Rather than scoring each of these from
+ * scratch, this starts with every response element in its own chain and adds
+ * the links in order of descending confidence to a union-find structure. Each
+ * time two chains are merged the MUC and B-Cubed numerators and denominators
+ * are updated from the overlap of the two chains with the key, so the entire
+ * curve costs about as much as scoring a single threshold.
+ * <p>
+ * The update uses the counts n(i,j) of elements shared by key chain i and
+ * response chain j. Merging response chains a and b adds one to the MUC
+ * precision denominator, and adds the number of key chains they have in common
+ * to both MUC numerators. The B-Cubed precision numerator is the sum over
+ * response chains of the sum of n(i,j)^2 divided by the chain size, and the
+ * B-Cubed recall numerator is the sum of n(i,j)^2 divided by the key chain size,
+ * both of which change only in the terms of the merged chains.
+ *
+ * @param T
+ *            type of objects in equivalence sets
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ThresholdSweep<T> {
+
+	/**
+	 * A link between two response elements of a document.
+	 */
+	private class Link {
+		final private DocumentSweep document;
+		final private int first;
+		final private int second;
+		final private double score;
+
+		public Link(DocumentSweep document, int first, int second, double score) {
+			this.document = document;
+			this.first = first;
+			this.second = second;
+			this.score = score;
+		}
+	}
+
+	/**
+	 * Union-find structure and running score terms for the response chains of a
+	 * single document.
+	 */
+	private class DocumentSweep {
+		/**
+		 * Key chain of every response element, or -1 if it is not in the key.
+		 */
+		final private int[] keyChain;
+		final private int[] keyChainSizes;
+		final private int keyElements;
+		final private int keyLinks;
+		/**
+		 * Number of key elements that are also response elements, weighted by
+		 * one over the size of their key chain.
+		 */
+		final private double alignedKeyWeight;
+		final private int alignedResponseElements;
+
+		private int[] parent;
+		private int[] size;
+		/**
+		 * Table of key chain->number of shared elements for each root.
+		 */
+		private List<Map<Integer, Integer>> overlaps;
+		/**
+		 * Sum of the squares of the overlaps for each root.
+		 */
+		private long[] squares;
+		private int chains;
+
+		private double mucPrecisionNumerator;
+		private double mucRecallNumerator;
+		private double bCubedPrecisionNumerator;
+		private double bCubedRecallNumerator;
+
+		public DocumentSweep(int[] keyChain, int[] keyChainSizes) {
+			this.keyChain = keyChain;
+			this.keyChainSizes = keyChainSizes;
+			int elements = 0, links = 0;
+			for (int keyChainSize : keyChainSizes) {
+				elements += keyChainSize;
+				links += keyChainSize - 1;
+			}
+			keyElements = elements;
+			keyLinks = links;
+			double weight = 0;
+			int aligned = 0;
+			for (int chain : keyChain)
+				if (chain >= 0) {
+					weight += 1.0 / keyChainSizes[chain];
+					aligned++;
+				}
+			alignedKeyWeight = weight;
+			alignedResponseElements = aligned;
+		}
+
+		/**
+		 * Put every response element in its own chain.
+		 */
+		public void reset() {
+			int n = keyChain.length;
+			parent = new int[n];
+			size = new int[n];
+			squares = new long[n];
+			overlaps = new ArrayList<Map<Integer, Integer>>(n);
+			for (int element = 0; element < n; element++) {
+				parent[element] = element;
+				size[element] = 1;
+				Map<Integer, Integer> overlap = new HashMap<Integer, Integer>(2);
+				if (keyChain[element] >= 0) {
+					overlap.put(keyChain[element], 1);
+					squares[element] = 1;
+				}
+				overlaps.add(overlap);
+			}
+			chains = n;
+			mucPrecisionNumerator = 0;
+			mucRecallNumerator = 0;
+			bCubedPrecisionNumerator = alignedResponseElements;
+			bCubedRecallNumerator = alignedKeyWeight;
+		}
+
+		private int find(int element) {
+			while (parent[element] != element) {
+				parent[element] = parent[parent[element]];
+				element = parent[element];
+			}
+			return element;
+		}
+
+		/**
+		 * Merge the chains containing two elements and update the score terms.
+		 *
+		 * @return true if the elements were in different chains
+		 */
+		public boolean union(int first, int second) {
+			int a = find(first);
+			int b = find(second);
+			if (a == b)
+				return false;
+			// Merge the smaller overlap table into the larger one.
+			if (overlaps.get(a).size() < overlaps.get(b).size()) {
+				int swap = a;
+				a = b;
+				b = swap;
+			}
+			Map<Integer, Integer> large = overlaps.get(a);
+			Map<Integer, Integer> small = overlaps.get(b);
+			int common = 0;
+			long cross = 0;
+			for (Entry<Integer, Integer> entry : small.entrySet()) {
+				int chain = entry.getKey();
+				int count = entry.getValue();
+				Integer largeCount = large.get(chain);
+				if (null == largeCount)
+					large.put(chain, count);
+				else {
+					common++;
+					cross += (long) count * largeCount;
+					bCubedRecallNumerator += 2.0 * count * largeCount
+							/ keyChainSizes[chain];
+					large.put(chain, count + largeCount);
+				}
+			}
+			long mergedSquares = squares[a] + squares[b] + 2 * cross;
+			bCubedPrecisionNumerator += (double) mergedSquares
+					/ (size[a] + size[b]) - (double) squares[a] / size[a]
+					- (double) squares[b] / size[b];
+			mucPrecisionNumerator += common;
+			mucRecallNumerator += common;
+
+			parent[b] = a;
+			size[a] += size[b];
+			squares[a] = mergedSquares;
+			overlaps.set(b, null);
+			chains--;
+			return true;
+		}
+
+		/**
+		 * @param method
+		 *            scoring method
+		 * @return score terms for the current response chains
+		 */
+		public PrecisionRecallTerms getTerms(Method method) {
+			int n = keyChain.length;
+			switch (method) {
+			case MUC:
+				return new PrecisionRecallTerms(mucPrecisionNumerator, n
+						- chains, mucRecallNumerator, keyLinks);
+			case MENTION:
+				// The response elements are the same at every threshold.
+				return new PrecisionRecallTerms(alignedResponseElements, n,
+						alignedResponseElements, keyElements);
+			case BCUBED:
+			default:
+				return new PrecisionRecallTerms(bCubedPrecisionNumerator, n,
+						bCubedRecallNumerator, keyElements);
+			}
+		}
+	}
+
+	final private Set<Method> methods;
+	final private List<DocumentSweep> documents = new ArrayList<DocumentSweep>();
+	final private List<Link> links = new ArrayList<Link>();
+
+	/**
+	 * @param methods
+	 *            scoring methods
+	 */
+	public ThresholdSweep(Set<Method> methods) {
+		this.methods = methods;
+	}
+
+	/**
+	 * Add the key chains and scored response links of a document.
+	 *
+	 * @param key
+	 *            key equivalence classes
+	 * @param responseElements
+	 *            response elements; the ends of all the links are added to
+	 *            these
+	 * @param scoredLinks
+	 *            links between response elements
+	 */
+	public void addDocument(Set<Set<T>> key, Collection<T> responseElements,
+			Collection<ScoredLink<T>> scoredLinks) {
+		Map<T, Integer> keyTable = new HashMap<T, Integer>();
+		int[] keyChainSizes = new int[key.size()];
+		int chain = 0;
+		for (Set<T> keySet : key) {
+			for (T element : keySet)
+				if (null != keyTable.put(element, chain))
+					throw new IllegalArgumentException("Element " + element
+							+ " appears in more than one set");
+			keyChainSizes[chain++] = keySet.size();
+		}
+
+		Map<T, Integer> responseTable = new HashMap<T, Integer>();
+		for (T element : responseElements)
+			indexOf(responseTable, element);
+		for (ScoredLink<T> link : scoredLinks) {
+			indexOf(responseTable, link.getFirst());
+			indexOf(responseTable, link.getSecond());
+		}
+		int[] keyChain = new int[responseTable.size()];
+		for (Entry<T, Integer> entry : responseTable.entrySet()) {
+			Integer keyIndex = keyTable.get(entry.getKey());
+			keyChain[entry.getValue()] = null == keyIndex ? -1 : keyIndex;
+		}
+
+		DocumentSweep document = new DocumentSweep(keyChain, keyChainSizes);
+		documents.add(document);
+		for (ScoredLink<T> link : scoredLinks)
+			links.add(new Link(document, responseTable.get(link.getFirst()),
+					responseTable.get(link.getSecond()), link.getScore()));
+	}
+
+	private int indexOf(Map<T, Integer> table, T element) {
+		Integer index = table.get(element);
+		if (null == index) {
+			index = table.size();
+			table.put(element, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Generate the precision/recall curve over all thresholds.
+	 * <p>
+	 * The first point has an infinite threshold, where every response element
+	 * is in its own chain. There is one subsequent point for every distinct
+	 * link score in descending order.
+	 *
+	 * @return points on the curve in order of descending threshold
+	 */
+	public List<SweepPoint> sweep() {
+		Collections.sort(links, new Comparator<Link>() {
+			@Override
+			public int compare(Link l1, Link l2) {
+				return Double.compare(l2.score, l1.score);
+			}
+		});
+
+		Map<Method, PrecisionRecallTermsAverages> averages = new HashMap<Method, PrecisionRecallTermsAverages>();
+		for (Method method : methods)
+			averages.put(method, new PrecisionRecallTermsAverages());
+		for (DocumentSweep document : documents) {
+			document.reset();
+			for (Method method : methods)
+				averages.get(method).addTerms(document.getTerms(method));
+		}
+
+		List<SweepPoint> points = new ArrayList<SweepPoint>();
+		points.add(createPoint(Double.POSITIVE_INFINITY, averages));
+		int i = 0;
+		while (i < links.size()) {
+			double threshold = links.get(i).score;
+			// Add all the links with the same score before recording a point.
+			for (; i < links.size() && links.get(i).score == threshold; i++) {
+				Link link = links.get(i);
+				DocumentSweep document = link.document;
+				Map<Method, PrecisionRecallTerms> previous = new HashMap<Method, PrecisionRecallTerms>();
+				for (Method method : methods)
+					previous.put(method, document.getTerms(method));
+				if (!document.union(link.first, link.second))
+					continue;
+				// Replace this document's contribution to the averages.
+				for (Method method : methods) {
+					averages.get(method).removeTerms(previous.get(method));
+					averages.get(method).addTerms(document.getTerms(method));
+				}
+			}
+			points.add(createPoint(threshold, averages));
+		}
+		return points;
+	}
+
+	private SweepPoint createPoint(double threshold,
+			Map<Method, PrecisionRecallTermsAverages> averages) {
+		SweepPoint point = new SweepPoint(threshold);
+		for (Method method : methods)
+			point.setAverages(method, averages.get(method));
+		return point;
+	}
+}
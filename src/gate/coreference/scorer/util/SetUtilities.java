@@ -73,6 +73,12 @@ public class SetUtilities {
 	 * @return intersection of a and b
 	 */
 	static public <T> Set<T> intersection(Set<T> a, Set<T> b) {
+		// Only copy the smaller set, whose elements are all tested anyway.
+		if (a.size() > b.size()) {
+			Set<T> c = a;
+			a = b;
+			b = c;
+		}
 		Set<T> intersection = new HashSet<T>(a);
 		intersection.retainAll(b);
 		return intersection;
@@ -0,0 +1,96 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer.util;
+
+/**
+ * Sorting utilities for arrays of indices.
+ * <p>
+ * These sort a permutation of row indices instead of the rows themselves, so
+ * that columns stored as primitive arrays can be put in order without boxing
+ * their values or copying them.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class SortUtilities {
+
+	/**
+	 * Comparison of two indices.
+	 */
+	public interface IndexComparator {
+		/**
+		 * @param a
+		 *            index
+		 * @param b
+		 *            index
+		 * @return negative, zero or positive as the item at a is less than,
+		 *         equal to or greater than the item at b
+		 */
+		public int compare(int a, int b);
+	}
+
+	/**
+	 * Stable merge sort of an array of indices.
+	 *
+	 * @param indices
+	 *            indices to sort in place
+	 * @param length
+	 *            number of indices at the start of the array to sort
+	 * @param comparator
+	 *            comparison of the items the indices refer to
+	 */
+	static public void sort(int[] indices, int length, IndexComparator comparator) {
+		int[] buffer = new int[length];
+		int[] from = indices, to = buffer;
+		for (int width = 1; width < length; width *= 2) {
+			for (int start = 0; start < length; start += 2 * width) {
+				int middle = Math.min(start + width, length);
+				int end = Math.min(start + 2 * width, length);
+				int i = start, j = middle, k = start;
+				while (i < middle && j < end)
+					to[k++] = comparator.compare(from[j], from[i]) < 0 ? from[j++]
+							: from[i++];
+				while (i < middle)
+					to[k++] = from[i++];
+				while (j < end)
+					to[k++] = from[j++];
+			}
+			int[] swap = from;
+			from = to;
+			to = swap;
+		}
+		if (from != indices)
+			System.arraycopy(from, 0, indices, 0, length);
+	}
+
+	/**
+	 * Comparator that orders indices by the values in an array.
+	 *
+	 * @param values
+	 *            values to compare, where NaN sorts after all other values
+	 * @return comparator of indices into the array
+	 */
+	static public IndexComparator byValue(final double[] values) {
+		return new IndexComparator() {
+			@Override
+			public int compare(int a, int b) {
+				return Double.compare(values[a], values[b]);
+			}
+		};
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import static org.junit.Assert.*;
+
+import gate.Corpus;
+import gate.DataStore;
+import gate.Factory;
+import gate.Gate;
+import gate.coreference.scorer.PrecisionRecall;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.persist.PersistenceException;
+import gate.util.GateException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class AgreementScorerTest {
+
+	/**
+	 * Index of the default annotation set in the matrices.
+	 */
+	private static final int DEFAULT = 0;
+
+	/**
+	 * Index of the key annotation set in the matrices.
+	 */
+	private static final int KEY = 1;
+
+	private DataStore dataStore;
+	private Corpus corpus;
+	private Set<Method> methods;
+	private AgreementScorer scorer;
+
+	@BeforeClass
+	public static void initializeGate() throws GateException {
+		Gate.init();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		dataStore = Factory.openDataStore("gate.persist.SerialDataStore",
+				new File("test-datastore").toURI().toString());
+		corpus = Datastore.loadCorpusFromDatastore(dataStore, "Coreference");
+		methods = new HashSet<Method>();
+		methods.add(Method.MUC);
+		methods.add(Method.BCUBED);
+		List<String> annotationSetNames = new ArrayList<String>();
+		annotationSetNames.add(null);
+		annotationSetNames.add(CorpusScorer.DEFAULT_KEY_NAME);
+		scorer = new AgreementScorer(methods, annotationSetNames);
+		scorer.scoreCorpus(corpus);
+	}
+
+	@After
+	public void tearDown() throws PersistenceException {
+		Factory.deleteResource(corpus);
+		dataStore.close();
+	}
+
+	/**
+	 * The agreement of the key with the default annotation set is the score
+	 * of the default set against the key.
+	 */
+	@Test
+	public void pairScores() {
+		AgreementMatrix same = scorer.getDocumentAgreement().get(
+				"All Precision All Recall");
+		AgreementMatrix some = scorer.getDocumentAgreement().get(
+				"Some Precision Some Recall");
+		for (Method method : methods) {
+			assertEquals(new PrecisionRecall(1, 1), same.getScore(method, KEY,
+					DEFAULT));
+			assertEquals(new PrecisionRecall(2.0 / 3.0, 2.0 / 3.0), some
+					.getScore(method, KEY, DEFAULT));
+		}
+	}
+
+	/**
+	 * Exchanging the key and response exchanges precision and recall, and an
+	 * annotation set is not scored against itself.
+	 */
+	@Test
+	public void symmetric() {
+		List<AgreementMatrix> matrices = new ArrayList<AgreementMatrix>(scorer
+				.getDocumentAgreement().values());
+		matrices.add(scorer.getMicroAverages());
+		matrices.add(scorer.getMacroAverages());
+		for (AgreementMatrix matrix : matrices)
+			for (Method method : methods) {
+				assertNull(matrix.getScore(method, KEY, KEY));
+				assertNull(matrix.getScore(method, DEFAULT, DEFAULT));
+				PrecisionRecall score = matrix.getScore(method, KEY, DEFAULT);
+				PrecisionRecall transpose = matrix.getScore(method, DEFAULT,
+						KEY);
+				if (null == score) {
+					assertNull(transpose);
+					continue;
+				}
+				assertEquals(new PrecisionRecall(score.getRecall(), score
+						.getPrecision()), transpose);
+			}
+	}
+}
@@ -21,11 +21,16 @@ package gate.coreference;
 import static org.junit.Assert.*;
 
 import java.io.File;
-import java.util.HashSet;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Map.Entry;
 
+import gate.AnnotationSet;
 import gate.Corpus;
 import gate.DataStore;
 import gate.Document;
@@ -33,11 +38,14 @@ import gate.Factory;
 import gate.Gate;
 import gate.coreference.CorpusScorer;
 import gate.coreference.Datastore;
-import gate.coreference.scorer.EquivalenceClassScorerFactory;
+import gate.coreference.scorer.MentionAligner;
 import gate.coreference.scorer.PrecisionRecall;
+import gate.coreference.scorer.ScoreStore;
 import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.creole.ANNIEConstants;
 import gate.persist.PersistenceException;
 import gate.util.GateException;
+import gate.util.InvalidOffsetException;
 
 import org.junit.After;
 import org.junit.Before;
@@ -48,7 +56,13 @@ public class CorpusScorerTest {
 
 	private DataStore dataStore;
 	private Corpus corpus;
-	private Map<Document, Map<Method, PrecisionRecall>> corpusScores;
+	private ScoreStore corpusScores;
+
+	/**
+	 * Scoring methods used by the tests
+	 */
+	private final Set<Method> methods = EnumSet.of(Method.MUC,
+			Method.BCUBED, Method.MENTION);
 
 	@BeforeClass
 	public static void initializeGate() throws GateException {
@@ -61,9 +75,6 @@ public class CorpusScorerTest {
 				new File("test-datastore").toURI().toString());
 		corpus = Datastore.loadCorpusFromDatastore(dataStore, "Coreference");
 
-		Set<Method> methods = new HashSet<Method>();
-		methods.add(EquivalenceClassScorerFactory.Method.MUC);
-		methods.add(EquivalenceClassScorerFactory.Method.BCUBED);
 		CorpusScorer scorer = new CorpusScorer(corpus, methods);
 		corpusScores = scorer.getScores();
 	}
@@ -114,6 +125,216 @@ public class CorpusScorerTest {
 				scores.get(Method.BCUBED));
 	}
 
+	/**
+	 * Documents read concurrently from the data store get the same scores as
+	 * documents loaded through the corpus.
+	 */
+	@Test
+	public void concurrentLoading() throws InterruptedException {
+		CorpusScorer scorer = new CorpusScorer(corpus, methods);
+		new DocumentLoader(scorer, 4, 2).scoreUnscored();
+		assertSameScores(scorer);
+	}
+
+	/**
+	 * Documents scored in a pipeline get the same scores as documents scored
+	 * one at a time.
+	 */
+	@Test
+	public void pipeline() throws InterruptedException {
+		CorpusScorer scorer = new CorpusScorer(corpus, methods);
+		new ScoringPipeline(scorer, 2, 2, 2, 1).scoreUnscored();
+		assertSameScores(scorer);
+	}
+
+	/**
+	 * Scores restored from a journal match the scores that were journaled,
+	 * and a partly written record at the end of the journal is discarded.
+	 */
+	@Test
+	public void journal() throws IOException {
+		File file = File.createTempFile("scores", ".journal");
+		try {
+			CorpusScorer scorer = new CorpusScorer(corpus, methods);
+			ScoreJournal journal = new ScoreJournal(file, scorer, methods);
+			assertEquals(0, journal.restore());
+			for (DocumentKey key : scorer.getUnscoredDocuments()) {
+				scorer.setChains(key, scorer.loadChains(key));
+				journal.append(key);
+			}
+			journal.close();
+			long length = file.length();
+			FileOutputStream out = new FileOutputStream(file, true);
+			out.write(new byte[] { 0, 0, 1, 0, 42 });
+			out.close();
+
+			CorpusScorer restored = new CorpusScorer(corpus, methods);
+			journal = new ScoreJournal(file, restored, methods);
+			assertEquals(corpus.size(), journal.restore());
+			journal.close();
+			assertEquals(length, file.length());
+			assertSameScores(restored);
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Merging the journals of scored shards gives exactly the averages of
+	 * scoring the whole corpus.
+	 */
+	@Test
+	public void shards() throws IOException {
+		CorpusScorer whole = new CorpusScorer(corpus, methods);
+		whole.getScores();
+		List<File> journals = new ArrayList<File>();
+		try {
+			for (int shard = 0; shard < 2; shard++) {
+				File journal = File.createTempFile("shard", ".journal");
+				journal.delete();
+				journals.add(journal);
+				ShardedCorpusScorer.scoreShard(new CorpusScorer(corpus,
+						methods), methods, shard, 2, journal);
+			}
+			CorpusScorer merged = new CorpusScorer(corpus, methods);
+			assertEquals(corpus.size(), ScoreJournal.merge(journals, merged,
+					methods));
+			assertSameScores(merged);
+			for (Method method : methods) {
+				assertEquals(whole.getAverages(method).getMicroAverage(),
+						merged.getAverages(method).getMicroAverage());
+				assertEquals(whole.getAverages(method).getMacroAverage(),
+						merged.getAverages(method).getMacroAverage());
+			}
+		} finally {
+			for (File journal : journals)
+				journal.delete();
+		}
+	}
+
+	/**
+	 * Merging the journals written by worker processes gives exactly the
+	 * averages of scoring the whole corpus in this one.
+	 */
+	@Test
+	public void workers() throws IOException, InterruptedException {
+		CorpusScorer whole = new CorpusScorer(corpus, methods);
+		whole.getScores();
+		File directory = File.createTempFile("shards", "");
+		directory.delete();
+		directory.mkdir();
+		try {
+			ShardedCorpusScorer.runWorkers("test-datastore", "Coreference", 2,
+					directory);
+			List<File> journals = new ArrayList<File>();
+			for (int shard = 0; shard < 2; shard++)
+				journals.add(ShardedCorpusScorer.getJournal(directory, shard));
+			CorpusScorer merged = new CorpusScorer(corpus, methods);
+			assertEquals(corpus.size(), ScoreJournal.merge(journals, merged,
+					methods));
+			assertSameScores(merged);
+			for (Method method : methods) {
+				assertEquals(whole.getAverages(method).getMicroAverage(),
+						merged.getAverages(method).getMicroAverage());
+				assertEquals(whole.getAverages(method).getMacroAverage(),
+						merged.getAverages(method).getMacroAverage());
+			}
+		} finally {
+			for (File journal : directory.listFiles())
+				journal.delete();
+			directory.delete();
+		}
+	}
+
+	/**
+	 * Rescoring with a tolerance aligner matches a response mention whose end
+	 * is a character off its key mention's.
+	 */
+	@Test
+	public void toleranceAligner() throws GateException {
+		Corpus alignerCorpus = Factory.newCorpus("Aligner");
+		Document document = Factory
+				.newDocument("Alice met Bob and she smiled.");
+		try {
+			Map<String, List<List<Integer>>> matches = new HashMap<String, List<List<Integer>>>();
+			matches.put(CorpusScorer.DEFAULT_KEY_NAME, addChains(document
+					.getAnnotations(CorpusScorer.DEFAULT_KEY_NAME),
+					new long[][] { { 0, 5 }, { 18, 21 } },
+					new long[][] { { 10, 13 } }));
+			matches.put(null, addChains(document.getAnnotations(),
+					new long[][] { { 0, 6 }, { 18, 21 } },
+					new long[][] { { 10, 13 } }));
+			document.getFeatures().put(
+					ANNIEConstants.DOCUMENT_COREF_FEATURE_NAME, matches);
+			alignerCorpus.add(document);
+
+			CorpusScorer scorer = new CorpusScorer(alignerCorpus, methods);
+			ScoreStore scores = scorer.getScores();
+			assertEquals(new PrecisionRecall(2.0 / 3.0, 2.0 / 3.0), scores
+					.getScore(0, Method.MENTION));
+			assertEquals(new PrecisionRecall(0, 0), scores.getScore(0,
+					Method.MUC));
+			assertEquals(new PrecisionRecall(0.5, 0.5), scores.getScore(0,
+					Method.BCUBED));
+
+			scorer.setAligner(new MentionAligner(1, false, false));
+			assertEquals(1, scorer.getUnscoredDocuments().size());
+			scores = scorer.getScores();
+			for (Method method : methods)
+				assertEquals(new PrecisionRecall(1, 1), scores.getScore(0,
+						method));
+		} finally {
+			Factory.deleteResource(alignerCorpus);
+			Factory.deleteResource(document);
+		}
+	}
+
+	/**
+	 * Add mention annotations and return their IDs in the form of the matches
+	 * feature.
+	 */
+	private static List<List<Integer>> addChains(AnnotationSet annotations,
+			long[][]... chains) throws InvalidOffsetException {
+		List<List<Integer>> ids = new ArrayList<List<Integer>>();
+		for (long[][] chain : chains) {
+			List<Integer> chainIDs = new ArrayList<Integer>();
+			for (long[] mention : chain)
+				chainIDs.add(annotations.add(mention[0], mention[1], "Person",
+						Factory.newFeatureMap()));
+			ids.add(chainIDs);
+		}
+		return ids;
+	}
+
+	private void assertSameScores(CorpusScorer scorer) {
+		assertTrue(scorer.getUnscoredDocuments().isEmpty());
+		ScoreStore scores = scorer.getScoreStore();
+		for (int row = 0; row < scores.size(); row++) {
+			Map<Method, PrecisionRecall> expected = getScoresByName(scores
+					.getName(row));
+			for (Method method : methods)
+				assertEquals(expected.get(method), scores.getScore(row, method));
+		}
+	}
+
+	/**
+	 * Every document is profiled, and annotated documents have their chains
+	 * counted.
+	 */
+	@Test
+	public void profile() {
+		CorpusScorer scorer = new CorpusScorer(corpus, methods);
+		ScoringProfiler profiler = new ScoringProfiler();
+		scorer.setProfiler(profiler);
+		scorer.getScores();
+		List<ScoringProfiler.DocumentProfile> profiles = profiler
+				.getSlowest(corpus.size());
+		assertEquals(corpus.size(), profiles.size());
+		for (ScoringProfiler.DocumentProfile profile : profiles)
+			if ("All Precision All Recall".equals(profile.getName()))
+				assertTrue(profile.getMentions() > 0);
+	}
+
 	/**
 	 * Retrieve the coreference scores for a document with a particular name.
 	 * This assumes document names are unique in the corpus.
@@ -123,12 +344,13 @@ public class CorpusScorerTest {
 	 * @return scores for the document
 	 */
 	private Map<Method, PrecisionRecall> getScoresByName(String documentName) {
-		for (Entry<Document, Map<Method, PrecisionRecall>> documentScores : corpusScores
-				.entrySet()) {
-			String name = documentScores.getKey().getName();
-			Map<Method, PrecisionRecall> scores = documentScores.getValue();
-			if (documentName.equals(name))
-				return scores;
+		for (int row = 0; row < corpusScores.size(); row++) {
+			if (!documentName.equals(corpusScores.getName(row)))
+				continue;
+			Map<Method, PrecisionRecall> scores = new HashMap<Method, PrecisionRecall>();
+			for (Method method : corpusScores.getMethods())
+				scores.put(method, corpusScores.getScore(row, method));
+			return scores;
 		}
 		return null;
 	}
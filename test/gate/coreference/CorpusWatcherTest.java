@@ -0,0 +1,150 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import gate.Corpus;
+import gate.DataStore;
+import gate.Document;
+import gate.Factory;
+import gate.Gate;
+import gate.coreference.scorer.PrecisionRecall;
+import gate.coreference.scorer.ScoreStore;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.creole.ANNIEConstants;
+import gate.util.GateException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class CorpusWatcherTest {
+
+	private final Set<Method> methods = EnumSet.of(Method.MUC, Method.BCUBED);
+
+	/**
+	 * Copy of the test data store, which the tests rewrite
+	 */
+	private File directory;
+	private DataStore dataStore;
+	private Corpus corpus;
+
+	@BeforeClass
+	public static void initializeGate() throws GateException {
+		Gate.init();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		directory = File.createTempFile("datastore", "");
+		directory.delete();
+		copy(new File("test-datastore"), directory);
+		dataStore = Factory.openDataStore("gate.persist.SerialDataStore",
+				directory.toURI().toString());
+		corpus = Datastore.loadCorpusFromDatastore(dataStore, "Coreference");
+	}
+
+	@After
+	public void tearDown() throws GateException {
+		Factory.deleteResource(corpus);
+		dataStore.close();
+		delete(directory);
+	}
+
+	/**
+	 * Only the document rewritten in the data store is rescored.
+	 */
+	@Test
+	public void rescoreChanged() throws GateException, IOException {
+		CorpusScorer scorer = new CorpusScorer(corpus, methods);
+		ScoreStore scores = scorer.getScores();
+		CorpusWatcher watcher = new CorpusWatcher(scorer, directory);
+		assertTrue(watcher.rescoreChanged().isEmpty());
+
+		int row = getRow(scores, "All Precision All Recall");
+		assertEquals(new PrecisionRecall(1, 1), scores.getScore(row,
+				Method.MUC));
+		DocumentKey key = scorer.getDocumentKey(row);
+		// Strip the document's coreference information.
+		Document document = Datastore.loadDocumentFromDatastore(dataStore,
+				key.getPersistenceId());
+		try {
+			document.getFeatures().remove(
+					ANNIEConstants.DOCUMENT_COREF_FEATURE_NAME);
+			dataStore.sync(document);
+		} finally {
+			Factory.deleteResource(document);
+		}
+
+		assertEquals(Collections.singletonList(key), watcher.rescoreChanged());
+		assertNull(scores.getScore(row, Method.MUC));
+		assertTrue(watcher.rescoreChanged().isEmpty());
+	}
+
+	private static int getRow(ScoreStore scores, String name) {
+		for (int row = 0; row < scores.size(); row++)
+			if (name.equals(scores.getName(row)))
+				return row;
+		throw new IllegalArgumentException("No document " + name);
+	}
+
+	private static void copy(File from, File to) throws IOException {
+		if (from.isDirectory()) {
+			to.mkdir();
+			for (File file : from.listFiles())
+				copy(file, new File(to, file.getName()));
+			return;
+		}
+		InputStream in = new FileInputStream(from);
+		try {
+			OutputStream out = new FileOutputStream(to);
+			try {
+				byte[] buffer = new byte[8192];
+				for (int n = in.read(buffer); n >= 0; n = in.read(buffer))
+					out.write(buffer, 0, n);
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void delete(File file) {
+		if (file.isDirectory())
+			for (File child : file.listFiles())
+				delete(child);
+		file.delete();
+	}
+}
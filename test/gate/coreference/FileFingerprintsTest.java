@@ -0,0 +1,89 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class FileFingerprintsTest {
+
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = File.createTempFile("fingerprints", "");
+		directory.delete();
+		directory.mkdir();
+	}
+
+	@After
+	public void tearDown() {
+		for (File file : directory.listFiles())
+			file.delete();
+		directory.delete();
+	}
+
+	private File write(String name, String contents, long modified)
+			throws IOException {
+		File file = new File(directory, name);
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(contents.getBytes("UTF-8"));
+		out.close();
+		file.setLastModified(modified);
+		return file;
+	}
+
+	@Test
+	public void testChanges() throws IOException {
+		write("a", "one", 1000000);
+		write("b", "two", 1000000);
+		FileFingerprints fingerprints = new FileFingerprints(directory);
+		assertTrue(fingerprints.poll().isEmpty());
+		// Changed contents
+		write("a", "three", 2000000);
+		assertEquals(Collections.singleton("a"), fingerprints.poll());
+		assertTrue(fingerprints.poll().isEmpty());
+		// Touched without changing contents
+		write("a", "three", 3000000);
+		assertTrue(fingerprints.poll().isEmpty());
+		// New file
+		write("c", "four", 1000000);
+		assertEquals(Collections.singleton("c"), fingerprints.poll());
+	}
+
+	@Test
+	public void testForget() throws IOException {
+		write("a", "one", 1000000);
+		FileFingerprints fingerprints = new FileFingerprints(directory);
+		fingerprints.forget("a");
+		assertEquals(Collections.singleton("a"), fingerprints.poll());
+		assertTrue(fingerprints.poll().isEmpty());
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.EnumSet;
+import java.util.Set;
+
+import gate.Corpus;
+import gate.DataStore;
+import gate.Factory;
+import gate.Gate;
+import gate.coreference.scorer.PrecisionRecall;
+import gate.coreference.scorer.SampleEstimator.Estimate;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.persist.PersistenceException;
+import gate.util.GateException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class SampledCorpusScorerTest {
+
+	private static final double TOLERANCE = 1e-6;
+
+	private final Set<Method> methods = EnumSet.of(Method.MUC, Method.BCUBED);
+
+	private DataStore dataStore;
+	private Corpus corpus;
+
+	@BeforeClass
+	public static void initializeGate() throws GateException {
+		Gate.init();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		dataStore = Factory.openDataStore("gate.persist.SerialDataStore",
+				new File("test-datastore").toURI().toString());
+		corpus = Datastore.loadCorpusFromDatastore(dataStore, "Coreference");
+	}
+
+	@After
+	public void tearDown() throws PersistenceException {
+		Factory.deleteResource(corpus);
+		dataStore.close();
+	}
+
+	/**
+	 * Scoring stops at the maximum number of documents.
+	 */
+	@Test
+	public void maximum() {
+		CorpusScorer scorer = new CorpusScorer(corpus, methods);
+		SampledCorpusScorer sampler = new SampledCorpusScorer(scorer, 0);
+		assertEquals(2, sampler.scoreUntil(1, 0.95, 2));
+		assertEquals(2, sampler.size());
+		assertEquals(corpus.size() - 2, scorer.getUnscoredDocuments().size());
+	}
+
+	/**
+	 * The intervals are not checked before {@link
+	 * SampledCorpusScorer#MINIMUM_SAMPLE} documents have been scored, so the
+	 * whole of the small test corpus is scored, and the estimates are then the
+	 * corpus averages with intervals of zero width.
+	 */
+	@Test
+	public void completeSample() {
+		assertTrue(corpus.size() < SampledCorpusScorer.MINIMUM_SAMPLE);
+		CorpusScorer scorer = new CorpusScorer(corpus, methods);
+		SampledCorpusScorer sampler = new SampledCorpusScorer(scorer, 0);
+		assertEquals(corpus.size(), sampler.scoreUntil(1, 0.95,
+				Integer.MAX_VALUE));
+		assertFalse(sampler.scoreNext());
+		assertTrue(scorer.getUnscoredDocuments().isEmpty());
+		assertExact(scorer, sampler);
+	}
+
+	/**
+	 * Sampling by strata gives the same estimates once every document has
+	 * been scored.
+	 */
+	@Test
+	public void stratified() {
+		CorpusScorer scorer = new CorpusScorer(corpus, methods);
+		SampledCorpusScorer sampler = new SampledCorpusScorer(scorer,
+				new SampledCorpusScorer.Stratifier() {
+					public String getStratum(DocumentKey document) {
+						return document.getName().contains("Precision") ? "P"
+								: "";
+					}
+				}, 0);
+		while (sampler.scoreNext())
+			;
+		assertEquals(corpus.size(), sampler.size());
+		assertExact(scorer, sampler);
+	}
+
+	private void assertExact(CorpusScorer scorer, SampledCorpusScorer sampler) {
+		for (Method method : methods) {
+			PrecisionRecall micro = scorer.getAverages(method)
+					.getMicroAverage();
+			Estimate microEstimate = sampler.getMicroEstimate(method, 0.95);
+			assertEquals(micro.getFScore(), microEstimate.getValue(),
+					TOLERANCE);
+			assertEquals(0, microEstimate.getHalfWidth(), TOLERANCE);
+			PrecisionRecall macro = scorer.getAverages(method)
+					.getMacroAverage();
+			Estimate macroEstimate = sampler.getMacroEstimate(method, 0.95);
+			assertEquals(macro.getFScore(), macroEstimate.getValue(),
+					TOLERANCE);
+			assertEquals(0, macroEstimate.getHalfWidth(), TOLERANCE);
+		}
+	}
+}
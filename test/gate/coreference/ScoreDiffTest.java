@@ -0,0 +1,99 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import static org.junit.Assert.*;
+
+import gate.coreference.ScoreDiff.DocumentDelta;
+import gate.coreference.scorer.PrecisionRecallTerms;
+import gate.coreference.scorer.ScoreStore;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ScoreDiffTest {
+
+	private static final double TOLERANCE = 1e-6;
+	private ScoreStore baseline, current;
+
+	@Before
+	public void setUp() {
+		Set<Method> methods = new HashSet<Method>();
+		methods.add(Method.MUC);
+		baseline = new ScoreStore(methods);
+		current = new ScoreStore(methods);
+		// Recall out of 10 in each run.
+		addRow(baseline, "a", 5);
+		addRow(baseline, "b", 5);
+		addRow(baseline, "c", 5);
+		addRow(baseline, "d", 5);
+		addRow(baseline, "only baseline", 5);
+		addRow(current, "d", 9);
+		addRow(current, "c", 1);
+		addRow(current, "b", 4);
+		addRow(current, "a", 5);
+		addRow(current, "only current", 5);
+	}
+
+	private void addRow(ScoreStore store, String name, int correct) {
+		int row = store.addRow(name);
+		store.setTerms(row, Method.MUC, new PrecisionRecallTerms(correct, 10,
+				correct, 10));
+		store.setState(row, ScoreStore.SCORED);
+	}
+
+	@Test
+	public void testDiff() {
+		ScoreDiff diff = new ScoreDiff(baseline, current, 10);
+		assertEquals(4, diff.getJoinedCount());
+		assertEquals(1, diff.getBaselineOnlyCount());
+		assertEquals(1, diff.getCurrentOnlyCount());
+
+		List<DocumentDelta> regressions = diff.getRegressions(Method.MUC);
+		assertEquals(2, regressions.size());
+		assertEquals("c", regressions.get(0).getName());
+		assertEquals(-0.4, regressions.get(0).getDelta(), TOLERANCE);
+		assertEquals("b", regressions.get(1).getName());
+		List<DocumentDelta> improvements = diff.getImprovements(Method.MUC);
+		assertEquals(1, improvements.size());
+		assertEquals("d", improvements.get(0).getName());
+		assertEquals(0.4, improvements.get(0).getDelta(), TOLERANCE);
+
+		assertEquals(0.5, diff.getBaselineAverages(Method.MUC)
+				.getMacroAverage().getRecall(), TOLERANCE);
+		assertEquals(19.0 / 40.0, diff.getCurrentAverages(Method.MUC)
+				.getMacroAverage().getRecall(), TOLERANCE);
+	}
+
+	@Test
+	public void testLimit() {
+		ScoreDiff diff = new ScoreDiff(baseline, current, 1);
+		List<DocumentDelta> regressions = diff.getRegressions(Method.MUC);
+		assertEquals(1, regressions.size());
+		assertEquals("c", regressions.get(0).getName());
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import static org.junit.Assert.*;
+
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import gate.Gate;
+import gate.coreference.scorer.PrecisionRecallTerms;
+import gate.coreference.scorer.ScoreStore;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.util.GateException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ScoreTableModelTest {
+
+	/**
+	 * Model column of the MUC F-score.
+	 */
+	private static final int MUC_FSCORE = 6;
+
+	private Corpus corpus;
+	private Map<String, Document> documents = new HashMap<String, Document>();
+	private CorpusScorer scorer;
+	private ScoreStore store;
+	private ScoreTableModel model;
+
+	@BeforeClass
+	public static void initializeGate() throws GateException {
+		Gate.init();
+	}
+
+	@Before
+	public void setUp() throws GateException {
+		corpus = Factory.newCorpus("Table");
+		for (String name : new String[] { "c", "a", "d", "b" }) {
+			Document document = Factory.newDocument(name);
+			document.setName(name);
+			documents.put(name, document);
+			corpus.add(document);
+		}
+		Set<Method> methods = new HashSet<Method>(Arrays.asList(Method
+				.values()));
+		scorer = new CorpusScorer(corpus, methods);
+		store = scorer.getScoreStore();
+		model = new ScoreTableModel();
+		model.setScorer(scorer);
+	}
+
+	@After
+	public void tearDown() {
+		Factory.deleteResource(corpus);
+		for (Document document : documents.values())
+			Factory.deleteResource(document);
+	}
+
+	@Test
+	public void sortBy() {
+		assertEquals(Arrays.asList("a", "b", "c", "d"), shown());
+		model.sortBy(0);
+		assertEquals(Arrays.asList("d", "c", "b", "a"), shown());
+		score("c", 2);
+		score("a", 1);
+		model.refresh();
+		// Unscored documents sort after scored ones and among themselves by
+		// name.
+		model.sortBy(MUC_FSCORE);
+		assertEquals(Arrays.asList("a", "c", "b", "d"), shown());
+		model.sortBy(MUC_FSCORE);
+		assertEquals(Arrays.asList("d", "b", "c", "a"), shown());
+	}
+
+	@Test
+	public void reposition() {
+		model.sortBy(MUC_FSCORE);
+		score("c", 2);
+		score("a", 1);
+		model.refresh();
+		assertEquals(Arrays.asList("a", "c", "b", "d"), shown());
+		score("b", 3);
+		score("a", 4);
+		model.refresh();
+		assertEquals(Arrays.asList("c", "b", "a", "d"), shown());
+		assertSameAsSorted();
+	}
+
+	@Test
+	public void repositionFiltered() {
+		model.setFilter(new ScoreTableModel.RowFilter() {
+			@Override
+			public boolean include(ScoreStore store, int row) {
+				return ScoreStore.SCORED == store.getState(row);
+			}
+		});
+		assertEquals(new ArrayList<String>(), shown());
+		score("d", 1);
+		score("b", 1);
+		model.refresh();
+		assertEquals(Arrays.asList("b", "d"), shown());
+		store.setState(scorer.getRow(key("b")), ScoreStore.UNSCORED);
+		model.refresh();
+		assertEquals(Arrays.asList("d"), shown());
+	}
+
+	@Test
+	public void removeRow() {
+		score("b", 1);
+		model.refresh();
+		// The last row, b, moves into the place of the removed one, c.
+		scorer.removeDocument(documents.get("c"));
+		assertEquals(Arrays.asList("a", "b", "d"), shown());
+		model.refresh();
+		assertEquals(Arrays.asList("a", "b", "d"), shown());
+		assertEquals(scorer.getRow(key("b")), model.getStoreRow(1));
+		// A row changed before it is moved is repositioned by its new index.
+		score("b", 2);
+		model.sortBy(MUC_FSCORE);
+		assertEquals(Arrays.asList("b", "a", "d"), shown());
+		score("d", 1);
+		scorer.removeDocument(documents.get("a"));
+		model.refresh();
+		assertEquals(Arrays.asList("d", "b"), shown());
+		assertSameAsSorted();
+	}
+
+	/**
+	 * Give a document the same MUC precision and recall, and so F-score, of a
+	 * number of quarters.
+	 */
+	private void score(String name, int quarters) {
+		int row = scorer.getRow(key(name));
+		PrecisionRecallTerms terms = new PrecisionRecallTerms(quarters, 4,
+				quarters, 4);
+		for (Method method : store.getMethods())
+			store.setTerms(row, method, terms);
+		store.setState(row, ScoreStore.SCORED);
+	}
+
+	private DocumentKey key(String name) {
+		return DocumentKey.forDocument(documents.get(name));
+	}
+
+	/**
+	 * @return names of the documents in table order
+	 */
+	private List<String> shown() {
+		List<String> names = new ArrayList<String>();
+		for (int row = 0; row < model.getRowCount(); row++)
+			names.add((String) model.getValueAt(row, 0));
+		return names;
+	}
+
+	/**
+	 * Check that the incrementally maintained order is the order of sorting
+	 * every row, by sorting twice on the same column to keep the direction.
+	 */
+	private void assertSameAsSorted() {
+		List<String> incremental = shown();
+		model.sortBy(MUC_FSCORE);
+		model.sortBy(MUC_FSCORE);
+		assertEquals(incremental, shown());
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import static org.junit.Assert.*;
+
+import gate.Corpus;
+import gate.Document;
+import gate.Factory;
+import gate.Gate;
+import gate.coreference.CorpusScorer.DocumentChains;
+import gate.coreference.scorer.ScoreStore;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.util.GateException;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ScoringPipelineTest {
+
+	private final Set<Method> methods = EnumSet.of(Method.MUC, Method.BCUBED);
+
+	private Corpus corpus;
+	private List<Document> documents = new ArrayList<Document>();
+
+	@BeforeClass
+	public static void initializeGate() throws GateException {
+		Gate.init();
+	}
+
+	@Before
+	public void setUp() throws GateException {
+		corpus = Factory.newCorpus("Pipeline");
+		for (String name : new String[] { "a", "b", "c", "d" }) {
+			Document document = Factory.newDocument(name);
+			document.setName(name);
+			documents.add(document);
+			corpus.add(document);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		Factory.deleteResource(corpus);
+		for (Document document : documents)
+			Factory.deleteResource(document);
+	}
+
+	/**
+	 * A document that cannot be processed is dropped and the others are
+	 * scored.
+	 */
+	@Test(timeout = 10000)
+	public void documentException() throws InterruptedException {
+		CorpusScorer scorer = failingScorer(new IllegalStateException(
+				"Cannot extract"));
+		new ScoringPipeline(scorer, 1, 2, 1, 1).scoreUnscored();
+		ScoreStore store = scorer.getScoreStore();
+		for (int row = 0; row < store.size(); row++)
+			assertEquals(store.getName(row), "b".equals(store.getName(row)),
+					ScoreStore.UNSCORED == store.getState(row));
+	}
+
+	/**
+	 * An Error in a stage stops the pipeline instead of leaving the caller
+	 * waiting, and is rethrown to the caller.
+	 */
+	@Test(timeout = 10000)
+	public void stageError() throws InterruptedException {
+		Error error = new Error("Cannot extract");
+		CorpusScorer scorer = failingScorer(error);
+		try {
+			new ScoringPipeline(scorer, 1, 2, 1, 1).scoreUnscored();
+			fail("The error was not rethrown");
+		} catch (Error e) {
+			assertSame(error, e);
+		}
+	}
+
+	/**
+	 * @return a scorer that fails to extract the chains of document b
+	 */
+	private CorpusScorer failingScorer(final Throwable failure) {
+		return new CorpusScorer(corpus, methods) {
+			@Override
+			public DocumentChains extractChains(DocumentKey key,
+					Document document) {
+				if ("b".equals(key.getName())) {
+					if (failure instanceof Error)
+						throw (Error) failure;
+					throw (RuntimeException) failure;
+				}
+				return super.extractChains(key, document);
+			}
+		};
+	}
+}
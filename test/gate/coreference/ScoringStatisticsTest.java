@@ -0,0 +1,89 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ScoringStatisticsTest {
+
+	@Test
+	public void testBuckets() {
+		assertEquals(0, LatencyHistogram.bucket(0));
+		assertEquals(0, LatencyHistogram.bucket(999));
+		assertEquals(1, LatencyHistogram.bucket(1000));
+		assertEquals(1, LatencyHistogram.bucket(1999));
+		assertEquals(2, LatencyHistogram.bucket(2000));
+		assertEquals(11, LatencyHistogram.bucket(1500000));
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram
+				.bucket(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertTrue(Double.isNaN(histogram.getMeanMillis()));
+		for (int i = 0; i < 9; i++)
+			histogram.record(500);
+		histogram.record(3000000);
+		assertEquals(10, histogram.getCount());
+		assertEquals((9 * 500 + 3000000) / 1e6 / 10, histogram
+				.getMeanMillis(), 1e-9);
+		assertEquals(9, histogram.getCounts()[0]);
+		assertEquals(0.001, histogram.getPercentileMillis(50), 1e-9);
+		assertEquals(4.096, histogram.getPercentileMillis(100), 1e-9);
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+	}
+
+	@Test
+	public void testCounters() {
+		ScoringStatistics statistics = new ScoringStatistics();
+		statistics.recordScoring(1000, false, 5);
+		statistics.recordScoring(2000, true, 7);
+		statistics.recordDocument(true);
+		statistics.recordDocument(false);
+		statistics.setQueueDepth(3);
+		statistics.extractionStarted();
+		assertEquals(1, statistics.getDocumentsScored());
+		assertEquals(1, statistics.getDocumentsUnannotated());
+		assertEquals(12, statistics.getMentionsProcessed());
+		assertEquals(1, statistics.getOverlapHits());
+		assertEquals(1, statistics.getOverlapMisses());
+		assertEquals(3, statistics.getQueueDepth());
+		assertEquals(1, statistics.getInFlight());
+		assertEquals(1, statistics.getScoringHistogram()[1]);
+		assertEquals(1, statistics.getScoringHistogram()[2]);
+		statistics.reset();
+		assertEquals(0, statistics.getDocumentsScored());
+		assertEquals(0, statistics.getMentionsProcessed());
+	}
+
+	@Test
+	public void testRegister() {
+		ScoringStatistics statistics = new ScoringStatistics();
+		statistics.register("test corpus");
+		statistics.unregister();
+		statistics.unregister();
+	}
+}
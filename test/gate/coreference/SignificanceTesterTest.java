@@ -0,0 +1,110 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference;
+
+import static org.junit.Assert.*;
+
+import gate.coreference.SignificanceTester.Result;
+import gate.coreference.scorer.PrecisionRecallTerms;
+import gate.coreference.scorer.ScoreStore;
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class SignificanceTesterTest {
+
+	private static final double TOLERANCE = 1e-6;
+	private ScoreStore a, b, c;
+
+	@Before
+	public void setUp() {
+		Set<Method> methods = new HashSet<Method>();
+		methods.add(Method.MUC);
+		a = new ScoreStore(methods);
+		b = new ScoreStore(methods);
+		c = new ScoreStore(methods);
+		for (int i = 0; i < 50; i++) {
+			addRow(a, "d" + i, 5);
+			// The same scores listed in the opposite order.
+			addRow(b, "d" + (49 - i), 5);
+			addRow(c, "d" + i, 8);
+		}
+	}
+
+	private void addRow(ScoreStore store, String name, int correct) {
+		int row = store.addRow(name);
+		store.setTerms(row, Method.MUC, new PrecisionRecallTerms(correct, 10,
+				correct, 10));
+		store.setState(row, ScoreStore.SCORED);
+	}
+
+	@Test
+	public void testSameScores() {
+		SignificanceTester test = new SignificanceTester(a, b, 2);
+		try {
+			assertEquals(50, test.size());
+			assertEquals(0, test.getDelta(Method.MUC), TOLERANCE);
+			assertEquals(1, test.randomization(Method.MUC, 1000, 0)
+					.getPValue(), TOLERANCE);
+			assertEquals(1, test.bootstrap(Method.MUC, 1000, 0).getPValue(),
+					TOLERANCE);
+		} finally {
+			test.shutdown();
+		}
+	}
+
+	@Test
+	public void testBetterScores() {
+		SignificanceTester test = new SignificanceTester(a, c, 2);
+		try {
+			assertEquals(0.3, test.getDelta(Method.MUC), TOLERANCE);
+			Result randomization = test.randomization(Method.MUC, 1000, 0);
+			assertEquals(0.3, randomization.getDelta(), TOLERANCE);
+			assertTrue(randomization.getPValue() < 0.01);
+			assertTrue(test.bootstrap(Method.MUC, 1000, 0).getPValue() < 0.01);
+		} finally {
+			test.shutdown();
+		}
+	}
+
+	@Test
+	public void testThreadIndependence() {
+		// Systems that differ on some documents only.
+		for (int i = 0; i < 10; i++)
+			c.setTerms(i, Method.MUC, new PrecisionRecallTerms(4, 10, 4, 10));
+		SignificanceTester one = new SignificanceTester(a, c, 1);
+		SignificanceTester four = new SignificanceTester(a, c, 4);
+		try {
+			assertEquals(one.randomization(Method.MUC, 2000, 7).getPValue(),
+					four.randomization(Method.MUC, 2000, 7).getPValue(), 0);
+			assertEquals(one.bootstrap(Method.MUC, 2000, 7).getPValue(), four
+					.bootstrap(Method.MUC, 2000, 7).getPValue(), 0);
+		} finally {
+			one.shutdown();
+			four.shutdown();
+		}
+	}
+}
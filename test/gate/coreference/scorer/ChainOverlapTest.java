@@ -0,0 +1,259 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import static org.junit.Assert.*;
+
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.coreference.scorer.util.TestUtilities;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ChainOverlapTest {
+
+	private static final double TOLERANCE = 1e-6;
+	private BCubed<Integer> bcubed;
+	private MUC<Integer> muc;
+	private MentionDetection<Integer> mention;
+
+	private Set<Set<Integer>> key, response, editedResponse;
+
+	/**
+	 * Puts chains of up to three elements in a small stratum and larger ones in
+	 * a large stratum.
+	 */
+	private ChainOverlap.Stratifier<Integer> bySize = new ChainOverlap.Stratifier<Integer>() {
+		@Override
+		public Collection<String> getStrata(Set<Integer> chain) {
+			return Collections.singletonList(chain.size() <= 3 ? "small"
+					: "large");
+		}
+	};
+
+	@Before
+	public void setUp() {
+		bcubed = new BCubed<Integer>();
+		muc = new MUC<Integer>();
+		mention = new MentionDetection<Integer>();
+		int[][] keyValues = { { 1, 2, 3, 4, 5 }, { 6, 7 }, { 8, 9, 10, 11, 12 } };
+		int[][] responseValues = { { 1, 2, 3, 4, 5 },
+				{ 6, 7, 8, 9, 10, 11, 12 } };
+		int[][] editedResponseValues = { { 1, 2, 3 }, { 4, 5, 6 }, { 7, 13 },
+				{ 8, 9, 10, 11, 12 } };
+		key = TestUtilities.createEquivalenceSets(keyValues);
+		response = TestUtilities.createEquivalenceSets(responseValues);
+		editedResponse = TestUtilities
+				.createEquivalenceSets(editedResponseValues);
+	}
+
+	@Test
+	public void testScores() {
+		ChainOverlap<Integer> overlap = new ChainOverlap<Integer>(key,
+				response);
+		assertScore(muc.score(key, response), overlap.getScore(Method.MUC));
+		assertScore(bcubed.score(key, response), overlap
+				.getScore(Method.BCUBED));
+		assertScore(mention.score(key, response), overlap
+				.getScore(Method.MENTION));
+	}
+
+	/**
+	 * Updating with edited chains gives the same terms as building the overlap
+	 * from the edited chains.
+	 */
+	@Test
+	public void testUpdate() {
+		ChainOverlap<Integer> overlap = new ChainOverlap<Integer>(key,
+				response);
+		overlap.update(key, editedResponse);
+		assertScore(muc.score(key, editedResponse), overlap
+				.getScore(Method.MUC));
+		assertScore(bcubed.score(key, editedResponse), overlap
+				.getScore(Method.BCUBED));
+		assertScore(mention.score(key, editedResponse), overlap
+				.getScore(Method.MENTION));
+
+		overlap.update(editedResponse, key);
+		assertScore(muc.score(editedResponse, key), overlap
+				.getScore(Method.MUC));
+		assertScore(bcubed.score(editedResponse, key), overlap
+				.getScore(Method.BCUBED));
+
+		overlap.update(key, response);
+		ChainOverlap<Integer> fresh = new ChainOverlap<Integer>(key, response);
+		for (Method method : Method.values())
+			assertEquals(fresh.getScore(method), overlap.getScore(method));
+	}
+
+	/**
+	 * Each chain is in exactly one stratum, so the strata terms add up to the
+	 * total terms, and updating keeps them the same as building from scratch.
+	 */
+	@Test
+	public void testStrata() {
+		ChainOverlap<Integer> overlap = new ChainOverlap<Integer>(key,
+				response, bySize);
+		assertStrataSum(overlap);
+		// Key {6, 7} is the only small key chain.
+		assertEquals(1.0, overlap.getTerms(Method.MUC, "small")
+				.getRecallDenominator(), TOLERANCE);
+		assertEquals(0.0, overlap.getTerms(Method.MUC, "small")
+				.getPrecisionDenominator(), TOLERANCE);
+
+		overlap.update(key, editedResponse);
+		assertStrataSum(overlap);
+		ChainOverlap<Integer> fresh = new ChainOverlap<Integer>(key,
+				editedResponse, bySize);
+		for (Method method : Method.values())
+			for (String stratum : new String[] { "small", "large" })
+				assertTerms(fresh.getTerms(method, stratum), overlap.getTerms(
+						method, stratum));
+		assertTerms(new PrecisionRecallTerms(), overlap.getTerms(Method.MUC,
+				"missing"));
+	}
+
+	/**
+	 * Updating with a new stratifier and the elements whose strata it changes
+	 * moves only the chains of those elements, and gives the same strata as
+	 * building from scratch.
+	 */
+	@Test
+	public void testRestratified() {
+		Set<Integer> none = Collections.emptySet();
+		Set<Integer> six = Collections.singleton(6);
+		ChainOverlap<Integer> overlap = new ChainOverlap<Integer>(key,
+				response, marking(none));
+		overlap.update(key, response, marking(six), six);
+		assertStrataSum(overlap);
+		ChainOverlap<Integer> fresh = new ChainOverlap<Integer>(key,
+				response, marking(six));
+		for (Method method : Method.values())
+			for (String stratum : new String[] { "marked", "unmarked" })
+				assertTerms(fresh.getTerms(method, stratum), overlap.getTerms(
+						method, stratum));
+		// Chains without a listed element are not restratified, so key
+		// {6, 7} and response {6, ..., 12} stay marked.
+		overlap.update(key, response, marking(none), none);
+		assertEquals(1.0, overlap.getTerms(Method.MUC, "marked")
+				.getRecallDenominator(), TOLERANCE);
+		assertEquals(6.0, overlap.getTerms(Method.MUC, "marked")
+				.getPrecisionDenominator(), TOLERANCE);
+	}
+
+	/**
+	 * @return a stratifier that puts chains with a marked element in a marked
+	 *         stratum
+	 */
+	private static ChainOverlap.Stratifier<Integer> marking(
+			final Set<Integer> marked) {
+		return new ChainOverlap.Stratifier<Integer>() {
+			@Override
+			public Collection<String> getStrata(Set<Integer> chain) {
+				for (Integer element : chain)
+					if (marked.contains(element))
+						return Collections.singletonList("marked");
+				return Collections.singletonList("unmarked");
+			}
+		};
+	}
+
+	private void assertStrataSum(ChainOverlap<Integer> overlap) {
+		for (Method method : Method.values()) {
+			PrecisionRecallTerms sum = new PrecisionRecallTerms();
+			for (String stratum : overlap.getStrata())
+				sum.add(overlap.getTerms(method, stratum));
+			assertTerms(overlap.getTerms(method), sum);
+		}
+	}
+
+	private void assertTerms(PrecisionRecallTerms expected,
+			PrecisionRecallTerms actual) {
+		assertEquals(expected.getPrecisionNumerator(), actual
+				.getPrecisionNumerator(), TOLERANCE);
+		assertEquals(expected.getPrecisionDenominator(), actual
+				.getPrecisionDenominator(), TOLERANCE);
+		assertEquals(expected.getRecallNumerator(), actual
+				.getRecallNumerator(), TOLERANCE);
+		assertEquals(expected.getRecallDenominator(), actual
+				.getRecallDenominator(), TOLERANCE);
+	}
+
+	/**
+	 * Key {6, 7} and {8, ..., 12} were merged into one response chain. The
+	 * impacts of the merges add up to the precision lost. Mention detection is
+	 * not affected by splits and merges.
+	 */
+	@Test
+	public void testErrors() {
+		ChainOverlap<Integer> overlap = new ChainOverlap<Integer>(key,
+				response);
+		List<ChainError<Integer>> errors = overlap.getErrors(Method.MUC);
+		assertEquals(1, errors.size());
+		ChainError<Integer> merge = errors.get(0);
+		assertEquals(ChainError.Kind.MERGE, merge.getKind());
+		assertEquals(2, merge.getParts().size());
+		assertEquals(0, merge.getUnmatched());
+		for (Method method : Method.values())
+			assertEquals(1 - overlap.getScore(method).getPrecision(), merge
+					.getImpact(method), TOLERANCE);
+
+		// Key {4, 5} and {6, 7} are split and response {4, 5, 6} and {7, 13}
+		// merge them.
+		overlap.update(key, editedResponse);
+		errors = overlap.getErrors(Method.BCUBED);
+		for (Method method : new Method[] { Method.MUC, Method.BCUBED }) {
+			double splitImpact = 0, mergeImpact = 0;
+			for (ChainError<Integer> error : errors)
+				if (ChainError.Kind.SPLIT == error.getKind())
+					splitImpact += error.getImpact(method);
+				else
+					mergeImpact += error.getImpact(method);
+			assertEquals(1 - overlap.getScore(method).getRecall(),
+					splitImpact, TOLERANCE);
+			assertEquals(1 - overlap.getScore(method).getPrecision(),
+					mergeImpact, TOLERANCE);
+		}
+		for (ChainError<Integer> error : errors)
+			assertEquals(0, error.getImpact(Method.MENTION), 0);
+		for (int i = 1; i < errors.size(); i++)
+			assertTrue(errors.get(i - 1).getImpact(Method.BCUBED) >= errors
+					.get(i).getImpact(Method.BCUBED));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testElementInTwoChains() {
+		int[][] values = { { 1, 2 }, { 2, 3 } };
+		new ChainOverlap<Integer>(TestUtilities.createEquivalenceSets(values),
+				response);
+	}
+
+	private void assertScore(PrecisionRecall expected, PrecisionRecall actual) {
+		assertEquals(expected.getPrecision(), actual.getPrecision(), TOLERANCE);
+		assertEquals(expected.getRecall(), actual.getRecall(), TOLERANCE);
+	}
+}
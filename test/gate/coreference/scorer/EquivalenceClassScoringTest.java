@@ -43,6 +43,7 @@ public class EquivalenceClassScoringTest {
 	private static final double TOLERANCE = 1e-6;
 	private BCubed<Integer> bcubed;
 	private MUC<Integer> muc;
+	private MentionDetection<Integer> mention;
 
 	private Set<Set<Integer>> key, response;
 	private Set<Set<Integer>> keyMissingResponse, responseMissingResponse;
@@ -53,6 +54,7 @@ public class EquivalenceClassScoringTest {
 	public void setUp() throws Exception {
 		bcubed = new BCubed<Integer>();
 		muc = new MUC<Integer>();
+		mention = new MentionDetection<Integer>();
 		// Test case taken from the Bagga and Baldwin paper
 		int[][] keyValues = { { 1, 2, 3, 4, 5 }, { 6, 7 }, { 8, 9, 10, 11, 12 } };
 		int[][] responseValues = { { 1, 2, 3, 4, 5 },
@@ -139,4 +141,48 @@ public class EquivalenceClassScoringTest {
 		assertEquals(0.5, scores.getPrecision(), TOLERANCE);
 		assertEquals(1, scores.getRecall(), TOLERANCE);
 	}
+
+	@Test
+	public void testMentionDetection() {
+		PrecisionRecall scores = mention.score(key, response);
+		assertEquals(1, scores.getPrecision(), TOLERANCE);
+		assertEquals(1, scores.getRecall(), TOLERANCE);
+		scores = mention.score(keyMissingResponse, responseMissingResponse);
+		assertEquals(1, scores.getPrecision(), TOLERANCE);
+		assertEquals(0.5, scores.getRecall(), TOLERANCE);
+		scores = mention.score(keyMissingKey, responseMissingKey);
+		assertEquals(0.5, scores.getPrecision(), TOLERANCE);
+		assertEquals(1, scores.getRecall(), TOLERANCE);
+		scores = mention.score(keyNoCommon, responseNoCommon);
+		assertEquals(0, scores.getPrecision(), TOLERANCE);
+		assertEquals(0, scores.getRecall(), TOLERANCE);
+	}
+
+	@Test
+	public void testBCubedTerms() {
+		PrecisionRecallTerms terms = bcubed.scoreTerms(key, response);
+		assertEquals(16.0 / 21.0 * 12, terms.getPrecisionNumerator(),
+				TOLERANCE);
+		assertEquals(12, terms.getPrecisionDenominator(), TOLERANCE);
+		assertEquals(bcubed.score(key, response), terms.getScore());
+	}
+
+	@Test
+	public void testMUCTerms() {
+		PrecisionRecallTerms terms = muc.scoreTerms(key, response);
+		assertEquals(9, terms.getPrecisionNumerator(), TOLERANCE);
+		assertEquals(10, terms.getPrecisionDenominator(), TOLERANCE);
+		assertEquals(muc.score(key, response), terms.getScore());
+	}
+
+	/**
+	 * Exchanging key and response exchanges precision and recall.
+	 */
+	@Test
+	public void testTermsTranspose() {
+		assertEquals(bcubed.score(response, key), bcubed.scoreTerms(key,
+				response).transpose().getScore());
+		assertEquals(muc.score(response, key), muc.scoreTerms(key, response)
+				.transpose().getScore());
+	}
 }
@@ -0,0 +1,118 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class MentionAlignerTest {
+
+	private static List<Long> mention(long start, long end) {
+		return Arrays.asList(start, end);
+	}
+
+	private static List<List<Long>> mentions(long[][] offsets) {
+		List<List<Long>> mentions = new ArrayList<List<Long>>();
+		for (long[] pair : offsets)
+			mentions.add(mention(pair[0], pair[1]));
+		return mentions;
+	}
+
+	@Test
+	public void testExactOnly() {
+		MentionAligner aligner = new MentionAligner(-1, false, false);
+		Map<List<Long>, List<Long>> alignment = aligner.align(
+				mentions(new long[][] { { 0, 10 }, { 20, 30 } }),
+				mentions(new long[][] { { 0, 10 }, { 19, 30 } }), null);
+		assertEquals(1, alignment.size());
+		assertEquals(mention(0, 10), alignment.get(mention(0, 10)));
+	}
+
+	/**
+	 * "the company" in the response and "company" in the key.
+	 */
+	@Test
+	public void testTolerance() {
+		MentionAligner aligner = new MentionAligner(4, false, false);
+		Map<List<Long>, List<Long>> alignment = aligner.align(
+				mentions(new long[][] { { 4, 11 }, { 40, 50 } }),
+				mentions(new long[][] { { 0, 11 }, { 40, 56 } }), null);
+		assertEquals(1, alignment.size());
+		assertEquals(mention(4, 11), alignment.get(mention(0, 11)));
+	}
+
+	@Test
+	public void testHeads() {
+		MentionAligner aligner = new MentionAligner(0, true, false);
+		List<List<Long>> key = mentions(new long[][] { { 0, 20 }, { 30, 40 } });
+		Map<List<Long>, List<Long>> heads = new HashMap<List<Long>, List<Long>>();
+		heads.put(key.get(0), mention(12, 20));
+		heads.put(key.get(1), mention(35, 40));
+		Map<List<Long>, List<Long>> alignment = aligner.align(key, mentions(new long[][] {
+				{ 10, 20 }, { 30, 34 } }), heads);
+		assertEquals(1, alignment.size());
+		assertEquals(key.get(0), alignment.get(mention(10, 20)));
+	}
+
+	/**
+	 * Exact matches are preferred over overlaps, and each key mention is
+	 * aligned at most once, even when it is nested in another.
+	 */
+	@Test
+	public void testPreference() {
+		MentionAligner aligner = new MentionAligner(-1, false, true);
+		List<List<Long>> key = mentions(new long[][] { { 0, 30 }, { 5, 10 },
+				{ 50, 60 } });
+		List<List<Long>> response = mentions(new long[][] { { 5, 10 },
+				{ 2, 28 }, { 3, 9 }, { 55, 70 } });
+		Map<List<Long>, List<Long>> alignment = aligner.align(key, response,
+				null);
+		assertEquals(mention(5, 10), alignment.get(mention(5, 10)));
+		assertEquals(mention(0, 30), alignment.get(mention(2, 28)));
+		assertNull(alignment.get(mention(3, 9)));
+		assertEquals(mention(50, 60), alignment.get(mention(55, 70)));
+		assertEquals(3, new HashSet<List<Long>>(alignment.values()).size());
+	}
+
+	@Test
+	public void testReplace() {
+		Map<List<Long>, List<Long>> alignment = new HashMap<List<Long>, List<Long>>();
+		alignment.put(mention(0, 11), mention(4, 11));
+		Set<List<Long>> chain = new HashSet<List<Long>>(mentions(new long[][] {
+				{ 0, 11 }, { 20, 25 } }));
+		Set<Set<List<Long>>> chains = new HashSet<Set<List<Long>>>();
+		chains.add(chain);
+		Set<List<Long>> expected = new HashSet<List<Long>>(mentions(new long[][] {
+				{ 4, 11 }, { 20, 25 } }));
+		assertEquals(expected, MentionAligner.replace(chains, alignment)
+				.iterator().next());
+	}
+}
@@ -115,4 +115,29 @@ public class PrecisionRecallAveragesTest {
 		assertEquals(0.2, macroAverage.getRecall(), TOLERANCE);
 	}
 
+	/**
+	 * Averages accumulated from terms match the list-based averages, and
+	 * removing terms restores the previous averages.
+	 */
+	@Test
+	public void testTermsAverages() {
+		PrecisionRecallTermsAverages termsAverages = new PrecisionRecallTermsAverages();
+		for (List<Set<Set<Integer>>> set : sets)
+			termsAverages.addTerms(muc.scoreTerms(set.get(0), set.get(1)));
+		PrecisionRecallAverages precisionRecallAverages = muc
+				.scoreMultipleSets(sets);
+		assertEquals(precisionRecallAverages.getMicroAverage(), termsAverages
+				.getMicroAverage());
+		assertEquals(precisionRecallAverages.getMacroAverage(), termsAverages
+				.getMacroAverage());
+
+		// A score with an undefined precision.
+		PrecisionRecallTerms undefined = new PrecisionRecallTerms(0, 0, 1, 2);
+		termsAverages.addTerms(undefined);
+		assertTrue(Double.isNaN(termsAverages.getMicroAverage().getPrecision()));
+		termsAverages.removeTerms(undefined);
+		assertEquals(0.25, termsAverages.getMicroAverage().getPrecision(),
+				TOLERANCE);
+		assertEquals(2, termsAverages.size());
+	}
 }
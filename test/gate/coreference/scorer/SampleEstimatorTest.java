@@ -0,0 +1,119 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import static org.junit.Assert.*;
+
+import gate.coreference.scorer.SampleEstimator.Estimate;
+
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class SampleEstimatorTest {
+
+	private static final double TOLERANCE = 1e-6;
+
+	@Test
+	public void testNormalQuantile() {
+		assertEquals(1.96, SampleEstimator.normalQuantile(0.975), 1e-3);
+		assertEquals(-1.96, SampleEstimator.normalQuantile(0.025), 1e-3);
+		assertEquals(0, SampleEstimator.normalQuantile(0.5), 1e-3);
+	}
+
+	@Test
+	public void testCompleteSample() {
+		SampleEstimator estimator = new SampleEstimator(new int[] { 2, 1 });
+		estimator.addDocument(0, new PrecisionRecallTerms(1, 2, 1, 2));
+		estimator.addDocument(0, new PrecisionRecallTerms(4, 4, 4, 4));
+		estimator.addDocument(1, new PrecisionRecallTerms(0, 2, 1, 2));
+
+		// Mean precision 1/2, mean recall 2/3
+		assertEquals(0.5, estimator.getMicroPrecisionEstimate(0.95)
+				.getValue(), TOLERANCE);
+		assertEquals(2.0 / 3.0, estimator.getMicroRecallEstimate(0.95)
+				.getValue(), TOLERANCE);
+		Estimate micro = estimator.getMicroEstimate(0.95);
+		assertEquals(4.0 / 7.0, micro.getValue(), TOLERANCE);
+		assertEquals(0, micro.getHalfWidth(), TOLERANCE);
+		// Precision 5/8, recall 6/8
+		Estimate macro = estimator.getMacroEstimate(0.95);
+		assertEquals(2 * 5.0 * 6.0 / (8 * (5.0 + 6.0)), macro.getValue(),
+				TOLERANCE);
+		assertEquals(0, macro.getHalfWidth(), TOLERANCE);
+	}
+
+	@Test
+	public void testPartialSample() {
+		SampleEstimator estimator = new SampleEstimator(new int[] { 100 });
+		for (int i = 0; i < 10; i++)
+			estimator.addDocument(0, new PrecisionRecallTerms(i + 1, 10,
+					i + 1, 10));
+		assertEquals(10, estimator.size());
+		Estimate micro = estimator.getMicroEstimate(0.95);
+		assertEquals(0.55, micro.getValue(), TOLERANCE);
+		assertTrue(micro.getHalfWidth() > 0);
+		assertFalse(Double.isInfinite(micro.getHalfWidth()));
+		assertTrue(micro.getLower() < 0.55 && micro.getUpper() > 0.55);
+		Estimate macro = estimator.getMacroEstimate(0.95);
+		assertEquals(0.55, macro.getValue(), TOLERANCE);
+		assertTrue(macro.getHalfWidth() > 0);
+		assertFalse(Double.isInfinite(macro.getHalfWidth()));
+		// A wider interval at a higher confidence level
+		assertTrue(estimator.getMicroEstimate(0.99).getHalfWidth() > micro
+				.getHalfWidth());
+	}
+
+	@Test
+	public void testUnannotatedDocuments() {
+		SampleEstimator estimator = new SampleEstimator(new int[] { 3 });
+		estimator.addDocument(0, new PrecisionRecallTerms(1, 2, 1, 2));
+		estimator.addDocument(0, null);
+		estimator.addDocument(0, new PrecisionRecallTerms(2, 2, 2, 2));
+		assertEquals(3, estimator.size());
+		Estimate micro = estimator.getMicroEstimate(0.95);
+		assertEquals(0.75, micro.getValue(), TOLERANCE);
+		assertEquals(0, micro.getHalfWidth(), TOLERANCE);
+	}
+
+	/**
+	 * A document with an undefined precision makes the micro average
+	 * undefined however many more documents are sampled, as it does in
+	 * {@link PrecisionRecallTermsAverages}.
+	 */
+	@Test
+	public void testUndefinedScore() {
+		SampleEstimator estimator = new SampleEstimator(new int[] { 100 });
+		estimator.addDocument(0, new PrecisionRecallTerms(0, 0, 1, 2));
+		for (int i = 0; i < 10; i++)
+			estimator.addDocument(0, new PrecisionRecallTerms(i + 1, 10,
+					i + 1, 10));
+		Estimate micro = estimator.getMicroEstimate(0.95);
+		assertTrue(Double.isNaN(micro.getValue()));
+		assertEquals(0, micro.getHalfWidth(), TOLERANCE);
+		assertTrue(Double.isNaN(estimator.getMicroPrecisionEstimate(0.95)
+				.getValue()));
+		assertFalse(Double.isNaN(estimator.getMicroRecallEstimate(0.95)
+				.getValue()));
+		Estimate macro = estimator.getMacroEstimate(0.95);
+		assertFalse(Double.isNaN(macro.getValue()));
+		assertTrue(macro.getHalfWidth() > 0);
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import static org.junit.Assert.*;
+
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ScoreStoreFileTest {
+
+	private static final double TOLERANCE = 1e-6;
+	private ScoreStore store;
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		Set<Method> methods = new HashSet<Method>();
+		methods.add(Method.MUC);
+		methods.add(Method.BCUBED);
+		store = new ScoreStore(methods);
+		store.addRow("Z\u00fcrich");
+		store.addRow("Amsterdam");
+		store.addRow("Berlin");
+		store.setTerms(0, Method.MUC, new PrecisionRecallTerms(1, 2, 3, 4));
+		store.setTerms(0, Method.BCUBED, new PrecisionRecallTerms(5, 6, 7, 8));
+		store.setState(0, ScoreStore.SCORED);
+		store.setState(1, ScoreStore.UNANNOTATED);
+		store.setTerms(2, Method.MUC, new PrecisionRecallTerms(0, 0, 0, 1));
+		store.setTerms(2, Method.BCUBED, new PrecisionRecallTerms(0, 0, 0, 1));
+		store.setState(2, ScoreStore.SCORED);
+		file = File.createTempFile("scores", ".bin");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		ScoreStoreFile.write(store, null, file);
+		ScoreStoreFile scores = new ScoreStoreFile(file);
+		assertEquals(3, scores.size());
+		assertArrayEquals(store.getMethods(), scores.getMethods());
+		assertEquals("Z\u00fcrich", scores.getName(0));
+		assertEquals(ScoreStore.SCORED, scores.getState(0));
+		assertEquals(0.5, scores.getPrecision(0, Method.MUC), TOLERANCE);
+		assertEquals(0.75, scores.getRecall(0, Method.MUC), TOLERANCE);
+		assertEquals(7, scores.getTerms(0, Method.BCUBED)
+				.getRecallNumerator(), TOLERANCE);
+		assertEquals(ScoreStore.UNANNOTATED, scores.getState(1));
+		assertNull(scores.getTerms(1, Method.MUC));
+		assertTrue(Double.isNaN(scores.getPrecision(2, Method.BCUBED)));
+		assertEquals(0, scores.getRecall(2, Method.BCUBED), TOLERANCE);
+	}
+
+	@Test
+	public void testRowOrderAndLookup() throws IOException {
+		ScoreStoreFile.write(store, new int[] { 1, 2, 0 }, file);
+		ScoreStoreFile scores = new ScoreStoreFile(file);
+		assertEquals("Amsterdam", scores.getName(0));
+		assertEquals("Z\u00fcrich", scores.getName(2));
+		assertEquals(0.5, scores.getPrecision(2, Method.MUC), TOLERANCE);
+		assertEquals(1, scores.indexOf("Berlin"));
+		assertEquals(2, scores.indexOf("Z\u00fcrich"));
+		assertEquals(-1, scores.indexOf("Paris"));
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		ScoreStoreFile.write(new ScoreStore(new HashSet<Method>()), null, file);
+		ScoreStoreFile scores = new ScoreStoreFile(file);
+		assertEquals(0, scores.size());
+		assertEquals(-1, scores.indexOf("Berlin"));
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import static org.junit.Assert.*;
+
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ScoreStoreTest {
+
+	private static final double TOLERANCE = 1e-6;
+	private ScoreStore store;
+
+	@Before
+	public void setUp() {
+		Set<Method> methods = new HashSet<Method>();
+		methods.add(Method.MUC);
+		methods.add(Method.BCUBED);
+		store = new ScoreStore(methods);
+	}
+
+	@Test
+	public void testScores() {
+		for (int i = 0; i < 20; i++)
+			assertEquals(i, store.addRow("Document " + i));
+		assertEquals(20, store.size());
+		store.setTerms(3, Method.MUC, new PrecisionRecallTerms(1, 2, 3, 4));
+		store.setTerms(3, Method.BCUBED, new PrecisionRecallTerms(1, 1, 1, 2));
+		assertNull(store.getScore(3, Method.MUC));
+		assertTrue(Double.isNaN(store.getPrecision(3, Method.MUC)));
+		store.setState(3, ScoreStore.SCORED);
+		assertEquals(new PrecisionRecall(0.5, 0.75), store.getScore(3,
+				Method.MUC));
+		PrecisionRecallTerms terms = store.getTerms(3, Method.BCUBED);
+		assertEquals(1, terms.getPrecisionNumerator(), TOLERANCE);
+		assertEquals(2, terms.getRecallDenominator(), TOLERANCE);
+		assertEquals(2 * 0.5 * 0.75 / 1.25, store.getFScore(3, Method.MUC),
+				TOLERANCE);
+		store.setState(4, ScoreStore.UNANNOTATED);
+		assertNull(store.getTerms(4, Method.MUC));
+	}
+
+	@Test
+	public void testRemoveRow() {
+		store.addRow("a");
+		store.addRow("b");
+		store.addRow("c");
+		store.setTerms(2, Method.MUC, new PrecisionRecallTerms(1, 4, 1, 2));
+		store.setState(2, ScoreStore.SCORED);
+		// The last row moves into the removed row's place.
+		assertEquals(2, store.removeRow(0));
+		assertEquals(2, store.size());
+		assertEquals("c", store.getName(0));
+		assertEquals(ScoreStore.SCORED, store.getState(0));
+		assertEquals(0.25, store.getPrecision(0, Method.MUC), TOLERANCE);
+		assertEquals("b", store.getName(1));
+		assertEquals(-1, store.removeRow(1));
+		assertEquals(1, store.size());
+	}
+
+	/**
+	 * Stratum columns are added as strata are set, grow with the rows and
+	 * move with them.
+	 */
+	@Test
+	public void testStrata() {
+		for (int i = 0; i < 3; i++)
+			store.addRow("Document " + i);
+		store.setStratumTerms(1, "small", Method.MUC, new PrecisionRecallTerms(
+				1, 2, 1, 4));
+		store.setStratumTerms(2, "large", Method.BCUBED,
+				new PrecisionRecallTerms(3, 4, 3, 8));
+		store.setState(1, ScoreStore.SCORED);
+		store.setState(2, ScoreStore.SCORED);
+		assertEquals("[small, large]", store.getStrata().toString());
+		assertNull(store.getStratumTerms(0, "small", Method.MUC));
+		assertEquals(0.5, store.getStratumTerms(1, "small", Method.MUC)
+				.getScore().getPrecision(), TOLERANCE);
+		assertEquals(0, store.getStratumTerms(1, "large", Method.BCUBED)
+				.getPrecisionDenominator(), TOLERANCE);
+		assertEquals(0, store.getStratumTerms(1, "missing", Method.MUC)
+				.getRecallDenominator(), TOLERANCE);
+		for (int i = 3; i < 20; i++)
+			store.addRow("Document " + i);
+		// The last, unscored row moves into row 1 with its zero terms.
+		assertEquals(19, store.removeRow(1));
+		store.setState(1, ScoreStore.SCORED);
+		assertEquals(0, store.getStratumTerms(1, "small", Method.MUC)
+				.getPrecisionDenominator(), TOLERANCE);
+		assertEquals(8, store.getStratumTerms(2, "large", Method.BCUBED)
+				.getRecallDenominator(), TOLERANCE);
+		store.clearStratumTerms(2);
+		assertEquals(0, store.getStratumTerms(2, "large", Method.BCUBED)
+				.getRecallDenominator(), TOLERANCE);
+	}
+
+	@Test
+	public void testListener() {
+		final List<String> events = new ArrayList<String>();
+		ScoreStore.Listener listener = new ScoreStore.Listener() {
+			@Override
+			public void rowChanged(int row) {
+				events.add("changed " + row);
+			}
+
+			@Override
+			public void rowRemoved(int row, int moved) {
+				events.add("removed " + row + " " + moved);
+			}
+		};
+		store.addListener(listener);
+		store.addRow("a");
+		store.addRow("b");
+		store.setTerms(1, Method.MUC, new PrecisionRecallTerms(1, 4, 1, 2));
+		store.setState(1, ScoreStore.SCORED);
+		store.removeRow(0);
+		store.removeListener(listener);
+		store.removeRow(0);
+		assertEquals("[changed 0, changed 1, changed 1, changed 1, removed 0 1]",
+				events.toString());
+	}
+}
@@ -0,0 +1,251 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import static org.junit.Assert.*;
+
+import gate.coreference.scorer.util.SetUtilities;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Complexity and allocation budgets of the scorers on large synthetic
+ * partitions.
+ * <p>
+ * Scoring work must grow roughly linearly with the number of mentions, so
+ * doubling the size of a partition may not more than about double it. Work is
+ * measured by counting the hash and equality tests of the mentions rather
+ * than by timing, which is too noisy to tell a factor of two from a factor of
+ * four on a busy machine. Allocation is measured with the thread allocation
+ * counter where the virtual machine supports it.
+ *
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ScoringBudgetTest {
+
+	/**
+	 * Number of mentions in the smaller partitions.
+	 */
+	private static final int MENTIONS = 20000;
+
+	/**
+	 * Largest allowed ratio of the work of scoring partitions of twice and
+	 * once {@link #MENTIONS} mentions. Quadratic work has a ratio of 4.
+	 */
+	private static final double SCALING_BUDGET = 2.5;
+
+	/**
+	 * Largest allowed number of bytes allocated per scored mention.
+	 */
+	private static final long ALLOCATION_BUDGET = 1024;
+
+	/**
+	 * A mention that counts the hash and equality tests made on it.
+	 */
+	private static class Mention {
+		static long operations = 0;
+
+		final private int id;
+
+		Mention(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			operations++;
+			return id;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			operations++;
+			return other instanceof Mention && ((Mention) other).id == id;
+		}
+	}
+
+	/**
+	 * Something to score.
+	 */
+	private interface Scoring {
+		public void run(Set<Set<Mention>> key, Set<Set<Mention>> response);
+	}
+
+	/**
+	 * Create a key and response partition of about n mentions.
+	 * <p>
+	 * The key has one chain of a quarter of the mentions and many short ones.
+	 * The response splits key chains in two, merges neighboring pieces, and
+	 * drops and adds a few mentions.
+	 *
+	 * @return key and response partitions
+	 */
+	private static List<Set<Set<Mention>>> createPartitions(int n) {
+		Random random = new Random(n);
+		List<Set<Mention>> keyChains = new ArrayList<Set<Mention>>();
+		int next = 0;
+		keyChains.add(range(next, next += n / 4));
+		while (next < n) {
+			int size = 1 + random.nextInt(8);
+			keyChains.add(range(next, next += size));
+		}
+		List<Set<Mention>> pieces = new ArrayList<Set<Mention>>();
+		for (Set<Mention> chain : keyChains) {
+			Set<Mention> first = new HashSet<Mention>(), second = new HashSet<Mention>();
+			for (Mention mention : chain) {
+				if (random.nextInt(20) == 0)
+					continue;
+				(random.nextBoolean() ? first : second).add(mention);
+			}
+			pieces.add(first);
+			pieces.add(second);
+		}
+		Set<Set<Mention>> response = new HashSet<Set<Mention>>();
+		Set<Mention> merged = new HashSet<Mention>();
+		for (Set<Mention> piece : pieces) {
+			merged.addAll(piece);
+			if (random.nextInt(4) != 0 && !merged.isEmpty()) {
+				response.add(merged);
+				merged = new HashSet<Mention>();
+			}
+		}
+		if (!merged.isEmpty())
+			response.add(merged);
+		for (int i = 0; i < n / 20; i++)
+			response.add(range(2 * n + 2 * i, 2 * n + 2 * i + 2));
+		List<Set<Set<Mention>>> partitions = new ArrayList<Set<Set<Mention>>>();
+		partitions.add(new HashSet<Set<Mention>>(keyChains));
+		partitions.add(response);
+		return partitions;
+	}
+
+	private static Set<Mention> range(int start, int end) {
+		Set<Mention> set = new HashSet<Mention>();
+		for (int i = start; i < end; i++)
+			set.add(new Mention(i));
+		return set;
+	}
+
+	private static long operations(Scoring scoring, int n) {
+		List<Set<Set<Mention>>> partitions = createPartitions(n);
+		Mention.operations = 0;
+		scoring.run(partitions.get(0), partitions.get(1));
+		return Mention.operations;
+	}
+
+	private static void assertScales(String name, Scoring scoring) {
+		double ratio = (double) operations(scoring, 2 * MENTIONS)
+				/ operations(scoring, MENTIONS);
+		assertTrue(String.format("%s work ratio %.2f exceeds %.2f", name,
+				ratio, SCALING_BUDGET), ratio <= SCALING_BUDGET);
+	}
+
+	private static void assertAllocation(String name, Scoring scoring) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return;
+		com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+		if (!counter.isThreadAllocatedMemorySupported()
+				|| !counter.isThreadAllocatedMemoryEnabled())
+			return;
+		List<Set<Set<Mention>>> partitions = createPartitions(MENTIONS);
+		int mentions = SetUtilities.union(partitions.get(0)).size()
+				+ SetUtilities.union(partitions.get(1)).size();
+		long id = Thread.currentThread().getId();
+		long start = counter.getThreadAllocatedBytes(id);
+		scoring.run(partitions.get(0), partitions.get(1));
+		long perMention = (counter.getThreadAllocatedBytes(id) - start)
+				/ mentions;
+		assertTrue(String.format("%s allocates %d bytes per mention", name,
+				perMention), perMention <= ALLOCATION_BUDGET);
+	}
+
+	private static final Scoring BCUBED = new Scoring() {
+		@Override
+		public void run(Set<Set<Mention>> key, Set<Set<Mention>> response) {
+			new BCubed<Mention>().scoreTerms(key, response);
+		}
+	};
+
+	private static final Scoring MUC = new Scoring() {
+		@Override
+		public void run(Set<Set<Mention>> key, Set<Set<Mention>> response) {
+			new MUC<Mention>().scoreTerms(key, response);
+		}
+	};
+
+	private static final Scoring OVERLAP = new Scoring() {
+		@Override
+		public void run(Set<Set<Mention>> key, Set<Set<Mention>> response) {
+			new ChainOverlap<Mention>(key, response)
+					.getTerms(EquivalenceClassScorerFactory.Method.MUC);
+		}
+	};
+
+	private static final Scoring SETS = new Scoring() {
+		@Override
+		public void run(Set<Set<Mention>> key, Set<Set<Mention>> response) {
+			SetUtilities.intersection(SetUtilities.union(key), SetUtilities
+					.union(response));
+		}
+	};
+
+	@Test
+	public void testBCubedScaling() {
+		assertScales("B-Cubed", BCUBED);
+	}
+
+	@Test
+	public void testMUCScaling() {
+		assertScales("MUC", MUC);
+	}
+
+	@Test
+	public void testChainOverlapScaling() {
+		assertScales("Chain overlap", OVERLAP);
+	}
+
+	@Test
+	public void testSetUtilitiesScaling() {
+		assertScales("Set utilities", SETS);
+	}
+
+	@Test
+	public void testBCubedAllocation() {
+		assertAllocation("B-Cubed", BCUBED);
+	}
+
+	@Test
+	public void testMUCAllocation() {
+		assertAllocation("MUC", MUC);
+	}
+
+	@Test
+	public void testChainOverlapAllocation() {
+		assertAllocation("Chain overlap", OVERLAP);
+	}
+}
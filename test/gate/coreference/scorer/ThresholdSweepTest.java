@@ -0,0 +1,140 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer;
+
+import static org.junit.Assert.*;
+
+import gate.coreference.scorer.EquivalenceClassScorerFactory.Method;
+import gate.coreference.scorer.util.TestUtilities;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:billmcn@gmail.com">W.P. McNeill</a>
+ */
+public class ThresholdSweepTest {
+
+	private static final double TOLERANCE = 1e-6;
+
+	private Set<Method> methods;
+	private Set<Set<Integer>> key;
+	private List<Integer> elements;
+	private List<ScoredLink<Integer>> links;
+
+	@Before
+	public void setUp() {
+		methods = new HashSet<Method>();
+		methods.add(Method.MUC);
+		methods.add(Method.BCUBED);
+
+		int[][] keyValues = { { 1, 2, 3, 4, 5 }, { 6, 7 }, { 8, 9, 10, 11, 12 } };
+		key = TestUtilities.createEquivalenceSets(keyValues);
+		// Response element 13 is not in the key.
+		elements = new ArrayList<Integer>();
+		for (int i = 1; i <= 13; i++)
+			elements.add(i);
+		links = new ArrayList<ScoredLink<Integer>>();
+		links.add(new ScoredLink<Integer>(1, 2, 0.9));
+		links.add(new ScoredLink<Integer>(2, 3, 0.9));
+		links.add(new ScoredLink<Integer>(6, 7, 0.8));
+		links.add(new ScoredLink<Integer>(7, 8, 0.5));
+		links.add(new ScoredLink<Integer>(8, 9, 0.7));
+		links.add(new ScoredLink<Integer>(4, 5, 0.6));
+		links.add(new ScoredLink<Integer>(3, 4, 0.3));
+		links.add(new ScoredLink<Integer>(12, 13, 0.2));
+		links.add(new ScoredLink<Integer>(1, 3, 0.1));
+	}
+
+	/**
+	 * Every point on the curve matches scoring the chains at that threshold
+	 * from scratch.
+	 */
+	@Test
+	public void testSweepMatchesScorers() {
+		ThresholdSweep<Integer> sweep = new ThresholdSweep<Integer>(methods);
+		sweep.addDocument(key, elements, links);
+		List<SweepPoint> points = sweep.sweep();
+		assertEquals(9, points.size());
+		assertTrue(Double.isInfinite(points.get(0).getThreshold()));
+
+		for (SweepPoint point : points) {
+			Set<Set<Integer>> response = chains(point.getThreshold());
+			assertScore(new MUC<Integer>().score(key, response), point
+					.getMacroAverage(Method.MUC));
+			assertScore(new BCubed<Integer>().score(key, response), point
+					.getMacroAverage(Method.BCUBED));
+		}
+	}
+
+	/**
+	 * Micro and macro averages over two documents.
+	 */
+	@Test
+	public void testTwoDocuments() {
+		ThresholdSweep<Integer> sweep = new ThresholdSweep<Integer>(methods);
+		sweep.addDocument(key, elements, links);
+		sweep.addDocument(key, elements, links);
+		List<SweepPoint> points = sweep.sweep();
+		SweepPoint last = points.get(points.size() - 1);
+		PrecisionRecall expected = new BCubed<Integer>().score(key,
+				chains(last.getThreshold()));
+		assertScore(expected, last.getMicroAverage(Method.BCUBED));
+		assertScore(expected, last.getMacroAverage(Method.BCUBED));
+	}
+
+	private void assertScore(PrecisionRecall expected, PrecisionRecall actual) {
+		assertEquals(expected.getPrecision(), actual.getPrecision(), TOLERANCE);
+		assertEquals(expected.getRecall(), actual.getRecall(), TOLERANCE);
+	}
+
+	/**
+	 * Build the response chains for a threshold by repeatedly merging linked
+	 * sets.
+	 */
+	private Set<Set<Integer>> chains(double threshold) {
+		List<Set<Integer>> sets = new ArrayList<Set<Integer>>();
+		for (Integer element : elements) {
+			Set<Integer> set = new HashSet<Integer>();
+			set.add(element);
+			sets.add(set);
+		}
+		for (ScoredLink<Integer> link : links) {
+			if (link.getScore() < threshold)
+				continue;
+			Set<Integer> first = null, second = null;
+			for (Set<Integer> set : sets) {
+				if (set.contains(link.getFirst()))
+					first = set;
+				if (set.contains(link.getSecond()))
+					second = set;
+			}
+			if (first != second) {
+				first.addAll(second);
+				sets.remove(second);
+			}
+		}
+		return new HashSet<Set<Integer>>(sets);
+	}
+}
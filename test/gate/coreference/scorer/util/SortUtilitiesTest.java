@@ -0,0 +1,50 @@
+/**
+ * This file is part of the GATE Coreference Plugin.
+ *
+ * The GATE Coreference Plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *   
+ * The GATE Coreference Plugin is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *   
+ * You should have received a copy of the GNU General Public License along with the GATE
+ * Coreference Plugin.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2010 W.P. McNeill
+ */
+
+package gate.coreference.scorer.util;
+
+import static org.junit.Assert.assertEquals;
+
+import gate.coreference.scorer.util.SortUtilities;
+
+import org.junit.Test;
+
+public class SortUtilitiesTest {
+
+	@Test
+	public void testSortByValue() {
+		double[] values = { 0.5, Double.NaN, 0.1, 0.9, 0.5 };
+		int[] indices = { 0, 1, 2, 3, 4 };
+		SortUtilities.sort(indices, indices.length, SortUtilities
+				.byValue(values));
+		// Equal values keep their order and NaN sorts last.
+		int[] expected = { 2, 0, 4, 3, 1 };
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(expected[i], indices[i]);
+	}
+
+	@Test
+	public void testSortPrefix() {
+		double[] values = { 3, 2, 1, 0 };
+		int[] indices = { 0, 1, 2, 3 };
+		SortUtilities.sort(indices, 3, SortUtilities.byValue(values));
+		int[] expected = { 2, 1, 0, 3 };
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(expected[i], indices[i]);
+	}
+}